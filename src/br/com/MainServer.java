@@ -1,39 +1,191 @@
-package br.com;
-
-import br.com.server.AbstractServerController;
-import br.com.server.impl.*;
-import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.StandardSocketOptions;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-
-/**
- * @author Guilherme Alves Silveira
- * @author Francisco Araujo
- */
-public class MainServer {
-
-    public static final boolean DEBUG = true;
-    private static final int TIMEOUT = 5_000;
-    private static final int BUFF_SIZE = 5;
-
-    public static void main(String[] args) {
-        try {
-            /*Criando um servidor socket e configurando*/
-            ServerSocketChannel server = ServerSocketChannel.open();
-            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-            server.bind(new InetSocketAddress("localhost", 5542));
-            server.configureBlocking(false);
-            /*--fim--*/
-
-            //criando um selector e resgistrando no servidor
-            Selector selector = Selector.open();
-            /*fim*/
-            AbstractServerController controller = new TimeoutServerController(TIMEOUT, BUFF_SIZE, server, selector);
-            controller.runEventLoop();
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
-    }
-}
+package br.com;
+
+import br.com.server.AbstractServerController;
+import br.com.server.AsyncServer;
+import br.com.server.ServerConfig;
+import br.com.server.executor.InlineProcessExecutor;
+import br.com.server.executor.VirtualThreadProcessExecutor;
+import br.com.server.impl.*;
+import br.com.server.log.Logger;
+import br.com.server.metrics.MetricsEndpoint;
+import br.com.server.select.SelectStrategy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.management.JMException;
+
+/**
+ * Os prints de debug do servidor são habilitados com
+ * -Dserver.log.level=DEBUG.
+ *
+ * @author Guilherme Alves Silveira
+ * @author Francisco Araujo
+ */
+public class MainServer {
+
+    private static final Logger LOG = Logger.getLogger(MainServer.class);
+    private static final int TIMEOUT = 5_000;
+    private static final int BUFF_SIZE = 5;
+    /**
+     * Quantidade de reactors, pode ser informada com -Dreactors=N, por padrão
+     * é a quantidade de processadores.
+     */
+    private static final String REACTORS = "reactors";
+    /**
+     * Estratégia de execução do processamento, pode ser informada com
+     * -Dexecutor=inline|bounded|virtual, por padrão é bounded.
+     */
+    private static final String EXECUTOR = "executor";
+    /**
+     * Estratégia de espera dos reactors, pode ser informada com
+     * -Dselect=blocking|adaptive|busy-poll, por padrão é blocking.
+     */
+    private static final String SELECT = "select";
+    /**
+     * Porta do endpoint HTTP com as métricas em /metrics, pode ser informada
+     * com -Dmetrics.port=N. Sem a porta, as métricas são expostas somente via
+     * JMX.
+     */
+    private static final String METRICS_PORT = "metrics.port";
+    /**
+     * Tamanho da fila de conexões pendentes do SO, pode ser informado com
+     * -Dbacklog=N.
+     */
+    private static final String BACKLOG = "backlog";
+    /**
+     * Quantidade máxima de clientes conectados, pode ser informada com
+     * -DmaxConnections=N.
+     */
+    private static final String MAX_CONNECTIONS = "maxConnections";
+    /**
+     * Com -DreusePort=true, cada reactor aceita os seus clientes em um socket
+     * próprio na porta do servidor, aberto com SO_REUSEPORT (Linux).
+     */
+    private static final String REUSE_PORT = "reusePort";
+    /**
+     * Modelo de I/O do servidor, pode ser informado com
+     * -Dbackend=selector|async, por padrão é selector. O async utiliza o
+     * {@link AsyncServer}, com uma thread do grupo para cada reactor, que
+     * processa as mensagens na própria thread, então não aceita -Dexecutor
+     * (exceto inline), -Dselect nem -DreusePort.
+     */
+    private static final String BACKEND = "backend";
+    /**
+     * Caminho de um Unix domain socket para os clientes da mesma máquina,
+     * pode ser informado com -Dunix=PATH. Por padrão o socket é aberto além
+     * da porta TCP, e com -Dtcp=false no lugar dela.
+     */
+    private static final String UNIX = "unix";
+    private static final String TCP = "tcp";
+
+    public static void main(String[] args) {
+        try {
+            /*Criando um servidor socket e configurando*/
+            ServerConfig config = new ServerConfig();
+            config.setAcceptBacklog(Integer.getInteger(BACKLOG, config.getAcceptBacklog()));
+            config.setMaxConnections(Integer.getInteger(MAX_CONNECTIONS, config.getMaxConnections()));
+            config.setReusePort(Boolean.getBoolean(REUSE_PORT));
+            config.setReactors(Integer.getInteger(REACTORS, config.getReactors()));
+            InetSocketAddress address = new InetSocketAddress("localhost", 5542);
+            String backend = System.getProperty(BACKEND, "selector");
+            String unixPath = System.getProperty(UNIX);
+            boolean tcp = Boolean.parseBoolean(System.getProperty(TCP, "true"));
+            if (null == unixPath && !tcp) {
+                throw new IllegalArgumentException("The unix socket path is required without TCP!");
+            }
+            if ("async".equals(backend)) {
+                if (null != unixPath) {
+                    throw new IllegalArgumentException("Unix domain sockets require the selector backend!");
+                }
+                if (!"inline".equals(System.getProperty(EXECUTOR, "inline"))
+                        || null != System.getProperty(SELECT) || config.isReusePort()) {
+                    throw new IllegalArgumentException(
+                            "The async backend processes inline and has no executor, select or reusePort options!");
+                }
+                runAsync(address, config);
+                return;
+            } else if (!"selector".equals(backend)) {
+                throw new IllegalArgumentException("Invalid backend!");
+            }
+
+            Path unixSocket = null == unixPath ? null : Paths.get(unixPath);
+            ServerSocketChannel server;
+            if (!tcp) {
+                server = AbstractServerController.openUnixDomain(unixSocket, config);
+            } else if (config.isReusePort()) {
+                server = AbstractServerController.openReusePort(address, config);
+            } else {
+                server = ServerSocketChannel.open();
+                server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                server.bind(address, config.getAcceptBacklog());
+                server.configureBlocking(false);
+            }
+            /*--fim--*/
+
+            //criando o selector do acceptor
+            Selector selector = Selector.open();
+            /*fim*/
+            switch (System.getProperty(EXECUTOR, "bounded")) {
+                case "inline":
+                    config.setProcessExecutor(new InlineProcessExecutor());
+                    break;
+                case "virtual":
+                    config.setProcessExecutor(new VirtualThreadProcessExecutor());
+                    LOG.info("Process executor using %s threads!", VirtualThreadProcessExecutor.threadKind());
+                    break;
+                case "bounded":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid executor!");
+            }
+            switch (System.getProperty(SELECT, "blocking")) {
+                case "adaptive":
+                    config.setSelectStrategy(() -> SelectStrategy.adaptive(64));
+                    break;
+                case "busy-poll":
+                    config.setSelectStrategy(SelectStrategy::busyPoll);
+                    break;
+                case "blocking":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid select strategy!");
+            }
+            exposeMetrics(config);
+            AbstractServerController controller = new TimeoutServerController(TIMEOUT, BUFF_SIZE, server, selector, config);
+            if (tcp && null != unixSocket) {
+                controller.addListener(AbstractServerController.openUnixDomain(unixSocket, config));
+            }
+            controller.runEventLoop();
+        } catch (IOException | JMException ex) {
+            LOG.error("Server failed", ex);
+        }
+    }
+
+    private static void runAsync(InetSocketAddress address, ServerConfig config)
+            throws IOException, JMException {
+        AsynchronousChannelGroup group = AsyncServer.newChannelGroup(config);
+        try {
+            AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open(group);
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(address, config.getAcceptBacklog());
+            exposeMetrics(config);
+            new AsyncServer<>(TIMEOUT, BUFF_SIZE, server, new TimeoutProtocol(), config).runEventLoop();
+        } finally {
+            group.shutdownNow();
+        }
+    }
+
+    private static void exposeMetrics(ServerConfig config) throws IOException, JMException {
+        config.getMetrics().register("main");
+        Integer metricsPort = Integer.getInteger(METRICS_PORT);
+        if (null != metricsPort) {
+            new MetricsEndpoint(new InetSocketAddress("localhost", metricsPort), config.getMetrics());
+        }
+    }
+}
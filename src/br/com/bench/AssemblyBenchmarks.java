@@ -0,0 +1,131 @@
+package br.com.bench;
+
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.model.impl.TimeoutClientTracker;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks da montagem das partes de uma requisição. O
+ * {@code mountRequest} e o {@code mountByteRequest} devolvem as partes ao
+ * pool, então cada operação adiciona as partes novamente; o
+ * {@code takeRequest}, que não copia os bytes, mede somente esse custo e
+ * serve de referência.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class AssemblyBenchmarks {
+
+    private AssemblyBenchmarks() {
+    }
+
+    public static List<BenchmarkCase> cases(int[] partCounts, int[] sizes) {
+        List<BenchmarkCase> cases = new ArrayList<>();
+        for (int parts : partCounts) {
+            for (int size : sizes) {
+                cases.add(new MountRequest(parts, size));
+                cases.add(new MountByteRequest(parts, size));
+                cases.add(new CopyRequests(parts, size));
+                cases.add(new TakeRequest(parts, size));
+            }
+        }
+        return cases;
+    }
+
+    private abstract static class AssemblyCase extends TrackerCase {
+
+        protected TimeoutClientTracker tracker;
+
+        AssemblyCase(String name, int parts, int size) {
+            super(name, parts, size);
+        }
+
+        @Override
+        protected void setup() throws Exception {
+            super.setup();
+            tracker = new TimeoutClientTracker(Long.MAX_VALUE, false, channel, bufferPool);
+        }
+
+        @Override
+        protected void tearDown() throws Exception {
+            tracker.release();
+            super.tearDown();
+        }
+
+        @Override
+        protected byte[] message(int length) {
+            byte[] message = new byte[length];
+            for (int i = 0; i < length; i++) {
+                message[i] = (byte) i;
+            }
+            return message;
+        }
+    }
+
+    private static class MountRequest extends AssemblyCase {
+
+        MountRequest(int parts, int size) {
+            super("AbstractClientTracker.mountRequest", parts, size);
+        }
+
+        @Override
+        protected void operation(Blackhole blackhole) {
+            fill(tracker);
+            ByteBuffer request = tracker.mountRequest();
+            blackhole.consume(request.get(request.limit() - 1));
+            tracker.release(request);
+        }
+    }
+
+    private static class MountByteRequest extends AssemblyCase {
+
+        MountByteRequest(int parts, int size) {
+            super("AbstractClientTracker.mountByteRequest", parts, size);
+        }
+
+        @Override
+        protected void operation(Blackhole blackhole) {
+            fill(tracker);
+            byte[] request = tracker.mountByteRequest();
+            blackhole.consume(request[request.length - 1]);
+        }
+    }
+
+    private static class CopyRequests extends AssemblyCase {
+
+        CopyRequests(int parts, int size) {
+            super("AbstractClientTracker.copyRequests", parts, size);
+        }
+
+        @Override
+        protected void setup() throws Exception {
+            super.setup();
+            fill(tracker);
+        }
+
+        @Override
+        protected void operation(Blackhole blackhole) {
+            List<ByteBuffer> copies = tracker.copyRequests();
+            for (ByteBuffer copy : copies) {
+                blackhole.consume(copy.get(copy.limit() - 1));
+                tracker.release(copy);
+            }
+        }
+    }
+
+    private static class TakeRequest extends AssemblyCase {
+
+        TakeRequest(int parts, int size) {
+            super("AbstractClientTracker.takeRequest", parts, size);
+        }
+
+        @Override
+        protected void operation(Blackhole blackhole) {
+            fill(tracker);
+            try (CompositeByteBuffer request = tracker.takeRequest()) {
+                blackhole.consume(request.get(request.size() - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package br.com.bench;
+
+import br.com.server.metrics.LatencyHistogram;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Um benchmark com um conjunto de parâmetros, executado pelo
+ * {@link BenchmarkRunner} em iterações de tempo fixo.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public abstract class BenchmarkCase {
+
+    private final String name;
+    private final Map<String, String> params;
+
+    protected BenchmarkCase(String name) {
+        this.name = name;
+        this.params = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @return Este benchmark, para encadear as chamadas.
+     */
+    public BenchmarkCase param(String key, Object value) {
+        params.put(key, String.valueOf(value));
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    /**
+     * Chamado uma vez antes das iterações.
+     *
+     * @throws Exception
+     */
+    protected void setup() throws Exception {
+        //Do nothing
+    }
+
+    /**
+     * Chamado uma vez depois das iterações, mesmo se alguma falhar.
+     *
+     * @throws Exception
+     */
+    protected void tearDown() throws Exception {
+        //Do nothing
+    }
+
+    /**
+     * Executa operações até o tempo informado.
+     *
+     * @param deadline Fim da iteração, em {@link System#nanoTime()}.
+     * @param latency Histograma onde podem ser registradas as latências de
+     * cada operação, em ns.
+     * @param blackhole
+     * @return Quantidade de operações executadas.
+     * @throws Exception
+     */
+    protected abstract long iteration(long deadline, LatencyHistogram latency, Blackhole blackhole)
+            throws Exception;
+
+    /**
+     * Benchmark de uma operação curta, executada em sequência até o fim da
+     * iteração. A latência de cada operação não é registrada, pois o custo de
+     * medir seria maior que o da própria operação.
+     */
+    public abstract static class Operation extends BenchmarkCase {
+
+        private static final int BATCH = 64;
+
+        protected Operation(String name) {
+            super(name);
+        }
+
+        @Override
+        protected final long iteration(long deadline, LatencyHistogram latency, Blackhole blackhole)
+                throws Exception {
+            long operations = 0;
+            do {
+                for (int i = 0; i < BATCH; i++) {
+                    operation(blackhole);
+                }
+                operations += BATCH;
+            } while (System.nanoTime() < deadline);
+            return operations;
+        }
+
+        protected abstract void operation(Blackhole blackhole) throws Exception;
+    }
+}
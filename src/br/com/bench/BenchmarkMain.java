@@ -0,0 +1,98 @@
+package br.com.bench;
+
+import br.com.server.log.Logger;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Executa os benchmarks de separação das mensagens, de montagem das partes e
+ * de ponta a ponta em loopback, e grava os resultados em JSON.
+ *
+ * <pre>
+ * Uso: BenchmarkMain [opções] [regex]
+ *   -wi N        iterações de aquecimento (padrão 3)
+ *   -i N         iterações medidas (padrão 5)
+ *   -r MS        duração de cada iteração, em ms (padrão 1000)
+ *   -p 1,16,128  quantidade de partes das mensagens
+ *   -s 64,4096   tamanho de cada parte
+ *   -c 1,100,10000 conexões simultâneas dos benchmarks de loopback
+ *   -rff ARQUIVO arquivo JSON com os resultados (padrão bench-results.json)
+ *   regex        executa somente os benchmarks cujo nome contém a expressão
+ * </pre>
+ *
+ * Durante a execução o log do servidor ({@link Logger}) fica no nível ERROR,
+ * então somente as falhas são registradas.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BenchmarkMain {
+
+    public static void main(String... args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        int[] parts = {1, 16, 128};
+        int[] sizes = {64, 4096};
+        int[] connections = {1, 100, 10_000};
+        String resultFile = "bench-results.json";
+        Pattern filter = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    runner.setWarmupIterations(Integer.parseInt(args[++i]));
+                    break;
+                case "-i":
+                    runner.setMeasurementIterations(Integer.parseInt(args[++i]));
+                    break;
+                case "-r":
+                    runner.setIterationMillis(Long.parseLong(args[++i]));
+                    break;
+                case "-p":
+                    parts = parseInts(args[++i]);
+                    break;
+                case "-s":
+                    sizes = parseInts(args[++i]);
+                    break;
+                case "-c":
+                    connections = parseInts(args[++i]);
+                    break;
+                case "-rff":
+                    resultFile = args[++i];
+                    break;
+                default:
+                    filter = Pattern.compile(args[i]);
+            }
+        }
+
+        List<BenchmarkCase> benchmarks = new ArrayList<>();
+        benchmarks.addAll(FramingBenchmarks.cases(parts, sizes));
+        benchmarks.addAll(AssemblyBenchmarks.cases(parts, sizes));
+        benchmarks.addAll(LoopbackBenchmarks.cases(connections));
+        if (null != filter) {
+            Pattern pattern = filter;
+            benchmarks.removeIf(benchmark -> !pattern.matcher(benchmark.getName()).find());
+        }
+
+        int level = Logger.getLevel();
+        Logger.setLevel(Logger.ERROR);
+        List<BenchmarkResult> results;
+        try {
+            runner.setLog(System.out);
+            results = runner.run(benchmarks);
+        } finally {
+            Logger.setLevel(level);
+        }
+
+        BenchmarkRunner.writeJson(results, Paths.get(resultFile));
+        System.out.println("Results written to " + resultFile);
+    }
+
+    private static int[] parseInts(String values) {
+        String[] split = values.split(",");
+        int[] ints = new int[split.length];
+        for (int i = 0; i < split.length; i++) {
+            ints[i] = Integer.parseInt(split[i].trim());
+        }
+        return ints;
+    }
+}
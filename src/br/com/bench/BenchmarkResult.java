@@ -0,0 +1,162 @@
+package br.com.bench;
+
+import br.com.server.metrics.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resultado das iterações medidas de um {@link BenchmarkCase}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BenchmarkResult {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final BenchmarkCase benchmark;
+    private final List<Double> scores;
+    private final LatencyHistogram latency;
+
+    public BenchmarkResult(BenchmarkCase benchmark) {
+        this.benchmark = benchmark;
+        this.scores = new ArrayList<>();
+        this.latency = new LatencyHistogram();
+    }
+
+    /**
+     * @param operations Operações executadas na iteração.
+     * @param nanos Duração da iteração.
+     * @param iterationLatency Latências registradas na iteração.
+     */
+    void addIteration(long operations, long nanos, LatencyHistogram iterationLatency) {
+        scores.add(operations * 1e9 / nanos);
+        latency.add(iterationLatency);
+    }
+
+    public BenchmarkCase getBenchmark() {
+        return benchmark;
+    }
+
+    /**
+     * @return Operações por segundo de cada iteração.
+     */
+    public List<Double> getScores() {
+        return Collections.unmodifiableList(scores);
+    }
+
+    /**
+     * @return Média de operações por segundo.
+     */
+    public double getScore() {
+        double sum = 0;
+        for (double score : scores) {
+            sum += score;
+        }
+        return scores.isEmpty() ? 0 : sum / scores.size();
+    }
+
+    /**
+     * @return Desvio padrão das operações por segundo entre as iterações.
+     */
+    public double getStdev() {
+        if (scores.size() < 2) {
+            return 0;
+        }
+
+        double mean = getScore();
+        double sum = 0;
+        for (double score : scores) {
+            sum += (score - mean) * (score - mean);
+        }
+        return Math.sqrt(sum / (scores.size() - 1));
+    }
+
+    /**
+     * @return Latências, em ns, de todas as iterações medidas. Fica vazio nos
+     * benchmarks que não medem a latência de cada operação.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return O resultado no formato JSON, com os mesmos nomes de campos
+     * utilizados pelo JMH.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"benchmark\":").append(quote(benchmark.getName()));
+        json.append(",\"mode\":\"thrpt\",\"params\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> param : benchmark.getParams().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append(quote(param.getKey())).append(':').append(quote(param.getValue()));
+        }
+        json.append("},\"primaryMetric\":{\"score\":").append(number(getScore()));
+        json.append(",\"scoreStdev\":").append(number(getStdev()));
+        json.append(",\"scoreUnit\":\"ops/s\",\"rawData\":[");
+        for (int i = 0; i < scores.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(number(scores.get(i)));
+        }
+        json.append("]}");
+
+        if (latency.getCount() > 0) {
+            json.append(",\"secondaryMetrics\":{\"latency\":{\"scoreUnit\":\"us\"");
+            json.append(",\"count\":").append(latency.getCount());
+            json.append(",\"mean\":").append(number(latency.getMean() / 1e3));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                json.append(",\"").append(PERCENTILE_NAMES[i]).append("\":")
+                        .append(number(latency.getPercentile(PERCENTILES[i]) / 1e3));
+            }
+            json.append(",\"max\":").append(number(latency.getMax() / 1e3));
+            json.append("}}");
+        }
+        return json.append('}').toString();
+    }
+
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "%-40s %-36s %14.1f +- %10.1f ops/s",
+                benchmark.getName(), benchmark.getParams(), getScore(), getStdev()));
+        if (latency.getCount() > 0) {
+            sb.append(String.format(Locale.ROOT,
+                    "  p50=%.1fus p99=%.1fus p999=%.1fus",
+                    latency.getPercentile(50) / 1e3,
+                    latency.getPercentile(99) / 1e3,
+                    latency.getPercentile(99.9) / 1e3));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package br.com.bench;
+
+import br.com.server.metrics.LatencyHistogram;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executa benchmarks em iterações de tempo fixo, como o JMH: primeiro as
+ * iterações de aquecimento, descartadas, e depois as iterações medidas. Cada
+ * benchmark roda na mesma JVM, então a ordem de execução pode influenciar o
+ * resultado (o JIT já viu o código dos benchmarks anteriores).
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BenchmarkRunner {
+
+    private int warmupIterations = 3;
+    private int measurementIterations = 5;
+    private long iterationMillis = 1_000;
+    private PrintStream log = System.out;
+
+    public void setWarmupIterations(int warmupIterations) {
+        if (warmupIterations < 0) {
+            throw new IllegalArgumentException("Invalid warmup iterations!");
+        }
+        this.warmupIterations = warmupIterations;
+    }
+
+    public void setMeasurementIterations(int measurementIterations) {
+        if (measurementIterations < 1) {
+            throw new IllegalArgumentException("At least one measurement iteration is required!");
+        }
+        this.measurementIterations = measurementIterations;
+    }
+
+    public void setIterationMillis(long iterationMillis) {
+        if (iterationMillis < 1) {
+            throw new IllegalArgumentException("Invalid iteration time!");
+        }
+        this.iterationMillis = iterationMillis;
+    }
+
+    /**
+     * @param log Onde o progresso é informado.
+     */
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * @param benchmarks
+     * @return Os resultados dos benchmarks que terminaram sem erro.
+     */
+    public List<BenchmarkResult> run(List<BenchmarkCase> benchmarks) {
+        List<BenchmarkResult> results = new ArrayList<>();
+        for (BenchmarkCase benchmark : benchmarks) {
+            try {
+                BenchmarkResult result = run(benchmark);
+                log.println(result);
+                results.add(result);
+            } catch (Exception ex) {
+                log.println(String.format("%-40s %-36s FAILED: %s",
+                        benchmark.getName(), benchmark.getParams(), ex));
+            }
+        }
+        return results;
+    }
+
+    public BenchmarkResult run(BenchmarkCase benchmark) throws Exception {
+        BenchmarkResult result = new BenchmarkResult(benchmark);
+        Blackhole blackhole = new Blackhole();
+        LatencyHistogram latency = new LatencyHistogram();
+        benchmark.setup();
+        try {
+            for (int i = 0; i < warmupIterations + measurementIterations; i++) {
+                latency.reset();
+                long begin = System.nanoTime();
+                long operations = benchmark.iteration(
+                        begin + TimeUnit.MILLISECONDS.toNanos(iterationMillis), latency, blackhole);
+                long elapsed = System.nanoTime() - begin;
+                blackhole.flush();
+                if (i >= warmupIterations) {
+                    result.addIteration(operations, elapsed, latency);
+                }
+            }
+        } finally {
+            benchmark.tearDown();
+        }
+        return result;
+    }
+
+    /**
+     * Grava os resultados em um arquivo JSON, um array com um objeto por
+     * benchmark.
+     *
+     * @param results
+     * @param file
+     * @throws IOException
+     */
+    public static void writeJson(List<BenchmarkResult> results, Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                writer.write("  ");
+                writer.write(results.get(i).toJson());
+                writer.write(i + 1 < results.size() ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        }
+    }
+}
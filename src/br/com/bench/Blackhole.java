@@ -0,0 +1,32 @@
+package br.com.bench;
+
+/**
+ * Consome os resultados das operações medidas, para que o JIT não elimine o
+ * código cujo resultado não é utilizado.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class Blackhole {
+
+    private volatile long sink;
+    private long accumulator;
+
+    public void consume(long value) {
+        accumulator += value;
+    }
+
+    public void consume(boolean value) {
+        accumulator += value ? 1 : 0;
+    }
+
+    public void consume(Object value) {
+        accumulator += System.identityHashCode(value);
+    }
+
+    /**
+     * Publica o valor acumulado, chamado ao fim de cada iteração.
+     */
+    void flush() {
+        sink = accumulator;
+    }
+}
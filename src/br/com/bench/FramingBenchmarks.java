@@ -0,0 +1,117 @@
+package br.com.bench;
+
+import br.com.server.model.impl.EndClientTracker;
+import br.com.server.model.impl.SizeClientTracker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmarks da separação das mensagens. Cada operação adiciona uma mensagem
+ * completa no tracker, parte por parte, verifica o fim da mensagem e a
+ * entrega com {@code takeRequest}, voltando o tracker ao estado inicial. A
+ * adição das partes faz parte da medição porque o
+ * {@link EndClientTracker} procura o delimitador enquanto as partes chegam.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class FramingBenchmarks {
+
+    private static final byte[] CRLF = "\r\n".getBytes();
+    private static final int HEADER_BODY_LENGTH = 5;
+    private static final int MAX_BODY_LENGTH = 99_999;
+
+    private FramingBenchmarks() {
+    }
+
+    public static List<BenchmarkCase> cases(int[] partCounts, int[] sizes) {
+        List<BenchmarkCase> cases = new ArrayList<>();
+        for (int parts : partCounts) {
+            for (int size : sizes) {
+                cases.add(new EndOfRequest(parts, size));
+                if (parts * size - HEADER_BODY_LENGTH <= MAX_BODY_LENGTH) {
+                    cases.add(new SizeOfRequest(parts, size));
+                }
+            }
+        }
+        return cases;
+    }
+
+    private static class EndOfRequest extends TrackerCase {
+
+        private EndClientTracker tracker;
+
+        EndOfRequest(int parts, int size) {
+            super("EndClientTracker.isEndOfRequest", parts, size);
+        }
+
+        @Override
+        protected void setup() throws Exception {
+            super.setup();
+            tracker = new EndClientTracker(Long.MAX_VALUE, false, channel, bufferPool, CRLF);
+        }
+
+        @Override
+        protected void tearDown() throws Exception {
+            tracker.release();
+            super.tearDown();
+        }
+
+        @Override
+        protected byte[] message(int length) {
+            byte[] message = new byte[length];
+            Arrays.fill(message, (byte) 'a');
+            message[length - 2] = '\r';
+            message[length - 1] = '\n';
+            return message;
+        }
+
+        @Override
+        protected void operation(Blackhole blackhole) {
+            fill(tracker);
+            if (!tracker.isEndOfRequest(CRLF)) {
+                throw new IllegalStateException("End of request not found!");
+            }
+            tracker.takeRequest(tracker.frameLength(CRLF)).close();
+        }
+    }
+
+    private static class SizeOfRequest extends TrackerCase {
+
+        private SizeClientTracker tracker;
+
+        SizeOfRequest(int parts, int size) {
+            super("SizeClientTracker.isEndOfRequest", parts, size);
+        }
+
+        @Override
+        protected void setup() throws Exception {
+            super.setup();
+            tracker = new SizeClientTracker(Long.MAX_VALUE, false, channel, bufferPool);
+        }
+
+        @Override
+        protected void tearDown() throws Exception {
+            tracker.release();
+            super.tearDown();
+        }
+
+        @Override
+        protected byte[] message(int length) {
+            byte[] message = new byte[length];
+            Arrays.fill(message, (byte) 'a');
+            byte[] header = String.format("%05d", length - HEADER_BODY_LENGTH).getBytes();
+            System.arraycopy(header, 0, message, 0, HEADER_BODY_LENGTH);
+            return message;
+        }
+
+        @Override
+        protected void operation(Blackhole blackhole) {
+            fill(tracker);
+            if (!tracker.isEndOfRequest(HEADER_BODY_LENGTH)) {
+                throw new IllegalStateException("End of request not found!");
+            }
+            tracker.takeRequest(tracker.frameLength(HEADER_BODY_LENGTH)).close();
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package br.com.bench;
+
+import br.com.server.AbstractServerController;
+import br.com.server.AsyncServer;
+import br.com.server.ClientProtocol;
+import br.com.server.ServerConfig;
+import br.com.server.executor.InlineProcessExecutor;
+import br.com.server.impl.EndProtocol;
+import br.com.server.impl.EndServerController;
+import br.com.server.impl.FixedSizeProtocol;
+import br.com.server.impl.FixedSizeServerController;
+import br.com.server.impl.SizeProtocol;
+import br.com.server.impl.SizeServerController;
+import br.com.server.impl.TimeoutProtocol;
+import br.com.server.impl.TimeoutServerController;
+import br.com.server.metrics.LatencyHistogram;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de ponta a ponta: um controller roda em loopback e N conexões,
+ * todas tratadas por um único Selector na thread do benchmark, enviam uma
+ * mensagem e esperam a resposta antes de enviar a próxima. Cada resposta é
+ * conferida e a latência, do envio até o último byte da resposta, é
+ * registrada.
+ *
+ * No modo TIMEOUT o servidor só responde quando o timeout do cliente é
+ * atingido e depois desconecta, então cada operação é uma nova conexão, e a
+ * resposta termina quando o servidor fecha a conexão. Como a mensagem é tudo
+ * o que chegou até o timeout, a quantidade de bytes informada na resposta
+ * pode ser menor que a enviada quando o servidor está sobrecarregado.
+ *
+ * Cada modo é executado com o servidor baseado em Selector
+ * ({@code Loopback.*}), com o {@link AsyncServer} ({@code AsyncLoopback.*})
+ * e com o servidor baseado em Selector em um Unix domain socket
+ * ({@code UnixLoopback.*}), com o mesmo protocolo e os mesmos clientes. Em
+ * todos eles a mensagem é processada na própria thread de I/O (o
+ * {@link AsyncServer} sempre faz isso, e os controllers usam o
+ * {@link InlineProcessExecutor}), então a diferença entre eles é a forma de
+ * I/O, e não o executor.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class LoopbackBenchmarks {
+
+    public static final String END = "END";
+    public static final String FIXED_LENGTH = "FIXED_LENGTH";
+    public static final String VARIABLE_LENGTH = "VARIABLE_LENGTH";
+    public static final String TIMEOUT = "TIMEOUT";
+    public static final String SELECTOR = "selector";
+    public static final String ASYNC = "async";
+    public static final String UNIX = "unix";
+
+    private static final int BUFF_SIZE = 1024;
+    private static final long SERVER_TIMEOUT = 60_000;
+    private static final long CLIENT_TIMEOUT = 10;
+    private static final byte[] PREFIX = "SUCESSO! PROCESSADO ".getBytes();
+    private static final byte[] SUFFIX = " BYTES!".getBytes();
+
+    private LoopbackBenchmarks() {
+    }
+
+    public static List<BenchmarkCase> cases(int[] connectionCounts) {
+        List<BenchmarkCase> cases = new ArrayList<>();
+        for (String backend : Arrays.asList(SELECTOR, ASYNC, UNIX)) {
+            for (String mode : Arrays.asList(END, FIXED_LENGTH, VARIABLE_LENGTH, TIMEOUT)) {
+                for (int connections : connectionCounts) {
+                    cases.add(new Loopback(backend, mode, connections));
+                }
+            }
+        }
+        return cases;
+    }
+
+    /**
+     * @param mode
+     * @return A mensagem enviada pelos clientes no modo informado.
+     */
+    static byte[] request(String mode) {
+        switch (mode) {
+            case END:
+                return "PING\r\n".getBytes();
+            case FIXED_LENGTH: {
+                byte[] request = new byte[64];
+                Arrays.fill(request, (byte) '1');
+                return request;
+            }
+            case VARIABLE_LENGTH: {
+                byte[] request = new byte[1024];
+                Arrays.fill(request, (byte) '1');
+                byte[] header = String.format("%05d", request.length - 5).getBytes();
+                System.arraycopy(header, 0, request, 0, header.length);
+                return request;
+            }
+            case TIMEOUT:
+                return "Company 1\r\nCompany 2\r\n".getBytes();
+            default:
+                throw new IllegalArgumentException("Invalid mode [" + mode + "]");
+        }
+    }
+
+    private static class Loopback extends BenchmarkCase {
+
+        private final String backend;
+        private final String mode;
+        private final int connections;
+        private final byte[] request;
+        private final byte[] response;
+        private Closeable controller;
+        private AsynchronousChannelGroup group;
+        private Thread serverThread;
+        private Selector selector;
+        private SocketAddress address;
+        private List<Connection> clients;
+
+        Loopback(String backend, String mode, int connections) {
+            super(prefix(backend) + mode);
+            this.backend = backend;
+            this.mode = mode;
+            this.connections = connections;
+            this.request = request(mode);
+            this.response = ("SUCESSO! PROCESSADO " + request.length + " BYTES!").getBytes();
+            param("backend", backend);
+            param("connections", connections);
+        }
+
+        private static String prefix(String backend) {
+            switch (backend) {
+                case ASYNC:
+                    return "AsyncLoopback.";
+                case UNIX:
+                    return "UnixLoopback.";
+                default:
+                    return "Loopback.";
+            }
+        }
+
+        @Override
+        protected void setup() throws Exception {
+            if (ASYNC.equals(backend)) {
+                startAsync();
+            } else {
+                startSelector();
+            }
+
+            selector = Selector.open();
+            clients = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                Connection connection = new Connection(request.length,
+                        TIMEOUT.equals(mode) ? response.length + PREFIX.length : response.length);
+                clients.add(connection);
+                if (!TIMEOUT.equals(mode)) {
+                    connection.open(selector, address);
+                }
+            }
+        }
+
+        private void startSelector() throws IOException {
+            ServerConfig config = new ServerConfig();
+            config.setProcessExecutor(new InlineProcessExecutor());
+            ServerSocketChannel server;
+            if (UNIX.equals(backend)) {
+                config.setAcceptBacklog(connections);
+                Path path = Files.createTempFile("loopback", ".sock");
+                server = AbstractServerController.openUnixDomain(path, config);
+            } else {
+                server = ServerSocketChannel.open();
+                server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                server.bind(new InetSocketAddress("localhost", 0), connections);
+                server.configureBlocking(false);
+            }
+            address = server.getLocalAddress();
+            AbstractServerController<?> selectorController = newController(server, config);
+            controller = selectorController;
+            serverThread = new Thread(() -> {
+                try {
+                    selectorController.runEventLoop();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }, "acceptor");
+            serverThread.start();
+        }
+
+        private void startAsync() throws IOException {
+            ServerConfig config = new ServerConfig();
+            group = AsyncServer.newChannelGroup(config);
+            AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open(group);
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress("localhost", 0), connections);
+            address = server.getLocalAddress();
+            long timeout = TIMEOUT.equals(mode) ? CLIENT_TIMEOUT : SERVER_TIMEOUT;
+            AsyncServer<?> asyncServer = new AsyncServer<>(timeout, BUFF_SIZE, server, newProtocol(), config);
+            controller = asyncServer;
+            serverThread = new Thread(() -> {
+                try {
+                    asyncServer.runEventLoop();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }, "acceptor");
+            serverThread.start();
+        }
+
+        private ClientProtocol<?> newProtocol() {
+            switch (mode) {
+                case END:
+                    return new EndProtocol();
+                case FIXED_LENGTH:
+                    return new FixedSizeProtocol();
+                case VARIABLE_LENGTH:
+                    return new SizeProtocol();
+                case TIMEOUT:
+                    return new TimeoutProtocol();
+                default:
+                    throw new IllegalArgumentException("Invalid mode [" + mode + "]");
+            }
+        }
+
+        private AbstractServerController<?> newController(ServerSocketChannel server,
+                ServerConfig config) throws IOException {
+            switch (mode) {
+                case END:
+                    return new EndServerController(SERVER_TIMEOUT, BUFF_SIZE, server, Selector.open(), config);
+                case FIXED_LENGTH:
+                    return new FixedSizeServerController(SERVER_TIMEOUT, BUFF_SIZE, server, Selector.open(), config);
+                case VARIABLE_LENGTH:
+                    return new SizeServerController(SERVER_TIMEOUT, BUFF_SIZE, server, Selector.open(), config);
+                case TIMEOUT:
+                    return new TimeoutServerController(CLIENT_TIMEOUT, BUFF_SIZE, server, Selector.open(), config);
+                default:
+                    throw new IllegalArgumentException("Invalid mode [" + mode + "]");
+            }
+        }
+
+        @Override
+        protected void tearDown() throws Exception {
+            for (Connection connection : clients) {
+                connection.close();
+            }
+            selector.close();
+            controller.close();
+            serverThread.join();
+            if (null != group) {
+                group.shutdownNow();
+                group.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+
+        @Override
+        protected long iteration(long deadline, LatencyHistogram latency, Blackhole blackhole)
+                throws Exception {
+            for (Connection connection : clients) {
+                if (!connection.busy) {
+                    start(connection);
+                }
+            }
+
+            long operations = 0;
+            while (System.nanoTime() < deadline) {
+                if (0 == selector.select(10)) {
+                    continue;
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isConnectable()) {
+                        connection.channel.finishConnect();
+                        key.interestOps(SelectionKey.OP_READ);
+                        send(connection);
+                    } else if (key.isWritable()) {
+                        send(connection);
+                    } else if (key.isReadable() && receive(connection)) {
+                        latency.record(System.nanoTime() - connection.sentAt);
+                        operations++;
+                        connection.busy = false;
+                        if (System.nanoTime() < deadline) {
+                            start(connection);
+                        }
+                    }
+                }
+            }
+            return operations;
+        }
+
+        private void start(Connection connection) throws IOException {
+            connection.busy = true;
+            connection.sentAt = System.nanoTime();
+            connection.request.clear();
+            connection.request.put(request).flip();
+            connection.response.clear();
+            if (TIMEOUT.equals(mode)) {
+                connection.close();
+                if (connection.connect(selector, address)) {
+                    send(connection);
+                }
+            } else {
+                send(connection);
+            }
+        }
+
+        private void send(Connection connection) throws IOException {
+            connection.channel.write(connection.request);
+            SelectionKey key = connection.channel.keyFor(selector);
+            if (connection.request.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * @return Se a resposta chegou completa.
+         */
+        private boolean receive(Connection connection) throws IOException {
+            ByteBuffer received = connection.response;
+            int readed;
+            try {
+                readed = connection.channel.read(received);
+            } catch (IOException ex) {
+                //o servidor fechou a conexão sem ler o que chegou depois do timeout, o que um
+                //Unix domain socket informa com um reset depois da resposta
+                if (!TIMEOUT.equals(mode)) {
+                    throw ex;
+                }
+                readed = -1;
+            }
+
+            if (readed < 0) {
+                if (!TIMEOUT.equals(mode)) {
+                    throw new IOException("Connection closed by the server!");
+                }
+
+                received.flip();
+                if (!startsWith(received, 0, PREFIX)
+                        || !startsWith(received, received.limit() - SUFFIX.length, SUFFIX)) {
+                    throw new IOException("Unexpected response!");
+                }
+                return true;
+            }
+
+            if (TIMEOUT.equals(mode) || received.hasRemaining()) {
+                return false;
+            }
+
+            received.flip();
+            if (!startsWith(received, 0, response)) {
+                throw new IOException("Unexpected response!");
+            }
+            return true;
+        }
+
+        private static boolean startsWith(ByteBuffer buffer, int index, byte[] expected) {
+            if (index < 0 || buffer.limit() - index < expected.length) {
+                return false;
+            }
+
+            for (int i = 0; i < expected.length; i++) {
+                if (buffer.get(index + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Connection {
+
+        private final ByteBuffer request;
+        private final ByteBuffer response;
+        private SocketChannel channel;
+        private boolean busy;
+        private long sentAt;
+
+        Connection(int requestLength, int responseLength) {
+            this.request = ByteBuffer.allocateDirect(requestLength);
+            this.response = ByteBuffer.allocateDirect(responseLength);
+        }
+
+        /**
+         * Conecta esperando a conexão ser estabelecida.
+         */
+        void open(Selector selector, SocketAddress address) throws IOException {
+            channel = SocketChannel.open(address);
+            configure();
+            channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        /**
+         * Inicia a conexão sem esperar, que termina quando o channel ficar
+         * pronto para o OP_CONNECT.
+         *
+         * @return Se a conexão já foi estabelecida.
+         */
+        boolean connect(Selector selector, SocketAddress address) throws IOException {
+            channel = address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                    : SocketChannel.open();
+            configure();
+            boolean connected = channel.connect(address);
+            channel.register(selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+            return connected;
+        }
+
+        private void configure() throws IOException {
+            channel.configureBlocking(false);
+            if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+        }
+
+        void close() throws IOException {
+            if (null != channel) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package br.com.bench;
+
+import br.com.server.AsyncServer;
+import br.com.server.ServerConfig;
+import br.com.server.VirtualThreadServer;
+import br.com.server.executor.InlineProcessExecutor;
+import br.com.server.executor.VirtualThreadProcessExecutor;
+import br.com.server.impl.EndProtocol;
+import br.com.server.impl.EndServerController;
+import br.com.server.log.Logger;
+import br.com.server.metrics.LatencyHistogram;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compara o servidor baseado em Selector ({@code runEventLoop()} do
+ * {@link EndServerController}) com o {@link VirtualThreadServer} e com o
+ * {@link AsyncServer}, com o mesmo
+ * protocolo (mensagens terminadas em CRLF). Cada cliente envia uma mensagem e
+ * espera a resposta antes de enviar a próxima, e a latência de cada mensagem
+ * é registrada. Os três processam a mensagem na thread que a leu, o
+ * controller com o {@link InlineProcessExecutor}. Em uma JVM sem virtual
+ * threads o {@link VirtualThreadServer} utiliza threads comuns, e a linha
+ * dele é identificada como "virtual(platform fallback)".
+ *
+ * Uso: {@code ServerBenchmark [conexões] [mensagens por conexão] [rodadas]},
+ * por padrão 100 conexões, 2000 mensagens e 3 rodadas (a primeira é
+ * descartada como aquecimento). Durante a execução o log do servidor
+ * ({@link Logger}) fica no nível ERROR.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class ServerBenchmark {
+
+    private static final long TIMEOUT = 60_000;
+    private static final int BUFF_SIZE = 1024;
+    private static final byte[] REQUEST = "PING\r\n".getBytes();
+    private static final byte[] RESPONSE = ("SUCESSO! PROCESSADO " + REQUEST.length + " BYTES!").getBytes();
+
+    public static void main(String... args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        PrintStream out = System.out;
+        int level = Logger.getLevel();
+        Logger.setLevel(Logger.ERROR);
+        try {
+            String virtual = VirtualThreadProcessExecutor.isSupported()
+                    ? "virtual" : "virtual(platform fallback)";
+            out.println(String.format("%-26s %5s %12s %10s %10s %10s %10s",
+                    "server", "round", "req/s", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+            for (int round = 0; round < rounds; round++) {
+                out.println(run("selector", round, connections, requests));
+                out.println(run(virtual, round, connections, requests));
+                out.println(run("async", round, connections, requests));
+            }
+        } finally {
+            Logger.setLevel(level);
+        }
+    }
+
+    private static String run(String kind, int round, int connections, int requests)
+            throws Exception {
+        if ("async".equals(kind)) {
+            return runAsync(round, connections, requests);
+        }
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(new InetSocketAddress("localhost", 0), connections);
+        SocketAddress address = server.getLocalAddress();
+
+        Closeable closeable;
+        Thread serverThread;
+        if ("selector".equals(kind)) {
+            server.configureBlocking(false);
+            ServerConfig config = new ServerConfig();
+            config.setProcessExecutor(new InlineProcessExecutor());
+            EndServerController controller = new EndServerController(
+                    TIMEOUT, BUFF_SIZE, server, Selector.open(), config);
+            closeable = controller;
+            serverThread = new Thread(() -> {
+                try {
+                    controller.runEventLoop();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }, "acceptor");
+        } else {
+            VirtualThreadServer<?> blocking = new VirtualThreadServer<>(
+                    TIMEOUT, BUFF_SIZE, server, new EndProtocol());
+            closeable = blocking;
+            serverThread = new Thread(() -> {
+                try {
+                    blocking.runEventLoop();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }, "acceptor");
+        }
+        serverThread.start();
+
+        try {
+            return measure(kind, round, address, connections, requests);
+        } finally {
+            closeable.close();
+            serverThread.join();
+        }
+    }
+
+    private static String runAsync(int round, int connections, int requests) throws Exception {
+        ServerConfig config = new ServerConfig();
+        AsynchronousChannelGroup group = AsyncServer.newChannelGroup(config);
+        try {
+            AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open(group);
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress("localhost", 0), connections);
+            AsyncServer<?> async = new AsyncServer<>(TIMEOUT, BUFF_SIZE, server, new EndProtocol(), config);
+            Thread serverThread = new Thread(() -> {
+                try {
+                    async.runEventLoop();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }, "acceptor");
+            serverThread.start();
+
+            try {
+                return measure("async", round, server.getLocalAddress(), connections, requests);
+            } finally {
+                async.close();
+                serverThread.join();
+            }
+        } finally {
+            group.shutdownNow();
+            group.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static String measure(String kind, int round, SocketAddress address,
+            int connections, int requests) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Thread client = new Thread(() -> {
+                try {
+                    runClient(address, requests, latency, ready, start);
+                } catch (Exception ex) {
+                    errors.incrementAndGet();
+                    ready.countDown();
+                }
+            }, "client-" + i);
+            client.start();
+            clients.add(client);
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        if (0 != errors.get()) {
+            throw new IllegalStateException(errors.get() + " clients failed!");
+        }
+
+        double throughput = latency.getCount() * 1e9 / elapsed;
+        return String.format("%-26s %5d %12.0f %10.1f %10.1f %10.1f %10.1f",
+                kind, round, throughput,
+                latency.getPercentile(50) / 1e3,
+                latency.getPercentile(99) / 1e3,
+                latency.getPercentile(99.9) / 1e3,
+                latency.getMax() / 1e3);
+    }
+
+    private static void runClient(
+            SocketAddress address,
+            int requests,
+            LatencyHistogram latency,
+            CountDownLatch ready,
+            CountDownLatch start
+    ) throws Exception {
+        try (SocketChannel client = SocketChannel.open(address)) {
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer request = ByteBuffer.allocateDirect(REQUEST.length);
+            ByteBuffer response = ByteBuffer.allocateDirect(RESPONSE.length);
+            byte[] received = new byte[RESPONSE.length];
+            ready.countDown();
+            start.await();
+
+            for (int i = 0; i < requests; i++) {
+                long begin = System.nanoTime();
+                request.clear();
+                request.put(REQUEST).flip();
+                while (request.hasRemaining()) {
+                    client.write(request);
+                }
+
+                response.clear();
+                while (response.hasRemaining()) {
+                    if (client.read(response) < 0) {
+                        throw new IOException("Connection closed by the server!");
+                    }
+                }
+                latency.record(System.nanoTime() - begin);
+
+                response.flip();
+                response.get(received);
+                if (!Arrays.equals(RESPONSE, received)) {
+                    throw new IOException("Unexpected response: " + new String(received));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package br.com.bench;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.model.AbstractClientTracker;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Base dos benchmarks de tracker: monta uma mensagem com {@code parts}
+ * partes de {@code size} bytes, lidas do pool como o reactor faz.
+ *
+ * @author Guilherme Alves Silveira
+ */
+abstract class TrackerCase extends BenchmarkCase.Operation {
+
+    protected final int parts;
+    protected final int size;
+    protected final BufferPool bufferPool;
+    protected SocketChannel channel;
+    private byte[] message;
+
+    TrackerCase(String name, int parts, int size) {
+        super(name);
+        this.parts = parts;
+        this.size = size;
+        this.bufferPool = BufferPool.getDefault();
+        param("parts", parts);
+        param("size", size);
+    }
+
+    @Override
+    protected void setup() throws Exception {
+        bufferPool.attachThreadCache();
+        channel = SocketChannel.open();
+        message = message(parts * size);
+        if (message.length != parts * size) {
+            throw new IllegalStateException("Invalid message length!");
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        channel.close();
+    }
+
+    /**
+     * @param length Tamanho total da mensagem.
+     * @return Mensagem enviada em cada operação.
+     */
+    protected abstract byte[] message(int length);
+
+    /**
+     * Adiciona a mensagem no tracker, uma parte por vez.
+     *
+     * @param tracker
+     */
+    protected void fill(AbstractClientTracker<?> tracker) {
+        for (int i = 0; i < parts; i++) {
+            ByteBuffer part = bufferPool.lease(size);
+            part.put(message, i * size, size).flip();
+            tracker.addRequestPart(part);
+        }
+    }
+}
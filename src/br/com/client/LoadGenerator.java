@@ -0,0 +1,695 @@
+package br.com.client;
+
+import br.com.server.metrics.LatencyHistogram;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gerador de carga em malha aberta: as mensagens são enviadas em uma taxa
+ * constante, independente de quanto o servidor demora para responder. Cada
+ * mensagem tem um horário previsto de envio, e a latência é medida a partir
+ * dele, então o tempo que uma mensagem ficou esperando por uma conexão livre
+ * também é contado (evitando o coordinated omission). A latência medida a
+ * partir do envio real também é informada, para comparação.
+ *
+ * Todas as conexões são tratadas por um único Selector. As mensagens são
+ * distribuídas entre as conexões em sequência e cada conexão tem no máximo
+ * {@code pipeline} mensagens sem resposta; as demais esperam na fila da
+ * conexão. Cada resposta é conferida byte a byte. No modo TIMEOUT o servidor
+ * só responde quando o timeout é atingido e depois desconecta, então cada
+ * mensagem abre uma nova conexão e {@code connections} é a quantidade máxima
+ * de conexões abertas ao mesmo tempo.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class LoadGenerator {
+
+    private static final byte[] PREFIX = "SUCESSO! PROCESSADO ".getBytes();
+    private static final byte[] SUFFIX = " BYTES!".getBytes();
+    private static final byte[] BUSY = "SERVIDOR OCUPADO!".getBytes();
+    private static final int HEADER_BODY_LENGTH = 5;
+    private static final int FIXED_REQUEST_LENGTH = 64;
+    private static final int MAX_OUT_BUFFER = 8 * 1024;
+    private static final int IN_BUFFER = 4 * 1024;
+    private static final long DRAIN_MILLIS = 10_000;
+
+    private final SocketAddress address;
+    private final String mode;
+    private int connections = 10;
+    private int rate = 1_000;
+    private long durationMillis = 10_000;
+    private int payloadSize = -1;
+    private int pipeline = 1;
+    private PrintStream out = System.out;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LatencyHistogram intervalLatency = new LatencyHistogram();
+    private long sent;
+    private long completed;
+    private long busy;
+    private long partial;
+    private long errors;
+
+    private byte[] payload;
+    private byte[] response;
+    private Selector selector;
+    private List<Connection> pool;
+    private final LongQueue waiting = new LongQueue();
+    private int open;
+    private int nextConnection;
+
+    /**
+     * @param address Endereço do servidor, um {@code InetSocketAddress} ou um
+     * {@link UnixDomainSocketAddress}.
+     * @param mode Um dos modos de {@link MainClient}.
+     */
+    public LoadGenerator(SocketAddress address, String mode) {
+        this.address = Objects.requireNonNull(address);
+        switch (Objects.requireNonNull(mode)) {
+            case MainClient.FIXED_LENGTH:
+            case MainClient.VARIABLE_LENGTH:
+            case MainClient.TIMEOUT:
+            case MainClient.END:
+                this.mode = mode;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid operation [" + mode + "]");
+        }
+    }
+
+    public void setConnections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("At least one connection is required!");
+        }
+        this.connections = connections;
+    }
+
+    /**
+     * @param rate Mensagens enviadas por segundo.
+     */
+    public void setRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Invalid rate!");
+        }
+        this.rate = rate;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        if (durationMillis < 1) {
+            throw new IllegalArgumentException("Invalid duration!");
+        }
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @param payloadSize Tamanho de cada mensagem, incluindo o cabeçalho ou o
+     * delimitador do modo. No modo FIXED_LENGTH deve ser 64.
+     */
+    public void setPayloadSize(int payloadSize) {
+        this.payloadSize = payloadSize;
+    }
+
+    /**
+     * @param pipeline Quantidade máxima de mensagens sem resposta em cada
+     * conexão.
+     */
+    public void setPipeline(int pipeline) {
+        if (pipeline < 1) {
+            throw new IllegalArgumentException("Invalid pipeline depth!");
+        }
+        this.pipeline = pipeline;
+    }
+
+    public void setOut(PrintStream out) {
+        this.out = Objects.requireNonNull(out);
+    }
+
+    /**
+     * @return Latências, em ns, medidas a partir do horário previsto de
+     * envio de cada mensagem.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Latências, em ns, medidas a partir do envio real de cada
+     * mensagem.
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getBusy() {
+        return busy;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gera a carga durante o tempo configurado e espera as respostas das
+     * mensagens enviadas.
+     *
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        payload = payload(mode, payloadSize);
+        response = concat(PREFIX, String.valueOf(payload.length).getBytes(), SUFFIX);
+        selector = Selector.open();
+        pool = new ArrayList<>();
+        try {
+            if (!isTimeoutMode()) {
+                for (int i = 0; i < connections; i++) {
+                    Connection connection = new Connection();
+                    connection.open();
+                    pool.add(connection);
+                }
+                open = connections;
+            }
+            generate();
+        } finally {
+            for (Connection connection : pool) {
+                connection.close();
+            }
+            selector.close();
+        }
+    }
+
+    private void generate() throws IOException {
+        double interval = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long drainEnd = end + TimeUnit.MILLISECONDS.toNanos(DRAIN_MILLIS);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long scheduled = 0;
+        while (true) {
+            long now = System.nanoTime();
+            long intended;
+            while ((intended = start + (long) (scheduled * interval)) <= now && intended < end) {
+                schedule(intended);
+                scheduled++;
+            }
+
+            if (now >= nextReport) {
+                report((nextReport - start) / TimeUnit.SECONDS.toNanos(1));
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+
+            if ((now >= end && completed + errors >= sent && waiting.isEmpty())
+                    || now >= drainEnd) {
+                break;
+            }
+
+            long wait = (intended < end ? Math.min(intended, nextReport) : nextReport)
+                    - System.nanoTime();
+            if (wait > TimeUnit.MILLISECONDS.toNanos(1)) {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(wait));
+            } else {
+                selector.selectNow();
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isConnectable()) {
+                        connection.channel.finishConnect();
+                        connection.flush();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.receive();
+                    }
+                } catch (IOException ex) {
+                    connection.fail();
+                }
+            }
+        }
+        errors += waiting.size();
+        for (Connection connection : pool) {
+            errors += connection.inFlight.size() + connection.queued.size();
+        }
+    }
+
+    /**
+     * Entrega uma mensagem para a próxima conexão. Um erro de escrita ou de
+     * conexão descarta somente a conexão, contando as mensagens dela como
+     * erros, e a carga continua.
+     */
+    private void schedule(long intended) {
+        sent++;
+        if (isTimeoutMode()) {
+            if (open < connections) {
+                startTimeoutConnection(intended);
+            } else {
+                waiting.add(intended);
+            }
+            return;
+        }
+
+        Connection connection = pool.get(nextConnection);
+        nextConnection = (nextConnection + 1) % pool.size();
+        if (null == connection.channel) {
+            errors++;
+            return;
+        }
+        connection.queued.add(intended);
+        try {
+            connection.flush();
+        } catch (IOException ex) {
+            connection.fail();
+        }
+    }
+
+    private void startTimeoutConnection(long intended) {
+        Connection connection = new Connection();
+        pool.add(connection);
+        open++;
+        connection.queued.add(intended);
+        try {
+            connection.connect();
+        } catch (IOException ex) {
+            //não chama closed(), que iniciaria a próxima conexão recursivamente
+            connection.discard();
+            pool.remove(connection);
+            open--;
+        }
+    }
+
+    private void completed(Connection connection, boolean busyResponse, boolean partialResponse) {
+        long now = System.nanoTime();
+        long intended = connection.inFlight.poll();
+        long sentAt = connection.sentAt.poll();
+        if (busyResponse) {
+            busy++;
+        } else if (partialResponse) {
+            partial++;
+        }
+        completed++;
+        latency.record(now - intended);
+        serviceTime.record(now - sentAt);
+        intervalLatency.record(now - intended);
+    }
+
+    private void closed(Connection connection) {
+        pool.remove(connection);
+        open--;
+        while (!waiting.isEmpty() && open < connections) {
+            startTimeoutConnection(waiting.poll());
+        }
+    }
+
+    private void report(long second) {
+        out.println(String.format(Locale.ROOT,
+                "[%4ds] sent=%d completed=%d busy=%d errors=%d p50=%.3fms p99=%.3fms max=%.3fms",
+                second, sent, completed, busy, errors,
+                intervalLatency.getPercentile(50) / 1e6,
+                intervalLatency.getPercentile(99) / 1e6,
+                intervalLatency.getMax() / 1e6));
+        intervalLatency.reset();
+    }
+
+    /**
+     * Escreve o resumo da execução e a distribuição das latências, em ms.
+     *
+     * @param out
+     */
+    public void printSummary(PrintStream out) {
+        out.println();
+        out.println(String.format(Locale.ROOT,
+                "mode=%s connections=%d rate=%d/s pipeline=%d payload=%d bytes",
+                mode, connections, rate, pipeline, payload.length));
+        out.println(String.format(Locale.ROOT,
+                "sent=%d completed=%d busy=%d partial=%d errors=%d throughput=%.1f/s",
+                sent, completed, busy, partial, errors,
+                completed * 1000.0 / durationMillis));
+        out.println(String.format(Locale.ROOT,
+                "service time (from actual send): p50=%.3fms p99=%.3fms max=%.3fms",
+                serviceTime.getPercentile(50) / 1e6,
+                serviceTime.getPercentile(99) / 1e6,
+                serviceTime.getMax() / 1e6));
+        out.println();
+        out.println("Latency (ms) from intended send time, corrected for coordinated omission:");
+        latency.outputPercentileDistribution(out, 5, 1e6);
+    }
+
+    private boolean isTimeoutMode() {
+        return MainClient.TIMEOUT.equals(mode);
+    }
+
+    /**
+     * @param mode
+     * @param size Tamanho da mensagem, ou -1 para o tamanho padrão do modo.
+     * @return A mensagem enviada no modo informado.
+     */
+    static byte[] payload(String mode, int size) {
+        byte[] payload;
+        switch (mode) {
+            case MainClient.FIXED_LENGTH:
+                if (-1 != size && FIXED_REQUEST_LENGTH != size) {
+                    throw new IllegalArgumentException("The FIXED_LENGTH payload must have "
+                            + FIXED_REQUEST_LENGTH + " bytes!");
+                }
+                payload = new byte[FIXED_REQUEST_LENGTH];
+                Arrays.fill(payload, (byte) '1');
+                return payload;
+            case MainClient.VARIABLE_LENGTH:
+                size = -1 == size ? 10_000 + HEADER_BODY_LENGTH : size;
+                if (size < HEADER_BODY_LENGTH || size - HEADER_BODY_LENGTH > 99_999) {
+                    throw new IllegalArgumentException("Invalid VARIABLE_LENGTH payload size!");
+                }
+                payload = new byte[size];
+                Arrays.fill(payload, (byte) '1');
+                byte[] header = String.format("%05d", size - HEADER_BODY_LENGTH).getBytes();
+                System.arraycopy(header, 0, payload, 0, HEADER_BODY_LENGTH);
+                return payload;
+            case MainClient.END:
+                size = -1 == size ? 128 : size;
+                if (size < 3) {
+                    throw new IllegalArgumentException("Invalid END payload size!");
+                }
+                payload = filled(size - 2);
+                payload = Arrays.copyOf(payload, size);
+                payload[size - 2] = '\r';
+                payload[size - 1] = '\n';
+                return payload;
+            default:
+                size = -1 == size ? 128 : size;
+                if (size < 1) {
+                    throw new IllegalArgumentException("Invalid TIMEOUT payload size!");
+                }
+                return filled(size);
+        }
+    }
+
+    private static byte[] filled(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        int length = 0;
+        for (byte[] array : arrays) {
+            length += array.length;
+        }
+
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] array : arrays) {
+            System.arraycopy(array, 0, result, offset, array.length);
+            offset += array.length;
+        }
+        return result;
+    }
+
+    /**
+     * Compara os bytes do inicio do buffer com a sequência esperada.
+     *
+     * @return 1 se a sequência está completa, 0 se o buffer tem somente o
+     * inicio dela e -1 se os bytes são diferentes.
+     */
+    private static int match(ByteBuffer buffer, byte[] expected) {
+        int length = Math.min(buffer.remaining(), expected.length);
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(buffer.position() + i) != expected[i]) {
+                return -1;
+            }
+        }
+        return length == expected.length ? 1 : 0;
+    }
+
+    private final class Connection {
+
+        private final ByteBuffer outBuffer;
+        private final ByteBuffer inBuffer;
+        /**
+         * Horário previsto das mensagens ainda não enviadas.
+         */
+        private final LongQueue queued;
+        /**
+         * Horário previsto e horário do envio das mensagens sem resposta.
+         */
+        private final LongQueue inFlight;
+        private final LongQueue sentAt;
+        private SocketChannel channel;
+        private SelectionKey key;
+        /**
+         * Bytes das mensagens em trânsito ainda não copiados para o buffer de
+         * saída, e a posição na mensagem atual.
+         */
+        private long unsent;
+        private int offset;
+
+        Connection() {
+            this.outBuffer = ByteBuffer.allocate((int) Math.min(
+                    (long) payload.length * pipeline, MAX_OUT_BUFFER));
+            this.inBuffer = ByteBuffer.allocate(isTimeoutMode()
+                    ? response.length + PREFIX.length : IN_BUFFER);
+            this.queued = new LongQueue();
+            this.inFlight = new LongQueue();
+            this.sentAt = new LongQueue();
+        }
+
+        /**
+         * Conecta esperando a conexão ser estabelecida.
+         */
+        void open() throws IOException {
+            channel = SocketChannel.open(address);
+            configure();
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        /**
+         * Inicia a conexão sem esperar, a mensagem é enviada quando a conexão
+         * for estabelecida.
+         */
+        void connect() throws IOException {
+            channel = address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                    : SocketChannel.open();
+            configure();
+            if (channel.connect(address)) {
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+                flush();
+            } else {
+                key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        }
+
+        /**
+         * Os Unix domain sockets não têm TCP_NODELAY.
+         */
+        private void configure() throws IOException {
+            channel.configureBlocking(false);
+            if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+        }
+
+        /**
+         * Envia as mensagens da fila, respeitando o limite do pipeline.
+         */
+        void flush() throws IOException {
+            if (!channel.isConnected()) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            while (!queued.isEmpty() && inFlight.size() < pipeline) {
+                inFlight.add(queued.poll());
+                sentAt.add(now);
+                unsent += payload.length;
+            }
+
+            while (true) {
+                while (outBuffer.hasRemaining() && unsent > 0) {
+                    int length = (int) Math.min(Math.min(outBuffer.remaining(), unsent),
+                            payload.length - offset);
+                    outBuffer.put(payload, offset, length);
+                    unsent -= length;
+                    offset = (offset + length) % payload.length;
+                }
+
+                outBuffer.flip();
+                try {
+                    channel.write(outBuffer);
+                } finally {
+                    outBuffer.compact();
+                }
+
+                if (0 != outBuffer.position() || 0 == unsent) {
+                    break;
+                }
+            }
+
+            key.interestOps(0 == outBuffer.position()
+                    ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        void receive() throws IOException {
+            int readed = channel.read(inBuffer);
+            if (isTimeoutMode()) {
+                if (readed < 0 || !inBuffer.hasRemaining()) {
+                    inBuffer.flip();
+                    boolean valid = inBuffer.remaining() > PREFIX.length + SUFFIX.length
+                            && 1 == match(inBuffer, PREFIX);
+                    if (valid) {
+                        inBuffer.position(inBuffer.limit() - SUFFIX.length);
+                        valid = 1 == match(inBuffer, SUFFIX);
+                        inBuffer.rewind();
+                    }
+                    if (!valid || inFlight.isEmpty()) {
+                        fail();
+                        return;
+                    }
+                    completed(this, false, 1 != match(inBuffer, response));
+                    close();
+                    closed(this);
+                }
+                return;
+            }
+
+            if (readed < 0) {
+                fail();
+                return;
+            }
+
+            inBuffer.flip();
+            while (inBuffer.hasRemaining()) {
+                int success = match(inBuffer, response);
+                int busyResponse = match(inBuffer, BUSY);
+                if ((1 == success || 1 == busyResponse) && inFlight.isEmpty()) {
+                    inBuffer.compact();
+                    fail();
+                    return;
+                }
+
+                if (1 == success) {
+                    inBuffer.position(inBuffer.position() + response.length);
+                    completed(this, false, false);
+                } else if (1 == busyResponse) {
+                    inBuffer.position(inBuffer.position() + BUSY.length);
+                    completed(this, true, false);
+                } else if (0 == success || 0 == busyResponse) {
+                    break;
+                } else {
+                    inBuffer.compact();
+                    fail();
+                    return;
+                }
+            }
+            inBuffer.compact();
+            flush();
+        }
+
+        /**
+         * Descarta a conexão depois de um erro, contando as mensagens sem
+         * resposta como erros.
+         */
+        void fail() {
+            discard();
+            if (isTimeoutMode()) {
+                closed(this);
+            }
+        }
+
+        void discard() {
+            errors += inFlight.size() + queued.size();
+            inFlight.clear();
+            queued.clear();
+            sentAt.clear();
+            close();
+        }
+
+        void close() {
+            if (null != channel) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    //A conexão já está sendo descartada, não há o que fazer
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Fila de longs sem boxing, que cresce conforme necessário.
+     */
+    private static final class LongQueue {
+
+        private long[] values = new long[16];
+        private int head;
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                long[] grown = new long[values.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = values[(head + i) % values.length];
+                }
+                values = grown;
+                head = 0;
+            }
+            values[(head + size) % values.length] = value;
+            size++;
+        }
+
+        long poll() {
+            if (0 == size) {
+                throw new IllegalStateException("Empty queue!");
+            }
+            long value = values[head];
+            head = (head + 1) % values.length;
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return 0 == size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
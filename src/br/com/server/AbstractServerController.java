@@ -1,297 +1,698 @@
-package br.com.server;
-
-import static br.com.MainServer.DEBUG;
-
-import br.com.server.model.AbstractClientTracker;
-import br.com.server.model.StatusClientTracker;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
-/**
- * Classe de examplo usando o selector em um socket
- *
- * @author Guilherme Alves Silveira
- */
-public abstract class AbstractServerController<T extends AbstractClientTracker>
-        extends AbstractServerNIO {
-
-    private static final int CLIENT_DESCONNECTED = -1;
-    private static final int INVISIBLE_TO_SELECT = 0;
-    protected final ConcurrentMap<SocketChannel, T> tracker = new ConcurrentHashMap<>();
-    protected final long timeout;
-    protected final int buffSize;
-
-    public AbstractServerController(
-            long timeout,
-            int buffSize,
-            ServerSocketChannel server,
-            Selector selector
-    ) throws ClosedChannelException {
-        super(server, selector);
-        this.timeout = timeout;
-        this.buffSize = buffSize;
-    }
-
-    @Override
-    protected void before() {
-        writeToClientsWithTimeout();
-    }
-
-    @Override
-    protected void between() {
-        //Do nothing
-    }
-
-    @Override
-    protected void beginLoop() {
-        //Do nothing
-    }
-
-    @Override
-    protected void after() {
-        //Do nothing
-    }
-
-    /**
-     * Utilizado para ser sobreescrito para processar algo quando um timeout
-     * ocorre.
-     */
-    protected abstract void whenTimeout();
-
-    private void writeToClientsWithTimeout() {
-        synchronized (this) {
-            tracker.forEach((socketClient, clientTracker) -> {
-                try {
-                    if (clientTracker.getStatus() == StatusClientTracker.PROCESS) {
-                        return;
-                    }
-
-                    if (timeoutSocketClient(clientTracker)) {
-                        whenTimeout();
-                        invisibleToSelect(socketClient);
-                        process(clientTracker).whenComplete((nothing, th) -> {
-                            try {
-                                registerInSelector(socketClient, SelectionKey.OP_WRITE);
-                            } catch (IOException ex) {
-                                ex.printStackTrace();
-                                invalidateClient(socketClient);
-                            }
-                        });
-                    }
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                    invalidateClient(socketClient);
-                    try {
-                        socketClient.close();
-                    } catch (IOException ex1) {
-                        ex1.printStackTrace();
-                    }
-                }
-            });
-        }
-    }
-
-    private void invisibleToSelect(SocketChannel socketClient) throws ClosedChannelException {
-        socketClient.register(selector, INVISIBLE_TO_SELECT);
-    }
-
-    /**
-     * Metodo que trata da conexao do cliente. Esse recbe como arqumento uma
-     * instancia do ServerScocketCliente e um Selector. Logo apos será
-     * configurado alguns parametros referentes a conexao com o cliente, e
-     * configuaração do modo como ele irar tratar a conexao, se será bloqueante
-     * ou nao.Tambem a configuração do metodo registro que irar receber uma
-     * instancia do Selector e a flag indicando que o socket ira ler do cliente
-     *
-     * @param server
-     * @param selector
-     * @throws ClosedChannelException
-     * @throws IOException
-     */
-    @Override
-    protected void acceptClient()
-            throws ClosedChannelException, IOException {
-        //Pode ser feito desta maneira também:
-        //ServerSocketChannel s = (ServerSocketChannel) key.channel();
-        //SocketChannel socket = s.accept();
-        //Ou dessa:
-        SocketChannel socketClient = server.accept();//aceitando o cliente
-        createClientTracker(socketClient);
-        socketClient.configureBlocking(false);//configura para nao bloqueante
-        socketClient.register(selector, SelectionKey.OP_READ);//registra para ler no proximo envio do cliente
-    }
-
-    private void createClientTracker(SocketChannel socketClient) {
-        tracker.put(socketClient, newClientTracker(socketClient));
-    }
-
-    /**
-     * Esse metodo é resonsavel por ler informações na forma de byte do
-     * cliente,ou seja ele irá receber e ler os dados enviados do cliente.
-     *
-     * @param key
-     * @param selector
-     * @throws ClosedChannelException
-     * @throws IOException
-     */
-    @Override
-    protected void readFromClient(SelectionKey key)
-            throws ClosedChannelException, IOException {
-
-        //instancia um objeto do tipo ByteBuffer e limita para receber 1024 bytes
-        ByteBuffer buf = ByteBuffer.allocateDirect(buffSize);
-        //recebe a instancia key de acordo com a condicional definida na chamada. Aqui o retorno e um objeto generico
-        //do tipo SelectableChannel ou seja um channel do tipo selecionavel
-        SocketChannel socketClient = (SocketChannel) key.channel();
-        T clientTracker = tracker.get(socketClient);
-        if (!tryRead(socketClient, buf)) {
-            invalidateClient(socketClient);
-            return;
-        }
-
-        clientTracker.addRequestPart(buf);
-        if (!isEndOfMessage(clientTracker)
-                && !timeoutSocketClient(clientTracker)) {
-            socketClient.register(selector, SelectionKey.OP_READ);
-            return;
-        }
-
-        if (clientTracker.getStatus() == StatusClientTracker.TIMEOUT) {
-            return;
-        }
-
-        if (DEBUG) {
-            System.out.println("PROCESSED " + clientTracker.getClient());
-        }
-
-        clientTracker.setStatus(StatusClientTracker.PROCESS);
-        invisibleToSelect(socketClient);
-        process(clientTracker).whenComplete((nothing, th) -> {
-            if (!socketClient.isOpen()) {
-                return;
-            }
-            
-            try {
-                System.out.println("COMPLETED!");
-                registerInSelector(socketClient, SelectionKey.OP_WRITE);
-            } catch (ClosedChannelException ex) {
-                invalidateClient(socketClient);
-            }
-        });
-    }
-
-    private boolean tryRead(SocketChannel socketClient, ByteBuffer buf) {
-        int readed;
-        try {
-            readed = socketClient.read(buf);
-            buf.flip();
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            return false;
-        }
-
-        return CLIENT_DESCONNECTED != readed;
-    }
-
-    protected abstract T newClientTracker(SocketChannel socketClient);
-
-    protected abstract boolean isEndOfMessage(T clientTracker);
-
-    @Override
-    protected final void writeToClient(SelectionKey key)
-            throws IOException {
-        SocketChannel socketClient = (SocketChannel) key.channel();
-        T clientTracker = tracker.get(socketClient);
-        try {
-            if (null == clientTracker || null == clientTracker.getResponse()) {
-                System.out.println("AQUI");
-            }
-
-            int writed = socketClient.write(clientTracker.getResponse());
-            if (timeoutSocketClient(clientTracker)) {
-                tracker.remove(socketClient);
-            }
-
-            if (CLIENT_DESCONNECTED == writed
-                    || isClientDisconnected(socketClient)) {
-                if (DEBUG) {
-                    System.out.println(String.format("[%s DISCONNECTED]",
-                            socketClient.getRemoteAddress()));
-                }
-                invalidateClient(socketClient);
-            }
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            invalidateClient(socketClient);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-    }
-
-    private boolean isClientDisconnected(SocketChannel socketClient)
-            throws IOException {
-        ByteBuffer clientDesconnected = ByteBuffer.allocate(1);
-        return CLIENT_DESCONNECTED == socketClient.read(clientDesconnected);
-    }
-
-    /**
-     * Registra o SocketChannel com a operação informada e notifica o selector
-     * que existe channels para serem processados. Caso o selector não seja
-     * notificado (se esse método não for chamado), o mesmo, só ira processar as
-     * chaves na proxima iteração (podendo ser nunca, dependendo de como está
-     * configurado o tempo de espera para ser executado cada iteração no
-     * {@code selector.select(TEMPO_AQUI_EM_MS)}), se notificado, a iteração já
-     * é processada no mesmo momento.
-     *
-     * @param socketClient Socket do cliente
-     * @param operation Operação presente nas constantes do objeto SelectionKey,
-     * tais como OP_READ, OP_WRITE, etc.
-     * @throws ClosedChannelException
-     */
-    private void registerInSelector(
-            SocketChannel socketClient,
-            int operation
-    ) throws ClosedChannelException {
-        socketClient.register(selector, operation);
-        selector.wakeup();
-    }
-
-    private void invalidateClient(SocketChannel socketClient) {
-        try {
-            tracker.remove(socketClient);
-            socketClient.close();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-    }
-
-    protected boolean timeoutSocketClient(AbstractClientTracker clientTracker)
-            throws IOException {
-        if (clientTracker.getStatus() == StatusClientTracker.TIMEOUT) {
-            return true;
-        } else if (clientTracker.getStatus() == StatusClientTracker.PROCESS) {
-            return false;
-        }
-
-        boolean isTimeout = clientTracker.isTimeoutReached();
-        if (isTimeout) {
-
-            if (DEBUG) {
-                System.out.println("TIMEOUT " + clientTracker.getClient());
-            }
-
-            clientTracker.setStatus(StatusClientTracker.TIMEOUT);
-        }
-        return isTimeout;
-    }
-
-    protected abstract <U> CompletableFuture<U> process(T clientTracker);
-}
+package br.com.server;
+
+import br.com.server.buffer.AdaptiveReceiveAllocator;
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.buffer.FileRegion;
+import br.com.server.buffer.OutboundQueue;
+import br.com.server.executor.ProcessExecutor;
+import br.com.server.log.Logger;
+import br.com.server.model.AbstractClientTracker;
+import br.com.server.model.InvalidFrameException;
+import br.com.server.model.StatusClientTracker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classe de examplo usando o selector em um socket
+ *
+ * @author Guilherme Alves Silveira
+ */
+public abstract class AbstractServerController<T extends AbstractClientTracker<?>>
+        extends AbstractServerNIO {
+
+    private static final int CLIENT_DESCONNECTED = -1;
+    private static final int INVISIBLE_TO_SELECT = 0;
+    private static final byte[] BUSY = "SERVIDOR OCUPADO!".getBytes();
+    private static final Logger LOG = Logger.getLogger(AbstractServerController.class);
+    protected final long timeout;
+    protected final int buffSize;
+    protected final BufferPool bufferPool;
+    protected final ProcessExecutor processExecutor;
+    protected final AdaptiveReceiveAllocator receiveAllocator;
+    private final LongAdder frames;
+
+    public AbstractServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server,
+            Selector selector
+    ) throws IOException {
+        this(timeout, buffSize, server, selector, new ServerConfig());
+    }
+
+    public AbstractServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server,
+            Selector selector,
+            ServerConfig config
+    ) throws IOException {
+        super(server, selector, config);
+        this.timeout = timeout;
+        this.buffSize = buffSize;
+        this.bufferPool = config.getBufferPool();
+        this.processExecutor = config.getProcessExecutor();
+        this.receiveAllocator = config.getReceiveAllocator();
+        this.frames = metrics.frames(framingMode());
+        metrics.setProcessExecutor(processExecutor);
+    }
+
+    /**
+     * @return Nome do modo de framing nas métricas. Por padrão, o nome da
+     * classe sem o sufixo ServerController, por exemplo "size".
+     */
+    protected String framingMode() {
+        String name = getClass().getSimpleName();
+        if (name.endsWith("ServerController")) {
+            name = name.substring(0, name.length() - "ServerController".length());
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param key
+     * @return O tracker do cliente, guardado no attachment da key, ou null se
+     * o cliente já foi desconectado.
+     */
+    @SuppressWarnings("unchecked")
+    protected T tracker(SelectionKey key) {
+        return (T) key.attachment();
+    }
+
+    @Override
+    protected void before(Reactor reactor) {
+        reactor.getTimingWheel().expire(System.currentTimeMillis(),
+                key -> writeToClientWithTimeout(reactor, key));
+    }
+
+    @Override
+    protected void between(Reactor reactor) {
+        //Do nothing
+    }
+
+    @Override
+    protected void beginLoop(Reactor reactor) {
+        //Do nothing
+    }
+
+    @Override
+    protected void after(Reactor reactor) {
+        //Do nothing
+    }
+
+    /**
+     * Utilizado para ser sobreescrito para processar algo quando um timeout
+     * ocorre.
+     */
+    protected abstract void whenTimeout();
+
+    /**
+     * Chamado pela roda de timeouts do reactor somente para os clientes cujo
+     * timeout expirou, processando o que foi recebido até o momento. O
+     * cliente deixa de ser lido e é desconectado depois que as respostas
+     * pendentes forem enviadas.
+     */
+    private void writeToClientWithTimeout(Reactor reactor, SelectionKey key) {
+        T clientTracker = tracker(key);
+        if (null == clientTracker || !key.isValid()) {
+            return;
+        }
+
+        try {
+            if (clientTracker.getStatus() == StatusClientTracker.PROCESS) {
+                return;
+            }
+
+            if (timeoutSocketClient(clientTracker)) {
+                whenTimeout();
+                key.interestOps(INVISIBLE_TO_SELECT);
+                processRequest(reactor, clientTracker, clientTracker.takeRequest());
+            }
+        } catch (IOException ex) {
+            LOG.error("Timeout failed", ex);
+            invalidateClient(reactor, key);
+        }
+    }
+
+    /**
+     * Processa uma mensagem com o {@link ProcessExecutor} configurado e
+     * adiciona a sua resposta na fila do cliente, que é enviada na ordem em
+     * que as mensagens chegaram. Quando o processamento termina, o cliente
+     * passa a ser escrito. Se o executor rejeitar a mensagem, o cliente
+     * recebe a resposta de {@link #busyResponse(AbstractClientTracker)}.
+     * O executor só informa o id da conexão para o reactor, que é quem altera
+     * a key do cliente, e enquanto o reactor não escrever o cliente as outras
+     * respostas que ficarem prontas não geram novos avisos.
+     */
+    private void processRequest(
+            Reactor reactor,
+            T clientTracker,
+            CompositeByteBuffer request
+    ) {
+        CompletableFuture<?> response;
+        try {
+            response = processExecutor.submit(() -> respond(clientTracker, request));
+        } catch (RejectedExecutionException ex) {
+            request.close();
+            response = CompletableFuture.completedFuture(busyResponse(clientTracker));
+        }
+        addResponse(reactor, clientTracker, response);
+    }
+
+    /**
+     * Adiciona uma resposta na fila do cliente, que é enviada na ordem em que
+     * foi adicionada. Quando a resposta termina, o reactor passa a escrever o
+     * cliente. Se as respostas prontas ultrapassarem o high watermark, a
+     * leitura do cliente é pausada já aqui, sem esperar pela próxima escrita,
+     * então um cliente que envia mensagens sem parar não acumula respostas
+     * além desse limite. Deve ser chamado pela thread do reactor.
+     *
+     * @param reactor Reactor responsável pelo cliente
+     * @param clientTracker Cliente que receberá a resposta
+     * @param response Resposta, que deve terminar com um {@link ByteBuffer}
+     * ou uma {@link FileRegion}.
+     */
+    protected final void addResponse(Reactor reactor, T clientTracker, CompletableFuture<?> response) {
+        clientTracker.addResponse(response);
+        response.whenComplete((nothing, th) -> {
+            LOG.debug("COMPLETED!");
+            if (clientTracker.requestWrite()) {
+                reactor.interestOpsOr(clientTracker.getConnectionId(), clientTracker,
+                        SelectionKey.OP_WRITE);
+            }
+        });
+        pauseReadIfBacklogged(reactor, clientTracker);
+    }
+
+    /**
+     * Pausa a leitura do cliente se as respostas prontas e ainda não enviadas
+     * ultrapassarem o high watermark. A leitura é retomada pelo
+     * {@link #writeToClient(Reactor, SelectionKey)} quando a fila ficar
+     * abaixo do low watermark.
+     */
+    private void pauseReadIfBacklogged(Reactor reactor, T clientTracker) {
+        if (clientTracker.isReadPaused()) {
+            return;
+        }
+
+        OutboundQueue outbound;
+        try {
+            outbound = clientTracker.drainReadyResponses();
+        } catch (CompletionException | IllegalStateException ex) {
+            //a resposta continua na fila e o cliente é desconectado na escrita
+            return;
+        }
+
+        if (outbound.getPendingBytes() > config.getWriteHighWatermark()) {
+            SelectionKey key = reactor.getRegistry().get(clientTracker.getConnectionId());
+            if (null != key && key.isValid()) {
+                clientTracker.setReadPaused(true);
+                key.interestOpsAnd(~SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * Metodo que trata da conexao do cliente. Esse recebe como arqumento o
+     * reactor que ficará responsável pelo cliente e o socket do cliente, já
+     * aceito e configurado como não bloqueante pelo acceptor. O cliente é
+     * registrado no Selector do reactor com a flag indicando que o socket ira
+     * ler do cliente, o tracker fica no attachment da key e a key é guardada
+     * na tabela de conexões do reactor.
+     *
+     * @param reactor
+     * @param socketClient
+     * @throws ClosedChannelException
+     * @throws IOException
+     */
+    @Override
+    protected void acceptClient(Reactor reactor, SocketChannel socketClient)
+            throws ClosedChannelException, IOException {
+        SelectionKey key = socketClient.register(reactor.getSelector(), SelectionKey.OP_READ);//registra para ler no proximo envio do cliente
+        T clientTracker = newClientTracker(socketClient);
+        clientTracker.setConnectionId(reactor.getRegistry().register(key));
+        clientTracker.setReceiveHandle(receiveAllocator.newHandle(buffSize));
+        if (clientTracker.canTimeout()) {
+            clientTracker.setTimeoutTask(reactor.getTimingWheel()
+                    .schedule(key, clientTracker.getDeadline()));
+        }
+        key.attach(clientTracker);
+    }
+
+    @Override
+    protected void disconnectAll(Reactor reactor) {
+        reactor.getRegistry().forEach(key -> invalidateClient(reactor, key));
+        super.disconnectAll(reactor);
+    }
+
+    /**
+     * Esse metodo é resonsavel por ler informações na forma de byte do
+     * cliente,ou seja ele irá receber e ler os dados enviados do cliente.
+     * Cada mensagem completa é processada assim que encontrada, e os bytes
+     * excedentes ficam para a próxima mensagem, então o cliente pode enviar
+     * várias mensagens sem esperar as respostas. Um cliente que envia uma
+     * mensagem inválida é desconectado.
+     *
+     * O socket é lido repetidamente até não ter mais bytes disponíveis ou o
+     * cliente usar o orçamento de leitura do evento
+     * ({@link ServerConfig#getReadBudgetBytes()} e
+     * {@link ServerConfig#getReadBudgetReads()}), quando o reactor passa para
+     * os outros clientes e o restante é lido no próximo evento. O tamanho dos
+     * buffers acompanha as leituras recentes do cliente
+     * ({@link AdaptiveReceiveAllocator}) e, no tamanho máximo, cada leitura
+     * preenche vários buffers do pool de uma vez (scatter).
+     *
+     * @param reactor
+     * @param key
+     * @throws ClosedChannelException
+     * @throws IOException
+     */
+    @Override
+    protected void readFromClient(Reactor reactor, SelectionKey key)
+            throws ClosedChannelException, IOException {
+
+        //recebe a instancia key de acordo com a condicional definida na chamada. Aqui o retorno e um objeto generico
+        //do tipo SelectableChannel ou seja um channel do tipo selecionavel
+        SocketChannel socketClient = (SocketChannel) key.channel();
+        T clientTracker = tracker(key);
+        if (null == clientTracker) {
+            invalidateClient(reactor, key);
+            return;
+        }
+
+        clientTracker.beginCycle(reactor.getCycle(), config.getMessageBudget());
+        if (clientTracker.isFramingPending() && !resumeFraming(reactor, key, clientTracker)) {
+            addReady(reactor, key, clientTracker);
+            return;
+        }
+
+        AdaptiveReceiveAllocator.Handle receiveHandle = clientTracker.getReceiveHandle();
+        ByteBuffer[] bufs = reactor.readBuffers();
+        long total = 0;
+        boolean disconnected = false;
+        //se o cliente pode ter mais bytes ou mensagens depois de usar a cota
+        boolean more = true;
+        for (int reads = 0; reads < config.getReadBudgetReads()
+                && total < config.getReadBudgetBytes(); reads++) {
+            //obtem os ByteBuffers do pool limitado para a próxima leitura
+            int size = receiveHandle.guess();
+            int count = receiveHandle.isMax()
+                    ? (int) Math.max(1, Math.min(bufs.length, (config.getReadBudgetBytes() - total) / size))
+                    : 1;
+            for (int i = 0; i < count; i++) {
+                bufs[i] = bufferPool.lease(size);
+            }
+
+            long readed = tryRead(socketClient, bufs, count);
+            if (readed <= 0) {
+                releaseAll(bufs, 0, count);
+                disconnected = CLIENT_DESCONNECTED == readed;
+                more = false;
+                break;
+            }
+
+            total += readed;
+            metrics.read(readed);
+            clientTracker.addBytesRead(readed);
+            if (!deliver(reactor, key, clientTracker, bufs, count)) {
+                return;
+            }
+
+            if (clientTracker.isFramingPending()) {
+                //a cota de mensagens acabou
+                break;
+            }
+
+            if (readed < (long) size * count || !key.isValid()
+                    || 0 == (key.interestOps() & SelectionKey.OP_READ)) {
+                //o socket foi esvaziado ou a leitura do cliente foi suspensa
+                more = false;
+                break;
+            }
+        }
+
+        receiveHandle.record(total);
+        if (disconnected) {
+            invalidateClient(reactor, key);
+        } else if (more) {
+            addReady(reactor, key, clientTracker);
+        }
+    }
+
+    /**
+     * Coloca na fila de prontos do reactor um cliente que usou a sua cota do
+     * ciclo, se ele ainda puder ser lido.
+     */
+    protected final void addReady(Reactor reactor, SelectionKey key, T clientTracker) {
+        if (!clientTracker.isReady() && key.isValid()
+                && 0 != (key.interestOps() & SelectionKey.OP_READ)) {
+            clientTracker.setReady(true);
+            reactor.addReady(key);
+        }
+    }
+
+    /**
+     * Trata um cliente da fila de prontos com uma nova cota, lendo as
+     * mensagens que ficaram nas partes recebidas e os bytes restantes do
+     * socket. Um cliente que já foi tratado pelo select neste ciclo continua
+     * na fila para o próximo. As respostas prontas são enviadas antes da
+     * leitura, pois um cliente que sempre tem bytes para ler pode ficar na
+     * fila de prontos sem passar pelo select.
+     */
+    @Override
+    protected void readyClient(Reactor reactor, SelectionKey key) throws IOException {
+        T clientTracker = tracker(key);
+        if (null == clientTracker) {
+            return;
+        }
+
+        clientTracker.setReady(false);
+        if (clientTracker.getCycle() == reactor.getCycle()) {
+            addReady(reactor, key, clientTracker);
+            return;
+        }
+
+        if (0 != (key.interestOps() & SelectionKey.OP_WRITE)) {
+            writeToClient(reactor, key);
+        }
+        if (key.isValid() && 0 != (key.interestOps() & SelectionKey.OP_READ)) {
+            readFromClient(reactor, key);
+        }
+    }
+
+    /**
+     * Entrega os buffers lidos, em ordem, para o
+     * {@link #received(Reactor, SelectionKey, AbstractClientTracker, ByteBuffer)}.
+     *
+     * @return false se o cliente foi desconectado por enviar uma mensagem
+     * inválida.
+     */
+    private boolean deliver(Reactor reactor, SelectionKey key, T clientTracker,
+            ByteBuffer[] bufs, int count) {
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buf = bufs[i];
+            bufs[i] = null;
+            buf.flip();
+            if (!buf.hasRemaining()) {
+                bufferPool.release(buf);
+                continue;
+            }
+
+            try {
+                received(reactor, key, clientTracker, buf);
+            } catch (InvalidFrameException ex) {
+                LOG.debug("[%s INVALID FRAME] %s", clientTracker.getConnectionId(), ex.getMessage());
+                releaseAll(bufs, i + 1, count);
+                invalidateClient(reactor, key);
+                return false;
+            } catch (RuntimeException ex) {
+                releaseAll(bufs, i + 1, count);
+                throw ex;
+            }
+        }
+        return true;
+    }
+
+    private void releaseAll(ByteBuffer[] bufs, int from, int to) {
+        for (int i = from; i < to; i++) {
+            bufferPool.release(bufs[i]);
+            bufs[i] = null;
+        }
+    }
+
+    /**
+     * Trata os bytes lidos do cliente, executado pela thread do reactor. Por
+     * padrão, os bytes são guardados no tracker e cada mensagem completa é
+     * processada. Pode ser sobreescrito para tratar os bytes sem montar as
+     * mensagens.
+     *
+     * @param reactor
+     * @param key
+     * @param clientTracker
+     * @param buf Buffer do pool com os bytes lidos, que passa a pertencer a
+     * este método.
+     * @throws InvalidFrameException Se a mensagem é inválida, o cliente é
+     * desconectado.
+     */
+    protected void received(Reactor reactor, SelectionKey key, T clientTracker, ByteBuffer buf) {
+        clientTracker.addRequestPart(buf);
+        frameRequests(reactor, clientTracker);
+    }
+
+    /**
+     * Chamado com uma nova cota, antes de ler do socket, para um cliente cujas
+     * mensagens ficaram para o próximo ciclo. Por padrão, continua a separar
+     * as mensagens das partes recebidas com
+     * {@link #frameRequests(Reactor, AbstractClientTracker)}.
+     *
+     * @param reactor
+     * @param key
+     * @param clientTracker
+     * @return false se a cota acabou novamente, e o socket não deve ser lido
+     * neste ciclo.
+     */
+    protected boolean resumeFraming(Reactor reactor, SelectionKey key, T clientTracker) {
+        return frameRequests(reactor, clientTracker);
+    }
+
+    /**
+     * Separa e processa as mensagens completas recebidas, até a cota de
+     * mensagens do ciclo ({@link ServerConfig#getMessageBudget()}) acabar
+     * ou a leitura do cliente ser pausada pela fila de respostas. As
+     * mensagens restantes ficam nas partes do tracker para o próximo ciclo.
+     *
+     * @param reactor
+     * @param clientTracker
+     * @return false se a cota acabou ou a leitura foi pausada e ainda podem
+     * existir mensagens completas.
+     */
+    protected final boolean frameRequests(Reactor reactor, T clientTracker) {
+        while (!clientTracker.isMessageBudgetExhausted() && !clientTracker.isReadPaused()) {
+            int length = frameLength(clientTracker);
+            if (AbstractClientTracker.NO_FRAME == length) {
+                clientTracker.setFramingPending(false);
+                return true;
+            }
+
+            LOG.debug("PROCESSED %s", clientTracker.getClient());
+            clientTracker.takeMessageBudget();
+            countFrame(clientTracker);
+            clientTracker.setStatus(StatusClientTracker.PROCESS);
+            processRequest(reactor, clientTracker, clientTracker.takeRequest(length));
+        }
+
+        clientTracker.setFramingPending(true);
+        return false;
+    }
+
+    /**
+     * @return Quantidade de bytes lidos, 0 se o socket não tinha bytes
+     * disponíveis, ou {@link #CLIENT_DESCONNECTED}.
+     */
+    private long tryRead(SocketChannel socketClient, ByteBuffer[] bufs, int count) {
+        try {
+            return 1 == count ? socketClient.read(bufs[0]) : socketClient.read(bufs, 0, count);
+        } catch (IOException ex) {
+            LOG.debug("Read failed: %s", ex);
+            return CLIENT_DESCONNECTED;
+        }
+    }
+
+    /**
+     * Conta uma mensagem separada do cliente nas métricas.
+     *
+     * @param clientTracker
+     */
+    protected final void countFrame(T clientTracker) {
+        frames.increment();
+        clientTracker.requestReceived();
+    }
+
+    protected abstract T newClientTracker(SocketChannel socketClient);
+
+    /**
+     * Informa o tamanho da primeira mensagem completa recebida do cliente.
+     *
+     * @param clientTracker
+     * @return Tamanho da mensagem ou {@link AbstractClientTracker#NO_FRAME}.
+     */
+    protected abstract int frameLength(T clientTracker);
+
+    /**
+     * Envia, em ordem e agrupadas em uma única escrita, as respostas já
+     * processadas. Respostas que são regiões de arquivos são enviadas com
+     * {@link FileRegion#transferTo(java.nio.channels.WritableByteChannel)}. Se o socket não aceitar todos os bytes, o restante é
+     * enviado na próxima vez que o cliente puder ser escrito. Quando não
+     * houver mais respostas prontas, o cliente deixa de ser escrito até que
+     * outra resposta fique pronta. Se o cliente acumular mais bytes que o
+     * high watermark sem consumi-los, a leitura dele é pausada até que a fila
+     * fique abaixo do low watermark.
+     *
+     * @param reactor
+     * @param key
+     * @throws IOException
+     */
+    @Override
+    protected final void writeToClient(Reactor reactor, SelectionKey key)
+            throws IOException {
+        SocketChannel socketClient = (SocketChannel) key.channel();
+        T clientTracker = tracker(key);
+        if (null == clientTracker) {
+            invalidateClient(reactor, key);
+            return;
+        }
+
+        try {
+            clientTracker.clearWriteRequest();
+            OutboundQueue outbound = clientTracker.drainReadyResponses();
+            long written = outbound.write(socketClient, clientTracker::releaseResponse,
+                    config.getWriteBudgetBytes());
+            metrics.written(written);
+            clientTracker.addBytesWritten(written);
+            updateReadInterest(reactor, key, clientTracker, outbound);
+            if (!outbound.isEmpty()) {
+                return;
+            }
+
+            key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            if (clientTracker.isResponseReady()) {
+                //Uma resposta ficou pronta depois de a fila ser esvaziada
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+            } else if (clientTracker.getStatus() == StatusClientTracker.TIMEOUT
+                    && !clientTracker.hasPendingResponses()) {
+                invalidateClient(reactor, key);
+            }
+        } catch (IOException ex) {
+            LOG.debug("[%s DISCONNECTED]", clientTracker.getConnectionId());
+            invalidateClient(reactor, key);
+        } catch (CompletionException | IllegalStateException ex) {
+            LOG.error("Response failed", ex);
+            invalidateClient(reactor, key);
+        }
+    }
+
+    private void updateReadInterest(Reactor reactor, SelectionKey key, T clientTracker,
+            OutboundQueue outbound) {
+        long pending = outbound.getPendingBytes();
+        if (!clientTracker.isReadPaused() && pending > config.getWriteHighWatermark()) {
+            clientTracker.setReadPaused(true);
+            key.interestOpsAnd(~SelectionKey.OP_READ);
+        } else if (clientTracker.isReadPaused() && pending <= config.getWriteLowWatermark()) {
+            clientTracker.setReadPaused(false);
+            if (clientTracker.getStatus() != StatusClientTracker.TIMEOUT
+                    && !isReadSuspended(clientTracker)) {
+                key.interestOpsOr(SelectionKey.OP_READ);
+                if (clientTracker.isFramingPending()) {
+                    //as mensagens já recebidas não dependem de novos bytes
+                    addReady(reactor, key, clientTracker);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param clientTracker
+     * @return Se a leitura do cliente foi suspensa por outro motivo além da
+     * fila de respostas, e não deve ser retomada quando a fila diminuir.
+     */
+    protected boolean isReadSuspended(T clientTracker) {
+        return false;
+    }
+
+    /**
+     * Desconecta o cliente, liberando o seu tracker. Deve ser chamado pela
+     * thread do reactor.
+     *
+     * @param reactor
+     * @param key
+     */
+    protected void invalidateClient(Reactor reactor, SelectionKey key) {
+        try {
+            T clientTracker = tracker(key);
+            if (null != clientTracker) {
+                key.attach(null);
+                reactor.getRegistry().remove(clientTracker.getConnectionId());
+                reactor.disconnected();
+                metrics.disconnected();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("[%s CLOSED] %s", clientTracker.getConnectionId(),
+                            clientTracker.trafficSummary());
+                }
+                release((SocketChannel) key.channel());
+                clientTracker.release();
+            }
+            key.cancel();
+            key.channel().close();
+        } catch (Exception ex) {
+            LOG.error("Disconnect failed", ex);
+        }
+    }
+
+    protected boolean timeoutSocketClient(AbstractClientTracker clientTracker)
+            throws IOException {
+        if (clientTracker.getStatus() == StatusClientTracker.TIMEOUT) {
+            return true;
+        } else if (clientTracker.getStatus() == StatusClientTracker.PROCESS) {
+            return false;
+        }
+
+        boolean isTimeout = clientTracker.isTimeoutReached();
+        if (isTimeout) {
+            LOG.debug("TIMEOUT %s", clientTracker.getClient());
+            metrics.timeout();
+            clientTracker.setStatus(StatusClientTracker.TIMEOUT);
+        }
+        return isTimeout;
+    }
+
+    /**
+     * Resposta enviada quando o executor está sobrecarregado e rejeita a
+     * mensagem.
+     *
+     * @param clientTracker
+     * @return
+     */
+    protected ByteBuffer busyResponse(T clientTracker) {
+        return clientTracker.newResponse(BUSY);
+    }
+
+    /**
+     * Processa uma mensagem do cliente, na thread definida pelo
+     * {@link ProcessExecutor} configurado. Pode ser chamado novamente para o
+     * mesmo cliente antes que a mensagem anterior termine de ser processada,
+     * então não deve alterar o estado do tracker.
+     *
+     * @param clientTracker Cliente que enviou a mensagem.
+     * @param request Mensagem, que deve ser fechada depois de utilizada.
+     * @return A resposta, criada preferencialmente com
+     * {@link AbstractClientTracker#newResponse(byte[])}.
+     */
+    protected abstract ByteBuffer process(T clientTracker, CompositeByteBuffer request);
+
+    /**
+     * Cria a resposta de uma mensagem, nas mesmas condições do
+     * {@link #process(AbstractClientTracker, CompositeByteBuffer)}. Por padrão
+     * a resposta é o buffer retornado pelo {@code process}, mas pode ser
+     * sobreescrito para responder com uma {@link FileRegion}, como um arquivo
+     * estático, que é enviada aos poucos a cada OP_WRITE sem ser copiada para
+     * a JVM.
+     *
+     * @param clientTracker Cliente que enviou a mensagem.
+     * @param request Mensagem, que deve ser fechada depois de utilizada.
+     * @return Um {@link ByteBuffer} ou uma {@link FileRegion}.
+     */
+    protected Object respond(T clientTracker, CompositeByteBuffer request) {
+        return process(clientTracker, request);
+    }
+}
@@ -1,136 +1,624 @@
-package br.com.server;
-
-import java.io.IOException;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.util.Iterator;
-import java.util.Objects;
-
-/**
- * @author Guilherme Alves Silveira
- * @author Francisco Araujo
- */
-public abstract class AbstractServerNIO {
-
-    protected final ServerSocketChannel server;
-    protected final Selector selector;
-
-    public AbstractServerNIO(
-            ServerSocketChannel server,
-            Selector selector
-    ) throws ClosedChannelException {
-        this.server = Objects.requireNonNull(server);
-        this.selector = Objects.requireNonNull(selector);
-
-        if (!selector.isOpen()) {
-            throw new IllegalArgumentException("The selector must be opened.");
-        }
-
-        if (server.isBlocking()) {
-            throw new IllegalArgumentException("The server must be non-blocking.");
-        }
-
-        server.register(selector, SelectionKey.OP_ACCEPT);
-        System.out.println("Server started!");
-    }
-
-    public void runEventLoop() throws IOException {
-        while (true) {
-
-            before();
-            //configurando o tempo limite de espera para um cliente em ms
-            int readyChannels = selector.select(50);
-            if (0 == readyChannels) {
-                continue;
-            }
-
-            between();
-            //Retorno uma coloecao Iterator de keys do tipo isReadable isWritable e isAcceptable
-            Iterator<SelectionKey> itKeys = selector.selectedKeys().iterator();
-            //faz um loop while equanto tiver key
-            while (itKeys.hasNext()) {
-                beginLoop();
-                SelectionKey key = itKeys.next();//vai para a proxima key
-                itKeys.remove();//remove a key anterior
-                try {
-                    if (key.isAcceptable()) {
-                        acceptClient();
-                    } else if (key.isReadable()) {
-                        readFromClient(key);
-                    } else if (key.isWritable()) {
-                        writeToClient(key);
-                    }
-                } catch (Throwable th) {
-                    th.printStackTrace();
-                }
-            }
-
-            after();
-        }
-    }
-
-    /**
-     * Metodo que trata da conexao do cliente. Esse recbe como arqumento uma
-     * instancia do ServerScocketCliente e um Selector. Logo apos será
-     * configurado alguns parametros referentes a conexao com o cliente, e
-     * configuaração do modo como ele irar tratar a conexao, se será bloqueante
-     * ou nao.Tambem a configuração do metodo registro que irar receber uma
-     * instancia do Selector e a flag indicando que o socket ira ler do cliente
-     *
-     * @param server
-     * @param selector
-     * @throws ClosedChannelException
-     * @throws IOException
-     */
-    protected abstract void acceptClient() throws Exception;
-
-    /**
-     * Esse metodo é responsavel por ler informações na forma de byte do
-     * cliente,ou seja ele irá receber e ler os dados enviados do cliente.
-     *
-     * @param key
-     * @param selector
-     * @throws ClosedChannelException
-     * @throws IOException
-     */
-    protected abstract void readFromClient(SelectionKey key) throws Exception;
-
-    /**
-     * Esse metodo é responsavel por enviar os dados para o cliente quando já
-     * estão processados.
-     *
-     * @param key
-     * @param selector
-     * @throws ClosedChannelException
-     * @throws IOException
-     */
-    protected abstract void writeToClient(SelectionKey key) throws Exception;
-
-    /**
-     * Executado antes do channel realizar qualquer procedimento. Será chamado
-     * uma vez a cada vez que o eventLoop é rodado.
-     */
-    protected abstract void before();
-
-    /**
-     * Executado depois do before e depois que o selector encontra algum channel
-     * para processar. Será chamado uma vez a cada vez que o eventLoop é rodado.
-     */
-    protected abstract void between();
-
-    /**
-     * É executado dentro do eventLoop e enquanto tiver chaves (as chaves são as
-     * operações que o cliente vai realizar, tais como ser aceito pelo servidor,
-     * escrever para o servidor ou ler do servidor) para serem processadas. Será
-     * chamado 1-1 para cada chave antes de ser processada.
-     */
-    protected abstract void beginLoop();
-
-    /**
-     * Executado no fim do eventLoop. Será chamado uma vez a cada vez que o
-     * eventLoop é rodado.
-     */
-    protected abstract void after();
-}
+package br.com.server;
+
+import br.com.server.admission.AdmissionControl;
+import br.com.server.log.Logger;
+import br.com.server.metrics.ServerMetrics;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Servidor com um acceptor e N reactors. O acceptor roda no Selector
+ * informado, somente aceitando os clientes, e os entrega para os reactors,
+ * cada um com o seu próprio Selector e a sua própria thread, que tratam a
+ * leitura e a escrita.
+ *
+ * Com {@link ServerConfig#isReusePort()} não existe acceptor: o servidor
+ * informado é o channel do primeiro reactor, e cada um dos outros reactors
+ * abre o seu próprio channel com SO_REUSEPORT na mesma porta. O kernel
+ * distribui as novas conexões entre os channels, e cada reactor aceita e
+ * registra os seus clientes na sua própria thread, então os accepts não
+ * passam por uma única thread nem por uma fila entre threads.
+ *
+ * O servidor pode ser um Unix domain socket, aberto com
+ * {@link #openUnixDomain(Path, ServerConfig)}, e outros channels podem ser
+ * adicionados com {@link #addListener(ServerSocketChannel)}, por exemplo um
+ * Unix domain socket para os clientes da mesma máquina além da porta TCP.
+ * Os clientes de todos os channels são tratados da mesma forma.
+ *
+ * @author Guilherme Alves Silveira
+ * @author Francisco Araujo
+ */
+public abstract class AbstractServerNIO implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(AbstractServerNIO.class);
+
+    protected final ServerSocketChannel server;
+    protected final Selector selector;
+    protected final ServerConfig config;
+    protected final Reactor[] reactors;
+    protected final ServerMetrics metrics;
+    /**
+     * Limites de conexões por endereço, ou null se não houver.
+     */
+    protected final AdmissionControl admissionControl;
+    /**
+     * Channels adicionados com {@link #addListener(ServerSocketChannel)}.
+     */
+    private final List<ServerSocketChannel> listeners;
+    private int nextReactor;
+    private volatile boolean started;
+    private volatile boolean running = true;
+
+    public AbstractServerNIO(
+            ServerSocketChannel server,
+            Selector selector
+    ) throws IOException {
+        this(server, selector, new ServerConfig());
+    }
+
+    public AbstractServerNIO(
+            ServerSocketChannel server,
+            Selector selector,
+            ServerConfig config
+    ) throws IOException {
+        this.server = Objects.requireNonNull(server);
+        this.selector = Objects.requireNonNull(selector);
+        this.config = Objects.requireNonNull(config);
+        this.metrics = config.getMetrics();
+        this.admissionControl = config.getAdmissionControl();
+        this.listeners = new CopyOnWriteArrayList<>();
+
+        if (!selector.isOpen()) {
+            throw new IllegalArgumentException("The selector must be opened.");
+        }
+
+        if (server.isBlocking()) {
+            throw new IllegalArgumentException("The server must be non-blocking.");
+        }
+
+        this.reactors = new Reactor[config.getReactors()];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(i, config);
+        }
+
+        if (config.isReusePort()) {
+            listenReusePort();
+        } else {
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        LOG.info("Server started!");
+    }
+
+    /**
+     * Abre um ServerSocketChannel não bloqueante com SO_REUSEPORT, para ser
+     * utilizado como servidor com {@link ServerConfig#isReusePort()}. O
+     * SO_REUSEPORT precisa ser habilitado antes do bind, em todos os channels
+     * da porta.
+     *
+     * @param address
+     * @param config
+     * @return O channel.
+     * @throws IOException
+     * @throws UnsupportedOperationException Se o SO não suportar o
+     * SO_REUSEPORT.
+     */
+    public static ServerSocketChannel openReusePort(SocketAddress address, ServerConfig config)
+            throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                throw new UnsupportedOperationException("SO_REUSEPORT is not supported!");
+            }
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            channel.bind(address, config.getAcceptBacklog());
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Abre um ServerSocketChannel não bloqueante em um Unix domain socket,
+     * para clientes da mesma máquina, sem passar pela pilha TCP. Um socket
+     * que já exista no caminho, de um servidor anterior, é removido antes do
+     * bind, e o arquivo é removido quando o servidor é fechado.
+     *
+     * @param path Caminho do socket.
+     * @param config
+     * @return O channel.
+     * @throws IOException Se já existir no caminho algo que não é um socket,
+     * como um arquivo comum ou um diretório, que não é removido.
+     */
+    public static ServerSocketChannel openUnixDomain(Path path, ServerConfig config)
+            throws IOException {
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            BasicFileAttributes attributes = Files.readAttributes(path,
+                    BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isOther()) {
+                throw new IOException("The path [" + path + "] exists and is not a socket!");
+            }
+            Files.delete(path);
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(UnixDomainSocketAddress.of(path), config.getAcceptBacklog());
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Aceita clientes também no channel informado, com as mesmas regras do
+     * servidor. Deve ser chamado antes de {@link #runEventLoop()}. Com
+     * {@link ServerConfig#isReusePort()}, os clientes do channel são
+     * aceitos pelo primeiro reactor.
+     *
+     * @param listener Channel não bloqueante, já com o bind feito.
+     * @throws IOException
+     */
+    public void addListener(ServerSocketChannel listener) throws IOException {
+        if (listener.isBlocking()) {
+            throw new IllegalArgumentException("The listener must be non-blocking.");
+        }
+
+        if (started) {
+            throw new IllegalStateException("The server is already running!");
+        }
+
+        listener.register(config.isReusePort() ? reactors[0].getSelector() : selector,
+                SelectionKey.OP_ACCEPT);
+        listeners.add(listener);
+    }
+
+    /**
+     * O primeiro reactor aceita os clientes do servidor, e cada um dos
+     * outros abre o seu próprio channel no mesmo endereço.
+     */
+    private void listenReusePort() throws IOException {
+        if (!server.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)
+                || !server.getOption(StandardSocketOptions.SO_REUSEPORT)) {
+            throw new IllegalArgumentException("The server must be bound with SO_REUSEPORT.");
+        }
+
+        SocketAddress address = server.getLocalAddress();
+        if (null == address) {
+            throw new IllegalArgumentException("The server must be bound.");
+        }
+
+        reactors[0].listen(server);
+        try {
+            for (int i = 1; i < reactors.length; i++) {
+                reactors[i].listen(openReusePort(address, config));
+            }
+        } catch (IOException | RuntimeException ex) {
+            closeListeners();
+            throw ex;
+        }
+    }
+
+    /**
+     * Inicia as threads dos reactors e executa o acceptor na thread atual, até
+     * que o servidor seja fechado com {@link #close()}. Com
+     * {@link ServerConfig#isReusePort()}, a thread atual executa o primeiro
+     * reactor.
+     *
+     * @throws IOException
+     */
+    public void runEventLoop() throws IOException {
+        started = true;
+        boolean reusePort = config.isReusePort();
+        for (int i = reusePort ? 1 : 0; i < reactors.length; i++) {
+            Reactor reactor = reactors[i];
+            Thread thread = new Thread(() -> runReactor(reactor),
+                    "reactor-" + reactor.getId());
+            thread.start();
+        }
+
+        if (reusePort) {
+            runReactor(reactors[0]);
+            selector.close();
+            return;
+        }
+
+        while (running) {
+            selector.select();
+            Iterator<SelectionKey> itKeys = selector.selectedKeys().iterator();
+            while (itKeys.hasNext()) {
+                SelectionKey key = itKeys.next();
+                itKeys.remove();
+                try {
+                    if (key.isAcceptable()) {
+                        dispatchClients((ServerSocketChannel) key.channel());
+                    }
+                } catch (Throwable th) {
+                    LOG.error("Accept failed", th);
+                }
+            }
+        }
+        selector.close();
+    }
+
+    /**
+     * Para de aceitar clientes e encerra os reactors, que desconectam os seus
+     * clientes. Não espera as threads terminarem.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            closeListener(server);
+        } finally {
+            for (ServerSocketChannel listener : listeners) {
+                try {
+                    closeListener(listener);
+                } catch (IOException ex) {
+                    LOG.error("Close failed", ex);
+                }
+            }
+            closeListeners();
+        }
+        selector.wakeup();
+        for (Reactor reactor : reactors) {
+            reactor.getSelector().wakeup();
+        }
+    }
+
+    /**
+     * Fecha o channel e, se for um Unix domain socket, remove o arquivo.
+     */
+    private static void closeListener(ServerSocketChannel listener) throws IOException {
+        SocketAddress local = listener.isOpen() ? listener.getLocalAddress() : null;
+        listener.close();
+        if (local instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) local).getPath());
+        }
+    }
+
+    private void closeListeners() {
+        for (Reactor reactor : reactors) {
+            ServerSocketChannel listener = reactor.getListener();
+            if (null != listener && listener != server) {
+                try {
+                    listener.close();
+                } catch (IOException ex) {
+                    LOG.error("Close failed", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aceita os clientes pendentes, até {@link ServerConfig#getAcceptBatch()}
+     * por evento, e os entrega para os reactors. Os clientes acima dos limites
+     * de conexões são desconectados antes de chegarem a um reactor, sem criar
+     * tracker nem registrar o socket.
+     */
+    private void dispatchClients(ServerSocketChannel listener) throws IOException {
+        acceptClients(listener, null);
+    }
+
+    /**
+     * Aceita os clientes pendentes de um channel do reactor, com as mesmas
+     * regras do acceptor, e os registra imediatamente na thread do reactor.
+     */
+    private void acceptOwnClients(Reactor reactor, ServerSocketChannel listener)
+            throws IOException {
+        try {
+            acceptClients(listener, reactor);
+        } finally {
+            registerAcceptedClients(reactor);
+        }
+    }
+
+    /**
+     * @param listener Channel de onde os clientes são aceitos.
+     * @param owner Reactor que recebe todos os clientes, ou null para
+     * distribuí-los entre os reactors.
+     */
+    private void acceptClients(ServerSocketChannel listener, Reactor owner) throws IOException {
+        for (int i = 0; i < config.getAcceptBatch(); i++) {
+            SocketChannel socketClient = listener.accept();//aceitando o cliente
+            if (null == socketClient) {
+                return;
+            }
+
+            if (!admit(socketClient)) {
+                reject(socketClient);
+                continue;
+            }
+
+            try {
+                socketClient.configureBlocking(false);//configura para nao bloqueante
+            } catch (IOException ex) {
+                release(socketClient);
+                socketClient.close();
+                throw ex;
+            }
+            metrics.accepted();
+            (null == owner ? nextReactor() : owner).dispatch(socketClient);
+        }
+    }
+
+    private boolean admit(SocketChannel socketClient) {
+        int connections = 0;
+        for (Reactor reactor : reactors) {
+            connections += reactor.getConnections();
+        }
+
+        return connections < config.getMaxConnections()
+                && (null == admissionControl || admissionControl.tryAcquire(socketClient));
+    }
+
+    /**
+     * Desconecta o cliente com um RST (SO_LINGER 0), sem deixar o socket em
+     * TIME_WAIT no servidor. Os Unix domain sockets não têm SO_LINGER e são
+     * somente fechados.
+     */
+    private void reject(SocketChannel socketClient) {
+        metrics.rejected();
+        LOG.debug("REJECTED %s", socketClient);
+        try (socketClient) {
+            if (socketClient.supportedOptions().contains(StandardSocketOptions.SO_LINGER)) {
+                socketClient.setOption(StandardSocketOptions.SO_LINGER, 0);
+            }
+        } catch (IOException ex) {
+            LOG.debug("Reject failed: %s", ex);
+        }
+    }
+
+    /**
+     * Libera a conexão do cliente nos limites por endereço. Deve ser chamado
+     * antes de o socket ser fechado.
+     *
+     * @param socketClient
+     */
+    protected final void release(SocketChannel socketClient) {
+        if (null != admissionControl) {
+            admissionControl.release(socketClient);
+        }
+    }
+
+    private Reactor nextReactor() {
+        if (config.getDispatch() == ServerConfig.DISPATCH_LEAST_LOADED) {
+            Reactor leastLoaded = reactors[0];
+            for (Reactor reactor : reactors) {
+                if (reactor.getConnections() < leastLoaded.getConnections()) {
+                    leastLoaded = reactor;
+                }
+            }
+            return leastLoaded;
+        }
+
+        Reactor reactor = reactors[nextReactor];
+        nextReactor = (nextReactor + 1) % reactors.length;
+        return reactor;
+    }
+
+    private void runReactor(Reactor reactor) {
+        Selector reactorSelector = reactor.getSelector();
+        reactor.bindThread(Thread.currentThread());
+        config.getBufferPool().attachThreadCache();
+        while (running) {
+            registerAcceptedClients(reactor);
+            reactor.runCommands();
+
+            before(reactor);
+            //espera os eventos até o próximo timeout dos clientes
+            int readyChannels;
+            try {
+                readyChannels = reactor.select();
+            } catch (IOException ex) {
+                LOG.error("Select failed", ex);
+                return;
+            }
+            reactor.selected();
+
+            if (0 == readyChannels && 0 == reactor.getReadyCount()) {
+                continue;
+            }
+
+            long started = System.nanoTime();
+            if (0 != readyChannels) {
+                handleSelectedKeys(reactor);
+            }
+            runReadyClients(reactor);
+            metrics.selectLoop(System.nanoTime() - started, readyChannels);
+        }
+
+        registerAcceptedClients(reactor);
+        reactor.runCommands();
+        disconnectAll(reactor);
+        try {
+            reactorSelector.close();
+        } catch (IOException ex) {
+            LOG.error("Close failed", ex);
+        }
+    }
+
+    private void handleSelectedKeys(Reactor reactor) {
+        Selector reactorSelector = reactor.getSelector();
+        between(reactor);
+        //Retorno uma coloecao Iterator de keys do tipo isReadable isWritable
+        Iterator<SelectionKey> itKeys = reactorSelector.selectedKeys().iterator();
+        //faz um loop while equanto tiver key
+        while (itKeys.hasNext()) {
+            beginLoop(reactor);
+            SelectionKey key = itKeys.next();//vai para a proxima key
+            itKeys.remove();//remove a key anterior
+            try {
+                if (key.isAcceptable()) {
+                    acceptOwnClients(reactor, (ServerSocketChannel) key.channel());
+                    continue;
+                }
+
+                //um cliente pode estar pronto para escrita e leitura ao mesmo
+                //tempo, a escrita vem primeiro para que a fila de respostas
+                //diminua mesmo que o cliente nunca pare de enviar
+                if (key.isWritable()) {
+                    writeToClient(reactor, key);
+                }
+                if (key.isValid() && key.isReadable()
+                        && 0 != (key.interestOps() & SelectionKey.OP_READ)) {
+                    readFromClient(reactor, key);
+                }
+            } catch (Throwable th) {
+                LOG.error("Event failed", th);
+            }
+        }
+
+        after(reactor);
+    }
+
+    /**
+     * Trata uma vez cada cliente que estava na fila de prontos no início da
+     * passagem. Os clientes que usarem a cota novamente voltam para o fim da
+     * fila e são tratados depois do próximo select.
+     */
+    private void runReadyClients(Reactor reactor) {
+        for (int i = reactor.getReadyCount(); i > 0; i--) {
+            SelectionKey key = reactor.pollReady();
+            try {
+                if (key.isValid()) {
+                    readyClient(reactor, key);
+                }
+            } catch (Throwable th) {
+                LOG.error("Event failed", th);
+            }
+        }
+    }
+
+    private void registerAcceptedClients(Reactor reactor) {
+        SocketChannel socketClient;
+        while (null != (socketClient = reactor.pollAccepted())) {
+            try {
+                acceptClient(reactor, socketClient);
+            } catch (Throwable th) {
+                LOG.error("Register failed", th);
+                reactor.disconnected();
+                metrics.disconnected();
+                release(socketClient);
+                try {
+                    socketClient.close();
+                } catch (IOException ex) {
+                    LOG.error("Close failed", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Desconecta todos os clientes do reactor, chamado pela thread do reactor
+     * quando o servidor é fechado.
+     *
+     * @param reactor
+     */
+    protected void disconnectAll(Reactor reactor) {
+        for (SelectionKey key : reactor.getSelector().keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ex) {
+                LOG.error("Close failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Metodo que trata da conexao do cliente já aceito pelo acceptor e
+     * configurado como nao bloqueante. Executado na thread do reactor que
+     * recebeu o cliente, deve registrar o socket no Selector do reactor com a
+     * flag indicando que o socket ira ler do cliente.
+     *
+     * @param reactor Reactor que recebeu o cliente
+     * @param socketClient Socket do cliente
+     * @throws ClosedChannelException
+     * @throws IOException
+     */
+    protected abstract void acceptClient(Reactor reactor, SocketChannel socketClient) throws Exception;
+
+    /**
+     * Esse metodo é responsavel por ler informações na forma de byte do
+     * cliente,ou seja ele irá receber e ler os dados enviados do cliente.
+     *
+     * @param reactor
+     * @param key
+     * @throws ClosedChannelException
+     * @throws IOException
+     */
+    protected abstract void readFromClient(Reactor reactor, SelectionKey key) throws Exception;
+
+    /**
+     * Trata um cliente que usou a sua cota em um ciclo anterior e foi
+     * colocado na fila de prontos com {@link Reactor#addReady(SelectionKey)}.
+     * Por padrão, lê o cliente novamente.
+     *
+     * @param reactor
+     * @param key
+     * @throws Exception
+     */
+    protected void readyClient(Reactor reactor, SelectionKey key) throws Exception {
+        readFromClient(reactor, key);
+    }
+
+    /**
+     * Esse metodo é responsavel por enviar os dados para o cliente quando já
+     * estão processados.
+     *
+     * @param reactor
+     * @param key
+     * @throws ClosedChannelException
+     * @throws IOException
+     */
+    protected abstract void writeToClient(Reactor reactor, SelectionKey key) throws Exception;
+
+    /**
+     * Executado antes do channel realizar qualquer procedimento. Será chamado
+     * uma vez a cada vez que o eventLoop do reactor é rodado.
+     */
+    protected abstract void before(Reactor reactor);
+
+    /**
+     * Executado depois do before e depois que o selector encontra algum channel
+     * para processar. Será chamado uma vez a cada vez que o eventLoop do
+     * reactor é rodado.
+     */
+    protected abstract void between(Reactor reactor);
+
+    /**
+     * É executado dentro do eventLoop e enquanto tiver chaves (as chaves são as
+     * operações que o cliente vai realizar, tais como escrever para o servidor
+     * ou ler do servidor) para serem processadas. Será chamado 1-1 para cada
+     * chave antes de ser processada.
+     */
+    protected abstract void beginLoop(Reactor reactor);
+
+    /**
+     * Executado no fim do eventLoop. Será chamado uma vez a cada vez que o
+     * eventLoop do reactor é rodado.
+     */
+    protected abstract void after(Reactor reactor);
+}
@@ -0,0 +1,586 @@
+package br.com.server;
+
+import br.com.server.admission.AdmissionControl;
+import br.com.server.buffer.AdaptiveReceiveAllocator;
+import br.com.server.buffer.BufferPool;
+import br.com.server.log.Logger;
+import br.com.server.metrics.ServerMetrics;
+import br.com.server.model.AbstractClientTracker;
+import br.com.server.model.InvalidFrameException;
+import br.com.server.model.StatusClientTracker;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor baseado em NIO.2 ({@code AsynchronousServerSocketChannel}), sem
+ * Selector: cada operação de I/O termina em um {@link CompletionHandler}
+ * executado por uma das threads do {@link AsynchronousChannelGroup} do
+ * servidor, compartilhado por todos os clientes. Utiliza o mesmo
+ * {@link ClientProtocol} dos outros servidores.
+ *
+ * Cada cliente tem sempre uma única operação pendente, encadeada pelos
+ * handlers: a leitura termina, as mensagens completas são separadas e
+ * processadas, as respostas são escritas de uma vez (gathering) e, quando a
+ * escrita termina, a próxima leitura é iniciada. Como o cliente não é lido
+ * enquanto as respostas não foram enviadas, não são necessárias watermarks.
+ *
+ * Os buffers de leitura são obtidos do pool com o tamanho do
+ * {@link AdaptiveReceiveAllocator}, mas ficam com o cliente enquanto a
+ * leitura está pendente, então a memória cresce com a quantidade de clientes
+ * ociosos, diferente dos controllers baseados em Selector, que só obtêm o
+ * buffer quando existem bytes para ler.
+ *
+ * As mensagens são processadas na thread do grupo que completou a leitura,
+ * então o {@link ServerConfig#getProcessExecutor()} não é utilizado. Os
+ * timeouts são executados por um timer do servidor, com as mesmas regras dos
+ * controllers, e não pelo timeout da leitura do channel, que impediria novas
+ * leituras.
+ *
+ * @author Guilherme Alves Silveira
+ * @param <T> Tipo do tracker que separa as mensagens de cada cliente.
+ */
+public class AsyncServer<T extends AbstractClientTracker<?>> implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(AsyncServer.class);
+    private static final int INITIAL_RESPONSES = 4;
+    /**
+     * Tempo, em ms, que o cliente tem para fechar a conexão depois da
+     * resposta do timeout.
+     */
+    private static final long LINGER_MILLIS = 1_000;
+
+    private final AsynchronousServerSocketChannel server;
+    private final ClientProtocol<T> protocol;
+    private final long timeout;
+    private final int buffSize;
+    private final BufferPool bufferPool;
+    private final AdaptiveReceiveAllocator receiveAllocator;
+    private final Set<Connection> clients;
+    private final ServerMetrics metrics;
+    private final LongAdder frames;
+    private final int maxConnections;
+    private final AdmissionControl admissionControl;
+    private final Acceptor acceptor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final CountDownLatch closed;
+    private volatile boolean running = true;
+
+    public AsyncServer(
+            long timeout,
+            int buffSize,
+            AsynchronousServerSocketChannel server,
+            ClientProtocol<T> protocol
+    ) throws IOException {
+        this(timeout, buffSize, server, protocol, new ServerConfig());
+    }
+
+    public AsyncServer(
+            long timeout,
+            int buffSize,
+            AsynchronousServerSocketChannel server,
+            ClientProtocol<T> protocol,
+            ServerConfig config
+    ) throws IOException {
+        this.server = Objects.requireNonNull(server);
+        this.protocol = Objects.requireNonNull(protocol);
+        this.timeout = timeout;
+        this.buffSize = buffSize;
+        this.bufferPool = config.getBufferPool();
+        this.receiveAllocator = config.getReceiveAllocator();
+        this.clients = ConcurrentHashMap.newKeySet();
+        this.metrics = config.getMetrics();
+        this.frames = metrics.frames(framingMode());
+        this.maxConnections = config.getMaxConnections();
+        this.admissionControl = config.getAdmissionControl();
+        this.acceptor = new Acceptor();
+        this.timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "async-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.closed = new CountDownLatch(1);
+
+        if (null == server.getLocalAddress()) {
+            throw new IllegalArgumentException("The server must be bound.");
+        }
+
+        LOG.info("Server started!");
+    }
+
+    /**
+     * Cria o grupo compartilhado pelo servidor e pelos seus clientes, com uma
+     * thread para cada reactor da configuração. As threads utilizam o cache
+     * local do pool de buffers.
+     *
+     * @param config
+     * @return O grupo, que deve ser encerrado por quem o criou.
+     * @throws IOException
+     */
+    public static AsynchronousChannelGroup newChannelGroup(ServerConfig config) throws IOException {
+        BufferPool bufferPool = config.getBufferPool();
+        AtomicInteger next = new AtomicInteger();
+        return AsynchronousChannelGroup.withFixedThreadPool(config.getReactors(), task -> {
+            Thread thread = new Thread(() -> {
+                bufferPool.attachThreadCache();
+                task.run();
+            }, "async-" + next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Começa a aceitar os clientes e espera, na thread atual, até que o
+     * servidor seja fechado com {@link #close()}.
+     *
+     * @throws IOException
+     */
+    public void runEventLoop() throws IOException {
+        accept();
+        try {
+            closed.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            close();
+        }
+    }
+
+    /**
+     * Para de aceitar clientes e desconecta os clientes atuais. Não espera os
+     * handlers pendentes terminarem, e não encerra o grupo do servidor.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            server.close();
+            for (Connection connection : clients) {
+                connection.closeChannel();
+            }
+        } finally {
+            timer.shutdownNow();
+            closed.countDown();
+        }
+    }
+
+    /**
+     * @return Nome do modo de framing nas métricas. Por padrão, o nome da
+     * classe do protocolo sem o sufixo Protocol, por exemplo "size".
+     */
+    protected String framingMode() {
+        String name = protocol.getClass().getSimpleName();
+        if (name.endsWith("Protocol")) {
+            name = name.substring(0, name.length() - "Protocol".length());
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return Quantidade de clientes conectados.
+     */
+    public int getConnections() {
+        return clients.size();
+    }
+
+    /**
+     * Utilizado para ser sobreescrito para processar algo quando um timeout
+     * ocorre.
+     */
+    protected void whenTimeout() {
+        //Do nothing
+    }
+
+    private void accept() {
+        try {
+            server.accept(null, acceptor);
+        } catch (RuntimeException ex) {
+            if (running) {
+                LOG.error("Accept failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Aceita o cliente se estiver dentro dos limites de conexões, ou o
+     * desconecta sem criar o tracker.
+     */
+    private void admit(AsynchronousSocketChannel socketClient) {
+        SocketAddress remote;
+        try {
+            remote = socketClient.getRemoteAddress();
+        } catch (IOException ex) {
+            remote = null;
+        }
+
+        if (clients.size() >= maxConnections
+                || (null != admissionControl && !admissionControl.tryAcquire(remote))) {
+            reject(socketClient);
+            return;
+        }
+
+        metrics.accepted();
+        Connection connection = new Connection(socketClient, remote);
+        clients.add(connection);
+        if (!running) {
+            connection.closeChannel();
+        }
+        connection.start();
+    }
+
+    private void reject(AsynchronousSocketChannel socketClient) {
+        metrics.rejected();
+        LOG.debug("REJECTED %s", socketClient);
+        try (socketClient) {
+            socketClient.setOption(StandardSocketOptions.SO_LINGER, 0);
+        } catch (IOException ex) {
+            LOG.debug("Reject failed: %s", ex);
+        }
+    }
+
+    private final class Acceptor implements CompletionHandler<AsynchronousSocketChannel, Void> {
+
+        @Override
+        public void completed(AsynchronousSocketChannel socketClient, Void attachment) {
+            try {
+                admit(socketClient);
+            } catch (RuntimeException ex) {
+                LOG.error("Accept failed", ex);
+            } finally {
+                //somente um accept pendente, então os limites são verificados em sequência
+                if (running) {
+                    accept();
+                }
+            }
+        }
+
+        @Override
+        public void failed(Throwable ex, Void attachment) {
+            if (!running || ex instanceof ClosedChannelException) {
+                return;
+            }
+            LOG.error("Accept failed", ex);
+            accept();
+        }
+    }
+
+    /**
+     * Estado de um cliente. A leitura e a escrita se encadeiam nos handlers,
+     * e o timeout é executado pelo timer do servidor, então o estado é
+     * protegido pelo monitor da conexão. As operações de I/O são iniciadas
+     * somente no fim de cada método, já que o handler pode ser executado
+     * imediatamente pela mesma thread.
+     */
+    private final class Connection implements CompletionHandler<Integer, ByteBuffer> {
+
+        private final AsynchronousSocketChannel channel;
+        private final SocketAddress remote;
+        private final T clientTracker;
+        private final AdaptiveReceiveAllocator.Handle receiveHandle;
+        private final Writer writer;
+        /**
+         * Respostas sendo escritas, da posição written até count.
+         */
+        private ByteBuffer[] responses;
+        private int count;
+        private int written;
+        private boolean writing;
+        /**
+         * Depois do timeout os bytes recebidos são descartados até o cliente
+         * fechar a conexão.
+         */
+        private boolean timedOut;
+        private boolean disconnected;
+        private ScheduledFuture<?> timeoutTask;
+
+        Connection(AsynchronousSocketChannel channel, SocketAddress remote) {
+            this.channel = channel;
+            this.remote = remote;
+            this.clientTracker = protocol.newClientTracker(channel, timeout, bufferPool);
+            this.receiveHandle = receiveAllocator.newHandle(buffSize);
+            this.writer = new Writer();
+            this.responses = new ByteBuffer[INITIAL_RESPONSES];
+        }
+
+        synchronized void start() {
+            if (clientTracker.canTimeout()) {
+                scheduleTimeout();
+            }
+            read();
+        }
+
+        private void scheduleTimeout() {
+            long delay = Math.max(clientTracker.getDeadline() - System.currentTimeMillis(), 0);
+            try {
+                timeoutTask = timer.schedule(this::timeout, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                //o servidor foi fechado
+                disconnect();
+            }
+        }
+
+        private void read() {
+            if (disconnected) {
+                return;
+            }
+
+            ByteBuffer buf = bufferPool.lease(receiveHandle.guess());
+            try {
+                channel.read(buf, buf, this);
+            } catch (RuntimeException ex) {
+                //o grupo foi encerrado
+                bufferPool.release(buf);
+                disconnect();
+            }
+        }
+
+        @Override
+        public synchronized void completed(Integer readed, ByteBuffer buf) {
+            if (disconnected || readed < 0) {
+                bufferPool.release(buf);
+                disconnect();
+                return;
+            }
+
+            if (timedOut || 0 == readed) {
+                bufferPool.release(buf);
+                read();
+                return;
+            }
+
+            metrics.read(readed);
+            clientTracker.addBytesRead(readed);
+            receiveHandle.record(readed);
+            buf.flip();
+            try {
+                clientTracker.addRequestPart(buf);
+                frameRequests();
+            } catch (InvalidFrameException ex) {
+                LOG.debug("[%s INVALID FRAME] %s", channel, ex.getMessage());
+                disconnect();
+                return;
+            } catch (RuntimeException ex) {
+                LOG.error("Client failed", ex);
+                disconnect();
+                return;
+            }
+
+            if (0 == count) {
+                read();
+            } else {
+                write();
+            }
+        }
+
+        @Override
+        public synchronized void failed(Throwable ex, ByteBuffer buf) {
+            bufferPool.release(buf);
+            if (running && !disconnected && !(ex instanceof AsynchronousCloseException)) {
+                LOG.debug("[%s DISCONNECTED] %s", channel, ex);
+            }
+            disconnect();
+        }
+
+        private void frameRequests() {
+            int length;
+            while (AbstractClientTracker.NO_FRAME != (length = protocol.frameLength(clientTracker))) {
+                LOG.debug("PROCESSED %s", channel);
+                frames.increment();
+                clientTracker.requestReceived();
+                clientTracker.setStatus(StatusClientTracker.PROCESS);
+                addResponse(protocol.process(clientTracker, clientTracker.takeRequest(length)));
+            }
+
+            if (clientTracker.getStatus() == StatusClientTracker.PROCESS && null != timeoutTask) {
+                timeoutTask.cancel(false);
+                timeoutTask = null;
+            }
+        }
+
+        /**
+         * Executado pelo timer: processa o que foi recebido até o timeout,
+         * envia a resposta e encerra a escrita. A leitura pendente continua,
+         * descartando os bytes, até o cliente fechar a conexão, para que o
+         * socket não seja fechado com bytes não lidos, o que enviaria um RST
+         * e descartaria a resposta no cliente.
+         */
+        private synchronized void timeout() {
+            timeoutTask = null;
+            if (disconnected || timedOut
+                    || clientTracker.getStatus() == StatusClientTracker.PROCESS) {
+                return;
+            }
+
+            if (!clientTracker.isTimeoutReached()) {
+                scheduleTimeout();
+                return;
+            }
+
+            LOG.debug("TIMEOUT %s", channel);
+            timedOut = true;
+            metrics.timeout();
+            clientTracker.setStatus(StatusClientTracker.TIMEOUT);
+            try {
+                whenTimeout();
+                addResponse(protocol.process(clientTracker, clientTracker.takeRequest()));
+            } catch (RuntimeException ex) {
+                LOG.error("Timeout failed", ex);
+                disconnect();
+                return;
+            }
+
+            if (!writing) {
+                write();
+            }
+        }
+
+        private void addResponse(ByteBuffer response) {
+            if (count == responses.length) {
+                responses = Arrays.copyOf(responses, count * 2);
+            }
+            responses[count++] = response;
+        }
+
+        private void write() {
+            writing = true;
+            try {
+                channel.write(responses, written, count - written, 0, TimeUnit.MILLISECONDS,
+                        null, writer);
+            } catch (RuntimeException ex) {
+                disconnect();
+            }
+        }
+
+        /**
+         * Devolve as respostas já escritas.
+         *
+         * @return Se todas as respostas foram escritas.
+         */
+        private boolean releaseWritten() {
+            while (written < count && !responses[written].hasRemaining()) {
+                clientTracker.releaseResponse(responses[written]);
+                responses[written++] = null;
+            }
+
+            if (written < count) {
+                return false;
+            }
+            written = 0;
+            count = 0;
+            return true;
+        }
+
+        /**
+         * Envia o FIN depois da resposta do timeout e fecha o socket se o
+         * cliente não fechar a conexão em {@link #LINGER_MILLIS}.
+         */
+        private void shutdownOutput() {
+            try {
+                channel.shutdownOutput();
+                timer.schedule(this::closeChannel, LINGER_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (IOException | RejectedExecutionException ex) {
+                disconnect();
+            }
+        }
+
+        /**
+         * Fecha o socket, a operação pendente falha e desconecta o cliente.
+         */
+        void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOG.error("Close failed", ex);
+            }
+        }
+
+        /**
+         * Libera o cliente, chamado somente com o monitor da conexão.
+         */
+        private void disconnect() {
+            if (disconnected) {
+                return;
+            }
+            disconnected = true;
+
+            if (null != timeoutTask) {
+                timeoutTask.cancel(false);
+                timeoutTask = null;
+            }
+            clients.remove(this);
+            metrics.disconnected();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("[%s CLOSED] %s", channel, clientTracker.trafficSummary());
+            }
+            if (null != admissionControl) {
+                admissionControl.release(remote);
+            }
+            for (int i = written; i < count; i++) {
+                clientTracker.releaseResponse(responses[i]);
+                responses[i] = null;
+            }
+            clientTracker.release();
+            closeChannel();
+        }
+
+        private final class Writer implements CompletionHandler<Long, Void> {
+
+            @Override
+            public void completed(Long bytes, Void attachment) {
+                synchronized (Connection.this) {
+                    metrics.written(bytes);
+                    clientTracker.addBytesWritten(bytes);
+                    if (disconnected) {
+                        return;
+                    }
+
+                    if (!releaseWritten()) {
+                        write();
+                        return;
+                    }
+
+                    writing = false;
+                    if (timedOut) {
+                        shutdownOutput();
+                    } else {
+                        read();
+                    }
+                }
+            }
+
+            @Override
+            public void failed(Throwable ex, Void attachment) {
+                synchronized (Connection.this) {
+                    writing = false;
+                    if (running && !disconnected && !(ex instanceof AsynchronousCloseException)) {
+                        LOG.debug("[%s DISCONNECTED] %s", channel, ex);
+                    }
+                    disconnect();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package br.com.server;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.model.AbstractClientTracker;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * Protocolo de um servidor: como as mensagens são separadas e como são
+ * processadas. É independente do modelo de I/O, então o mesmo protocolo é
+ * utilizado pelos controllers baseados em Selector e pelo
+ * {@link VirtualThreadServer}.
+ *
+ * @author Guilherme Alves Silveira
+ * @param <T> Tipo do tracker que separa as mensagens de cada cliente.
+ */
+public interface ClientProtocol<T extends AbstractClientTracker<?>> {
+
+    /**
+     * @param socketClient
+     * @param timeout Tempo, em ms, que o cliente tem para enviar a mensagem.
+     * @param bufferPool Pool de onde são obtidos os buffers do cliente.
+     * @return Um novo tracker para o cliente.
+     */
+    T newClientTracker(NetworkChannel socketClient, long timeout, BufferPool bufferPool);
+
+    /**
+     * Informa o tamanho da primeira mensagem completa recebida do cliente.
+     *
+     * @param clientTracker
+     * @return Tamanho da mensagem ou {@link AbstractClientTracker#NO_FRAME}.
+     */
+    int frameLength(T clientTracker);
+
+    /**
+     * Processa uma mensagem do cliente. Pode ser chamado novamente para o
+     * mesmo cliente antes que a mensagem anterior termine de ser processada,
+     * então não deve alterar o estado do tracker.
+     *
+     * @param clientTracker Cliente que enviou a mensagem.
+     * @param request Mensagem, que deve ser fechada depois de utilizada.
+     * @return A resposta, criada preferencialmente com
+     * {@link AbstractClientTracker#newResponse(byte[])}.
+     */
+    ByteBuffer process(T clientTracker, CompositeByteBuffer request);
+}
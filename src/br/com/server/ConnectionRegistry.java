@@ -0,0 +1,134 @@
+package br.com.server;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Tabela de conexões de um reactor, indexada por um id inteiro e compacto: os
+ * ids são as posições da tabela e os ids liberados são reutilizados antes de
+ * a tabela crescer, então ficam entre 0 e a maior quantidade de conexões
+ * simultâneas.
+ *
+ * Somente a thread do reactor registra e remove conexões, então nenhuma
+ * operação precisa de locks ou de CAS. Outras threads podem consultar a
+ * tabela com {@link #get(int)} e {@link #size()}.
+ *
+ * Um id pode ser reutilizado por outra conexão logo depois de ser removido,
+ * então quem guarda um id deve conferir se a conexão obtida ainda é a
+ * esperada.
+ *
+ * @author Guilherme Alves Silveira
+ * @param <T> Tipo do objeto guardado para cada conexão.
+ */
+public final class ConnectionRegistry<T> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<T> slots;
+    private volatile int size;
+    private int[] free;
+    private int freeCount;
+    private int next;
+
+    public ConnectionRegistry() {
+        this.slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        this.free = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Guarda uma conexão. Só pode ser chamado pela thread do reactor.
+     *
+     * @param connection
+     * @return O id da conexão.
+     */
+    public int register(T connection) {
+        if (null == connection) {
+            throw new NullPointerException("The connection can't be null!");
+        }
+
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            id = next++;
+            if (id == slots.length()) {
+                grow();
+            }
+        }
+
+        slots.lazySet(id, connection);
+        size++;
+        return id;
+    }
+
+    /**
+     * Remove a conexão do id informado, liberando o id. Só pode ser chamado
+     * pela thread do reactor.
+     *
+     * @param id
+     * @return A conexão removida, ou null se não havia conexão no id.
+     */
+    public T remove(int id) {
+        if (id < 0 || id >= next) {
+            return null;
+        }
+
+        T connection = slots.get(id);
+        if (null == connection) {
+            return null;
+        }
+
+        slots.lazySet(id, null);
+        if (freeCount == free.length) {
+            int[] grown = new int[free.length * 2];
+            System.arraycopy(free, 0, grown, 0, freeCount);
+            free = grown;
+        }
+        free[freeCount++] = id;
+        size--;
+        return connection;
+    }
+
+    /**
+     * @param id
+     * @return A conexão do id informado, ou null se não houver.
+     */
+    public T get(int id) {
+        AtomicReferenceArray<T> current = slots;
+        if (id < 0 || id >= current.length()) {
+            return null;
+        }
+        return current.get(id);
+    }
+
+    /**
+     * @return Quantidade de conexões registradas.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Percorre as conexões registradas. Só pode ser chamado pela thread do
+     * reactor, que pode remover conexões durante o percurso.
+     *
+     * @param action
+     */
+    public void forEach(Consumer<T> action) {
+        for (int id = 0; id < next; id++) {
+            T connection = slots.get(id);
+            if (null != connection) {
+                action.accept(connection);
+            }
+        }
+    }
+
+    private void grow() {
+        AtomicReferenceArray<T> current = slots;
+        AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(current.length() * 2);
+        for (int i = 0; i < current.length(); i++) {
+            grown.lazySet(i, current.get(i));
+        }
+        slots = grown;
+    }
+}
@@ -0,0 +1,337 @@
+package br.com.server;
+
+import br.com.server.concurrent.MpscQueue;
+import br.com.server.log.Logger;
+import br.com.server.select.SelectStrategy;
+import br.com.server.timer.TimingWheel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reactor responsável pela leitura e escrita de uma parte dos clientes. Cada
+ * reactor possui o seu próprio Selector e é executado em sua própria thread,
+ * recebendo do acceptor os clientes já aceitos, ou aceitando os clientes do
+ * seu próprio ServerSocketChannel com {@link ServerConfig#isReusePort()}.
+ *
+ * O estado de cada cliente fica no attachment da sua {@link SelectionKey} e a
+ * key é guardada no {@link ConnectionRegistry} do reactor, com um id inteiro.
+ * Outras threads não alteram as keys: elas enviam comandos com
+ * {@link #execute(Runnable)} ou pedem alterações no interestOps com
+ * {@link #interestOpsOr(int, Object, int)}, que são executados pela thread do
+ * reactor a cada iteração do eventLoop. Os wakeups do Selector são agrupados:
+ * enquanto um wakeup não for consumido por um select, os comandos seguintes
+ * não acordam o Selector novamente.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class Reactor {
+
+    private static final Logger LOG = Logger.getLogger(Reactor.class);
+    private static final int WHEEL_SIZE = 512;
+    /**
+     * Quantidade máxima de buffers de uma leitura com scatter.
+     */
+    static final int MAX_READ_BUFFERS = 8;
+
+    private final int id;
+    private final Selector selector;
+    private final SelectStrategy selectStrategy;
+    private final TimingWheel<SelectionKey> timingWheel;
+    private final ConnectionRegistry<SelectionKey> registry;
+    private final MpscQueue<SocketChannel> accepted;
+    private final MpscQueue<Runnable> commands;
+    private final AtomicInteger connections;
+    private final AtomicBoolean wakeupPending;
+    /**
+     * Buffers de uma leitura, reutilizado pela thread do reactor.
+     */
+    private final ByteBuffer[] readBuffers;
+    /**
+     * Clientes que usaram a sua cota em um ciclo e ainda têm bytes ou
+     * mensagens para tratar, só é acessada pela thread do reactor.
+     */
+    private final ArrayDeque<SelectionKey> ready;
+    private long cycle;
+    /**
+     * Channel de onde o reactor aceita os seus clientes, ou null se os
+     * clientes vêm do acceptor.
+     */
+    private ServerSocketChannel listener;
+    private volatile Thread thread;
+
+    Reactor(int id, ServerConfig config) throws IOException {
+        this.id = id;
+        this.selector = Selector.open();
+        this.selectStrategy = config.newSelectStrategy();
+        this.timingWheel = new TimingWheel<>(config.getTimerTickMillis(),
+                WHEEL_SIZE, System.currentTimeMillis());
+        this.registry = new ConnectionRegistry<>();
+        this.accepted = new MpscQueue<>();
+        this.commands = new MpscQueue<>();
+        this.connections = new AtomicInteger();
+        this.wakeupPending = new AtomicBoolean();
+        this.readBuffers = new ByteBuffer[MAX_READ_BUFFERS];
+        this.ready = new ArrayDeque<>();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Selector getSelector() {
+        return selector;
+    }
+
+    /**
+     * @return Channel de onde o reactor aceita os seus clientes, ou null se
+     * os clientes são entregues pelo acceptor.
+     */
+    public ServerSocketChannel getListener() {
+        return listener;
+    }
+
+    /**
+     * Registra o channel de onde o reactor aceita os seus clientes. Deve ser
+     * chamado antes de a thread do reactor ser iniciada.
+     */
+    void listen(ServerSocketChannel listener) throws IOException {
+        this.listener = listener;
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return Roda com os timeouts dos clientes deste reactor. Só deve ser
+     * utilizada pela thread do reactor.
+     */
+    public TimingWheel<SelectionKey> getTimingWheel() {
+        return timingWheel;
+    }
+
+    /**
+     * @return Keys dos clientes deste reactor, indexadas pelo id de cada
+     * conexão. Só deve ser alterada pela thread do reactor.
+     */
+    public ConnectionRegistry<SelectionKey> getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return Se a thread atual é a thread deste reactor.
+     */
+    public boolean inReactorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Executa um comando na thread do reactor. Se chamado pela própria thread
+     * do reactor, o comando é executado imediatamente, senão é adicionado na
+     * fila de comandos e o Selector é acordado.
+     *
+     * @param command
+     */
+    public void execute(Runnable command) {
+        if (inReactorThread()) {
+            command.run();
+            return;
+        }
+
+        commands.offer(command);
+        wakeup();
+    }
+
+    /**
+     * Adiciona operações no interestOps da key de uma conexão. A alteração é
+     * feita pela thread do reactor, imediatamente se chamado por ela, ou na
+     * próxima iteração do eventLoop. Se a conexão foi desconectada (ou o id
+     * foi reutilizado por outra conexão) antes da alteração ser aplicada, ela
+     * é ignorada.
+     *
+     * @param connectionId Id da conexão na tabela do reactor.
+     * @param attachment Attachment esperado na key da conexão.
+     * @param operations Operações presentes nas constantes do objeto
+     * SelectionKey, tais como OP_READ, OP_WRITE, etc.
+     */
+    public void interestOpsOr(int connectionId, Object attachment, int operations) {
+        execute(new InterestChange(connectionId, attachment, operations, true));
+    }
+
+    /**
+     * Remove operações do interestOps da key de uma conexão, com as mesmas
+     * regras do {@link #interestOpsOr(int, Object, int)}.
+     *
+     * @param connectionId Id da conexão na tabela do reactor.
+     * @param attachment Attachment esperado na key da conexão.
+     * @param operations Operações que serão removidas.
+     */
+    public void interestOpsAnd(int connectionId, Object attachment, int operations) {
+        execute(new InterestChange(connectionId, attachment, operations, false));
+    }
+
+    /**
+     * Acorda o Selector do reactor, a não ser que já exista um wakeup que
+     * ainda não foi consumido por um select. Chamado pela thread do reactor
+     * não faz nada, já que os comandos são executados antes do próximo
+     * select, assim como com uma {@link SelectStrategy} que nunca bloqueia.
+     */
+    public void wakeup() {
+        if (selectStrategy.isBlocking() && !inReactorThread()
+                && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * @return Quantidade de clientes conectados neste reactor.
+     */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Entrega um cliente aceito para este reactor. O registro no Selector é
+     * feito pela thread do próprio reactor, na próxima iteração do eventLoop.
+     *
+     * @param socketClient Socket do cliente, já configurado como não
+     * bloqueante.
+     */
+    void dispatch(SocketChannel socketClient) {
+        connections.incrementAndGet();
+        accepted.offer(socketClient);
+        wakeup();
+    }
+
+    /**
+     * @return Array para os buffers de uma leitura com scatter, só pode ser
+     * utilizado pela thread do reactor.
+     */
+    ByteBuffer[] readBuffers() {
+        return readBuffers;
+    }
+
+    /**
+     * Coloca um cliente que usou a sua cota do ciclo na fila de prontos, que
+     * é tratada antes do próximo select. Só pode ser chamado pela thread do
+     * reactor.
+     *
+     * @param key
+     */
+    public void addReady(SelectionKey key) {
+        ready.addLast(key);
+    }
+
+    SelectionKey pollReady() {
+        return ready.pollFirst();
+    }
+
+    /**
+     * @return Quantidade de clientes na fila de prontos.
+     */
+    public int getReadyCount() {
+        return ready.size();
+    }
+
+    /**
+     * @return Ciclo atual do eventLoop, incrementado a cada select.
+     */
+    public long getCycle() {
+        return cycle;
+    }
+
+    SocketChannel pollAccepted() {
+        return accepted.poll();
+    }
+
+    void bindThread(Thread thread) {
+        this.thread = thread;
+    }
+
+    /**
+     * Espera pelos eventos do Selector com a {@link SelectStrategy} do
+     * reactor, no máximo até o próximo timeout da roda. Se existirem clientes
+     * na fila de prontos, somente verifica os eventos, sem esperar.
+     *
+     * @return Quantidade de channels prontos.
+     * @throws IOException
+     */
+    int select() throws IOException {
+        cycle++;
+        if (!ready.isEmpty()) {
+            return selector.selectNow();
+        }
+
+        long nextExpiration = timingWheel.nextExpirationTime();
+        long timeoutMillis = nextExpiration < 0
+                ? -1 : Math.max(0, nextExpiration - System.currentTimeMillis());
+        return selectStrategy.select(selector, timeoutMillis);
+    }
+
+    /**
+     * Chamado pela thread do reactor depois de cada select, quando o wakeup
+     * pendente (se existir) já foi consumido. Os comandos adicionados antes
+     * disso são executados na próxima iteração, então não precisam de outro
+     * wakeup.
+     */
+    void selected() {
+        if (wakeupPending.get()) {
+            wakeupPending.set(false);
+        }
+    }
+
+    /**
+     * Executa os comandos enviados por outras threads, chamado pela thread do
+     * reactor a cada iteração do eventLoop.
+     */
+    void runCommands() {
+        Runnable command;
+        while (null != (command = commands.poll())) {
+            try {
+                command.run();
+            } catch (Throwable th) {
+                LOG.error("Command failed", th);
+            }
+        }
+    }
+
+    /**
+     * Informa que um cliente deste reactor foi desconectado.
+     */
+    public void disconnected() {
+        connections.decrementAndGet();
+    }
+
+    private final class InterestChange implements Runnable {
+
+        private final int connectionId;
+        private final Object attachment;
+        private final int operations;
+        private final boolean add;
+
+        InterestChange(int connectionId, Object attachment, int operations, boolean add) {
+            this.connectionId = connectionId;
+            this.attachment = attachment;
+            this.operations = operations;
+            this.add = add;
+        }
+
+        @Override
+        public void run() {
+            SelectionKey key = registry.get(connectionId);
+            if (null == key || key.attachment() != attachment || !key.isValid()) {
+                return;
+            }
+
+            if (add) {
+                key.interestOpsOr(operations);
+            } else {
+                key.interestOpsAnd(~operations);
+            }
+        }
+    }
+}
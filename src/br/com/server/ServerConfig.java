@@ -0,0 +1,316 @@
+package br.com.server;
+
+import br.com.server.admission.AdmissionControl;
+import br.com.server.buffer.AdaptiveReceiveAllocator;
+import br.com.server.buffer.BufferPool;
+import br.com.server.executor.BoundedProcessExecutor;
+import br.com.server.executor.ProcessExecutor;
+import br.com.server.metrics.ServerMetrics;
+import br.com.server.select.SelectStrategy;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Configurações do servidor. Os valores padrões são utilizados quando o
+ * servidor é criado sem uma configuração explícita.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class ServerConfig {
+
+    /**
+     * Distribui as conexões aceitas entre os reactors em sequência.
+     */
+    public static final int DISPATCH_ROUND_ROBIN = 1;
+    /**
+     * Distribui as conexões aceitas para o reactor com menos conexões ativas.
+     */
+    public static final int DISPATCH_LEAST_LOADED = 2;
+
+    private int reactors = Runtime.getRuntime().availableProcessors();
+    private int dispatch = DISPATCH_ROUND_ROBIN;
+    private BufferPool bufferPool = BufferPool.getDefault();
+    private long timerTickMillis = 10;
+    private int writeHighWatermark = 64 * 1024;
+    private int writeLowWatermark = 32 * 1024;
+    private ProcessExecutor processExecutor;
+    private Supplier<? extends SelectStrategy> selectStrategy = SelectStrategy::blocking;
+    private ServerMetrics metrics;
+    private int maxConnections = Integer.MAX_VALUE;
+    private int acceptBatch = 64;
+    private int acceptBacklog = 1024;
+    private boolean reusePort;
+    private AdmissionControl admissionControl;
+    private AdaptiveReceiveAllocator receiveAllocator = new AdaptiveReceiveAllocator();
+    private int readBudgetBytes = 64 * 1024;
+    private int readBudgetReads = 16;
+    private int writeBudgetBytes = 256 * 1024;
+    private int messageBudget = 64;
+
+    /**
+     * @return Quantidade de reactors (cada um com seu próprio Selector e sua
+     * própria thread) que tratam a leitura e a escrita dos clientes.
+     */
+    public int getReactors() {
+        return reactors;
+    }
+
+    public void setReactors(int reactors) {
+        if (reactors < 1) {
+            throw new IllegalArgumentException("At least one reactor is required!");
+        }
+        this.reactors = reactors;
+    }
+
+    public int getDispatch() {
+        return dispatch;
+    }
+
+    public void setDispatch(int dispatch) {
+        switch (dispatch) {
+            case DISPATCH_ROUND_ROBIN:
+            case DISPATCH_LEAST_LOADED:
+                this.dispatch = dispatch;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid dispatch!");
+        }
+    }
+
+    /**
+     * @return Pool de onde são obtidos os buffers de leitura e de montagem das
+     * requisições.
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = Objects.requireNonNull(bufferPool);
+    }
+
+    /**
+     * @return Resolução, em ms, da roda de timeouts de cada reactor.
+     */
+    public long getTimerTickMillis() {
+        return timerTickMillis;
+    }
+
+    public void setTimerTickMillis(long timerTickMillis) {
+        if (timerTickMillis < 1) {
+            throw new IllegalArgumentException("Invalid timer tick!");
+        }
+        this.timerTickMillis = timerTickMillis;
+    }
+
+    /**
+     * @return Quantidade de bytes aguardando envio para um cliente a partir
+     * da qual o servidor para de ler desse cliente.
+     */
+    public int getWriteHighWatermark() {
+        return writeHighWatermark;
+    }
+
+    /**
+     * @return Quantidade de bytes aguardando envio para um cliente abaixo da
+     * qual o servidor volta a ler desse cliente.
+     */
+    public int getWriteLowWatermark() {
+        return writeLowWatermark;
+    }
+
+    public void setWriteWatermarks(int writeLowWatermark, int writeHighWatermark) {
+        if (writeLowWatermark < 0 || writeHighWatermark < writeLowWatermark) {
+            throw new IllegalArgumentException("Invalid write watermarks!");
+        }
+        this.writeLowWatermark = writeLowWatermark;
+        this.writeHighWatermark = writeHighWatermark;
+    }
+
+    /**
+     * @return Estratégia de execução do processamento das mensagens. Por
+     * padrão, um pool com uma thread por processador e uma fila de 10.000
+     * mensagens.
+     */
+    public ProcessExecutor getProcessExecutor() {
+        if (null == processExecutor) {
+            processExecutor = new BoundedProcessExecutor(
+                    Runtime.getRuntime().availableProcessors(), 10_000);
+        }
+        return processExecutor;
+    }
+
+    public void setProcessExecutor(ProcessExecutor processExecutor) {
+        this.processExecutor = Objects.requireNonNull(processExecutor);
+    }
+
+    /**
+     * @return Nova instância da estratégia de espera por eventos, uma para
+     * cada reactor. Por padrão, {@link SelectStrategy#blocking()}.
+     */
+    public SelectStrategy newSelectStrategy() {
+        return Objects.requireNonNull(selectStrategy.get());
+    }
+
+    /**
+     * @param selectStrategy Cria a estratégia de cada reactor, por exemplo
+     * {@code () -> SelectStrategy.adaptive(64)}.
+     */
+    public void setSelectStrategy(Supplier<? extends SelectStrategy> selectStrategy) {
+        this.selectStrategy = Objects.requireNonNull(selectStrategy);
+    }
+
+    /**
+     * @return Quantidade máxima de clientes conectados. Acima dela os novos
+     * clientes são desconectados assim que aceitos.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Invalid max connections!");
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return Quantidade máxima de clientes aceitos a cada evento de
+     * OP_ACCEPT, antes de o acceptor (ou o reactor, com
+     * {@link #isReusePort()}) voltar ao select.
+     */
+    public int getAcceptBatch() {
+        return acceptBatch;
+    }
+
+    public void setAcceptBatch(int acceptBatch) {
+        if (acceptBatch < 1) {
+            throw new IllegalArgumentException("Invalid accept batch!");
+        }
+        this.acceptBatch = acceptBatch;
+    }
+
+    /**
+     * @return Tamanho da fila de conexões pendentes do SO, informado no bind
+     * do ServerSocketChannel.
+     */
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    public void setAcceptBacklog(int acceptBacklog) {
+        if (acceptBacklog < 1) {
+            throw new IllegalArgumentException("Invalid accept backlog!");
+        }
+        this.acceptBacklog = acceptBacklog;
+    }
+
+    /**
+     * @return Se cada reactor aceita os seus próprios clientes em um
+     * ServerSocketChannel aberto com SO_REUSEPORT na mesma porta do servidor,
+     * sem passar pelo acceptor. O kernel distribui as novas conexões entre os
+     * channels. Por padrão, false.
+     */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    /**
+     * @return Limites de conexões por endereço de origem, ou null se não
+     * houver limites.
+     */
+    public AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    public void setAdmissionControl(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * @return Define o tamanho dos buffers de leitura de cada cliente. O
+     * tamanho informado ao criar o controller é o tamanho da primeira
+     * leitura.
+     */
+    public AdaptiveReceiveAllocator getReceiveAllocator() {
+        return receiveAllocator;
+    }
+
+    public void setReceiveAllocator(AdaptiveReceiveAllocator receiveAllocator) {
+        this.receiveAllocator = Objects.requireNonNull(receiveAllocator);
+    }
+
+    /**
+     * @return Quantidade máxima de bytes lidos de um cliente a cada ciclo do
+     * eventLoop, antes de o reactor passar para os outros clientes.
+     */
+    public int getReadBudgetBytes() {
+        return readBudgetBytes;
+    }
+
+    /**
+     * @return Quantidade máxima de leituras de um cliente a cada ciclo do
+     * eventLoop.
+     */
+    public int getReadBudgetReads() {
+        return readBudgetReads;
+    }
+
+    public void setReadBudget(int readBudgetBytes, int readBudgetReads) {
+        if (readBudgetBytes < 1 || readBudgetReads < 1) {
+            throw new IllegalArgumentException("Invalid read budget!");
+        }
+        this.readBudgetBytes = readBudgetBytes;
+        this.readBudgetReads = readBudgetReads;
+    }
+
+    /**
+     * @return Quantidade de bytes escritos para um cliente a cada ciclo do
+     * eventLoop a partir da qual o reactor passa para os outros clientes.
+     */
+    public int getWriteBudgetBytes() {
+        return writeBudgetBytes;
+    }
+
+    public void setWriteBudgetBytes(int writeBudgetBytes) {
+        if (writeBudgetBytes < 1) {
+            throw new IllegalArgumentException("Invalid write budget!");
+        }
+        this.writeBudgetBytes = writeBudgetBytes;
+    }
+
+    /**
+     * @return Quantidade máxima de mensagens de um cliente separadas e
+     * enviadas para processamento a cada ciclo do eventLoop. As restantes
+     * ficam para o próximo ciclo.
+     */
+    public int getMessageBudget() {
+        return messageBudget;
+    }
+
+    public void setMessageBudget(int messageBudget) {
+        if (messageBudget < 1) {
+            throw new IllegalArgumentException("Invalid message budget!");
+        }
+        this.messageBudget = messageBudget;
+    }
+
+    /**
+     * @return Métricas do servidor, compartilhadas por todos os reactors.
+     */
+    public ServerMetrics getMetrics() {
+        if (null == metrics) {
+            metrics = new ServerMetrics();
+        }
+        return metrics;
+    }
+
+    public void setMetrics(ServerMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+}
@@ -0,0 +1,298 @@
+package br.com.server;
+
+import br.com.server.admission.AdmissionControl;
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.executor.VirtualThreadProcessExecutor;
+import br.com.server.log.Logger;
+import br.com.server.model.AbstractClientTracker;
+import br.com.server.model.InvalidFrameException;
+import br.com.server.metrics.ServerMetrics;
+import br.com.server.model.StatusClientTracker;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor bloqueante com uma thread por cliente. Cada cliente é tratado em
+ * uma virtual thread (ou em uma thread comum, se a JVM não tiver virtual
+ * threads) que lê, separa as mensagens, processa e escreve a resposta, em
+ * sequência, utilizando o mesmo {@link ClientProtocol} dos controllers
+ * baseados em Selector.
+ *
+ * As mensagens são processadas na thread do cliente, então o
+ * {@link ServerConfig#getProcessExecutor()} não é utilizado. O timeout é
+ * controlado pelo SO_TIMEOUT do socket, com as mesmas regras dos controllers:
+ * só vale enquanto nenhuma mensagem foi processada e, quando atingido, o que
+ * foi recebido é processado e o cliente é desconectado. Por isso, Unix
+ * domain sockets, que não têm SO_TIMEOUT, não são suportados.
+ *
+ * @author Guilherme Alves Silveira
+ * @param <T> Tipo do tracker que separa as mensagens de cada cliente.
+ */
+public class VirtualThreadServer<T extends AbstractClientTracker<?>> implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(VirtualThreadServer.class);
+
+    private final ServerSocketChannel server;
+    private final ClientProtocol<T> protocol;
+    private final long timeout;
+    private final int buffSize;
+    private final BufferPool bufferPool;
+    private final ExecutorService executor;
+    private final Set<SocketChannel> clients;
+    private final ServerMetrics metrics;
+    private final LongAdder frames;
+    private final int maxConnections;
+    private final AdmissionControl admissionControl;
+    private volatile boolean running = true;
+
+    public VirtualThreadServer(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server,
+            ClientProtocol<T> protocol
+    ) {
+        this(timeout, buffSize, server, protocol, new ServerConfig());
+    }
+
+    public VirtualThreadServer(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server,
+            ClientProtocol<T> protocol,
+            ServerConfig config
+    ) {
+        this.server = Objects.requireNonNull(server);
+        this.protocol = Objects.requireNonNull(protocol);
+        this.timeout = timeout;
+        this.buffSize = buffSize;
+        this.bufferPool = config.getBufferPool();
+        this.executor = VirtualThreadProcessExecutor.newVirtualThreadPerTaskExecutor();
+        this.clients = ConcurrentHashMap.newKeySet();
+        this.metrics = config.getMetrics();
+        this.frames = metrics.frames(framingMode());
+        this.maxConnections = config.getMaxConnections();
+        this.admissionControl = config.getAdmissionControl();
+
+        if (!server.isBlocking()) {
+            throw new IllegalArgumentException("The server must be blocking.");
+        }
+
+        if (isUnixDomain(server)) {
+            throw new IllegalArgumentException("Unix domain sockets are not supported.");
+        }
+
+        LOG.info("Server started with %s threads!", VirtualThreadProcessExecutor.threadKind());
+    }
+
+    /**
+     * Aceita os clientes na thread atual, até que o servidor seja fechado com
+     * {@link #close()}. Os clientes acima dos limites de conexões são
+     * desconectados sem criar uma thread.
+     *
+     * @throws IOException
+     */
+    public void runEventLoop() throws IOException {
+        while (running) {
+            SocketChannel socketClient;
+            try {
+                socketClient = server.accept();
+            } catch (ClosedChannelException ex) {
+                if (running) {
+                    throw ex;
+                }
+                break;
+            }
+
+            if (clients.size() >= maxConnections
+                    || (null != admissionControl && !admissionControl.tryAcquire(socketClient))) {
+                reject(socketClient);
+                continue;
+            }
+
+            metrics.accepted();
+            clients.add(socketClient);
+            executor.execute(() -> serve(socketClient));
+        }
+    }
+
+    private static boolean isUnixDomain(ServerSocketChannel server) {
+        try {
+            return server.getLocalAddress() instanceof UnixDomainSocketAddress;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void reject(SocketChannel socketClient) {
+        metrics.rejected();
+        LOG.debug("REJECTED %s", socketClient);
+        try (socketClient) {
+            socketClient.setOption(StandardSocketOptions.SO_LINGER, 0);
+        } catch (IOException ex) {
+            LOG.debug("Reject failed: %s", ex);
+        }
+    }
+
+    /**
+     * Para de aceitar clientes e desconecta os clientes atuais. Não espera as
+     * threads terminarem.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        for (SocketChannel socketClient : clients) {
+            socketClient.close();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * @return Nome do modo de framing nas métricas. Por padrão, o nome da
+     * classe do protocolo sem o sufixo Protocol, por exemplo "size".
+     */
+    protected String framingMode() {
+        String name = protocol.getClass().getSimpleName();
+        if (name.endsWith("Protocol")) {
+            name = name.substring(0, name.length() - "Protocol".length());
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return Quantidade de clientes conectados.
+     */
+    public int getConnections() {
+        return clients.size();
+    }
+
+    private void serve(SocketChannel socketClient) {
+        T clientTracker = protocol.newClientTracker(socketClient, timeout, bufferPool);
+        try {
+            Socket socket = socketClient.socket();
+            InputStream in = socket.getInputStream();
+            byte[] bytes = new byte[buffSize];
+            while (running) {
+                int readed;
+                try {
+                    socket.setSoTimeout(soTimeout(clientTracker));
+                    readed = in.read(bytes);
+                } catch (SocketTimeoutException ex) {
+                    if (clientTracker.isTimeoutReached()) {
+                        processTimeout(socketClient, clientTracker);
+                        return;
+                    }
+                    //o SO_TIMEOUT pode acordar um pouco antes do prazo, que é
+                    //medido com currentTimeMillis, então o tempo é recalculado
+                    continue;
+                }
+
+                if (readed < 0) {
+                    return;
+                }
+
+                metrics.read(readed);
+                clientTracker.addBytesRead(readed);
+                ByteBuffer buf = bufferPool.lease(readed);
+                buf.put(bytes, 0, readed).flip();
+                clientTracker.addRequestPart(buf);
+                int length;
+                while (AbstractClientTracker.NO_FRAME != (length = protocol.frameLength(clientTracker))) {
+                    LOG.debug("PROCESSED %s", socketClient);
+                    frames.increment();
+                    clientTracker.requestReceived();
+                    clientTracker.setStatus(StatusClientTracker.PROCESS);
+                    respond(socketClient, clientTracker, clientTracker.takeRequest(length));
+                }
+            }
+        } catch (IOException ex) {
+            if (running) {
+                LOG.debug("[%s DISCONNECTED]", socketClient);
+            }
+        } catch (InvalidFrameException ex) {
+            LOG.debug("[%s INVALID FRAME] %s", socketClient, ex.getMessage());
+        } catch (RuntimeException ex) {
+            LOG.error("Client failed", ex);
+        } finally {
+            clients.remove(socketClient);
+            metrics.disconnected();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("[%s CLOSED] %s", socketClient, clientTracker.trafficSummary());
+            }
+            if (null != admissionControl) {
+                admissionControl.release(socketClient);
+            }
+            clientTracker.release();
+            try {
+                socketClient.close();
+            } catch (IOException ex) {
+                LOG.error("Close failed", ex);
+            }
+        }
+    }
+
+    /**
+     * @return Tempo, em ms, que o cliente ainda pode esperar por dados, ou 0
+     * (sem limite) depois que uma mensagem foi processada ou se o cliente
+     * nunca atinge o timeout.
+     */
+    private int soTimeout(T clientTracker) {
+        if (!clientTracker.canTimeout()
+                || clientTracker.getStatus() == StatusClientTracker.PROCESS) {
+            return 0;
+        }
+
+        long remaining = clientTracker.getDeadline() - System.currentTimeMillis();
+        return (int) Math.min(Math.max(remaining, 1), Integer.MAX_VALUE);
+    }
+
+    private void processTimeout(SocketChannel socketClient, T clientTracker)
+            throws IOException {
+        LOG.debug("TIMEOUT %s", socketClient);
+        metrics.timeout();
+        clientTracker.setStatus(StatusClientTracker.TIMEOUT);
+        whenTimeout();
+        respond(socketClient, clientTracker, clientTracker.takeRequest());
+    }
+
+    private void respond(SocketChannel socketClient, T clientTracker, CompositeByteBuffer request)
+            throws IOException {
+        ByteBuffer response = protocol.process(clientTracker, request);
+        try {
+            int length = response.remaining();
+            while (response.hasRemaining()) {
+                socketClient.write(response);
+            }
+            metrics.written(length);
+            clientTracker.addBytesWritten(length);
+        } finally {
+            clientTracker.releaseResponse(response);
+        }
+    }
+
+    /**
+     * Utilizado para ser sobreescrito para processar algo quando um timeout
+     * ocorre.
+     */
+    protected void whenTimeout() {
+        //Do nothing
+    }
+}
@@ -0,0 +1,182 @@
+package br.com.server.admission;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Limites de conexões por endereço de origem: quantidade de conexões
+ * simultâneas e taxa de novas conexões, verificados antes de o cliente ser
+ * entregue a um reactor.
+ *
+ * Os endereços são agrupados em uma tabela de tamanho fixo, indexada pelo
+ * hash do endereço, sem guardar os endereços: a memória não cresce com a
+ * quantidade de origens, e endereços que caem na mesma posição dividem os
+ * mesmos limites. Cada posição tem um contador de conexões e um token bucket
+ * guardado em um único long, o instante teórico da próxima conexão (GCRA),
+ * atualizados com CAS, então pode ser utilizado por várias threads.
+ *
+ * Os clientes de um Unix domain socket não têm um endereço próprio, então
+ * todos dividem os mesmos limites.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class AdmissionControl {
+
+    private static final int TABLE_SIZE = 4096;
+
+    private final int maxConnectionsPerAddress;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicIntegerArray connections;
+    private final AtomicLongArray arrivals;
+    private final int mask;
+
+    /**
+     * @param maxConnectionsPerAddress Conexões simultâneas por endereço.
+     * @param connectionsPerSecond Taxa de novas conexões por endereço.
+     * @param burst Conexões que um endereço pode abrir de uma vez, acima da
+     * taxa.
+     */
+    public AdmissionControl(int maxConnectionsPerAddress, double connectionsPerSecond, int burst) {
+        this(maxConnectionsPerAddress, connectionsPerSecond, burst, TABLE_SIZE);
+    }
+
+    /**
+     * @param maxConnectionsPerAddress Conexões simultâneas por endereço.
+     * @param connectionsPerSecond Taxa de novas conexões por endereço.
+     * @param burst Conexões que um endereço pode abrir de uma vez, acima da
+     * taxa.
+     * @param tableSize Quantidade de posições da tabela, uma potência de dois.
+     */
+    public AdmissionControl(int maxConnectionsPerAddress, double connectionsPerSecond, int burst,
+            int tableSize) {
+        if (maxConnectionsPerAddress < 1) {
+            throw new IllegalArgumentException("Invalid max connections per address!");
+        }
+        if (!(connectionsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Invalid connection rate!");
+        }
+        if (Integer.bitCount(tableSize) != 1) {
+            throw new IllegalArgumentException("The table size must be a power of two!");
+        }
+
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / connectionsPerSecond));
+        this.burstNanos = (burst - 1) * intervalNanos;
+        this.connections = new AtomicIntegerArray(tableSize);
+        this.arrivals = new AtomicLongArray(tableSize);
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * Verifica os limites do endereço do cliente e, se o cliente for aceito,
+     * conta a sua conexão, que deve ser liberada com
+     * {@link #release(SocketChannel)} quando o cliente for desconectado.
+     *
+     * @param socketClient
+     * @return Se o cliente pode ser aceito.
+     */
+    public boolean tryAcquire(SocketChannel socketClient) {
+        return tryAcquire(remoteAddress(socketClient));
+    }
+
+    /**
+     * Mesmo que {@link #tryAcquire(SocketChannel)}, para clientes de outros
+     * tipos de channel.
+     *
+     * @param remote Endereço do cliente.
+     * @return Se o cliente pode ser aceito.
+     */
+    public boolean tryAcquire(SocketAddress remote) {
+        int slot = slot(remote);
+        return tryConsumeRate(slot, System.nanoTime()) && tryIncrement(slot);
+    }
+
+    /**
+     * Libera a conexão de um cliente aceito por
+     * {@link #tryAcquire(SocketChannel)}. Deve ser chamado antes de o socket
+     * ser fechado.
+     *
+     * @param socketClient
+     */
+    public void release(SocketChannel socketClient) {
+        release(remoteAddress(socketClient));
+    }
+
+    /**
+     * Libera a conexão de um cliente aceito por
+     * {@link #tryAcquire(SocketAddress)}.
+     *
+     * @param remote Endereço do cliente.
+     */
+    public void release(SocketAddress remote) {
+        int slot = slot(remote);
+        int current;
+        do {
+            current = connections.get(slot);
+            if (current == 0) {
+                return;
+            }
+        } while (!connections.compareAndSet(slot, current, current - 1));
+    }
+
+    /**
+     * @param socketClient
+     * @return Quantidade de conexões contadas para o endereço do cliente.
+     */
+    public int getConnections(SocketChannel socketClient) {
+        return connections.get(slot(remoteAddress(socketClient)));
+    }
+
+    private boolean tryConsumeRate(int slot, long now) {
+        while (true) {
+            long arrival = arrivals.get(slot);
+            //0 indica uma posição nunca utilizada
+            long theoretical = 0 == arrival || arrival - now < 0 ? now : arrival;
+            if (theoretical - now > burstNanos) {
+                return false;
+            }
+            if (arrivals.compareAndSet(slot, arrival, theoretical + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean tryIncrement(int slot) {
+        int current;
+        do {
+            current = connections.get(slot);
+            if (current >= maxConnectionsPerAddress) {
+                return false;
+            }
+        } while (!connections.compareAndSet(slot, current, current + 1));
+        return true;
+    }
+
+    private static SocketAddress remoteAddress(SocketChannel socketClient) {
+        try {
+            return socketClient.getRemoteAddress();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private int slot(SocketAddress remote) {
+        int hash = 0;
+        if (remote instanceof InetSocketAddress) {
+            InetAddress address = ((InetSocketAddress) remote).getAddress();
+            hash = null == address ? 0 : address.hashCode();
+        } else if (null != remote) {
+            hash = remote.hashCode();
+        }
+        //espalha os bits, endereços próximos diferem somente nos bits baixos
+        hash *= 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
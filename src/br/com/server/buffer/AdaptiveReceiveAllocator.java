@@ -0,0 +1,115 @@
+package br.com.server.buffer;
+
+/**
+ * Define o tamanho dos buffers de leitura de cada conexão a partir das
+ * leituras recentes: uma conexão que enche o buffer passa a ler com buffers
+ * maiores, e uma que lê bem menos que o buffer em duas leituras seguidas passa
+ * a ler com buffers menores. Assim conexões que enviam mensagens grandes são
+ * lidas com poucas chamadas de sistema, e conexões pequenas não ocupam buffers
+ * grandes do pool.
+ *
+ * Os tamanhos são potências de dois, as mesmas classes de tamanho do
+ * {@link BufferPool}. Cada conexão tem o seu {@link Handle}, que não é
+ * thread-safe e deve ser utilizado somente pela thread que lê a conexão.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class AdaptiveReceiveAllocator {
+
+    private static final int MIN_SIZE = 64;
+    private static final int MAX_SIZE = 64 * 1024;
+    /**
+     * Quantidade de tamanhos que o buffer cresce quando uma leitura o enche.
+     */
+    private static final int GROW_STEPS = 2;
+
+    private final int minShift;
+    private final int maxShift;
+
+    public AdaptiveReceiveAllocator() {
+        this(MIN_SIZE, MAX_SIZE);
+    }
+
+    /**
+     * @param minSize Menor tamanho de buffer, arredondado para uma potência de
+     * dois.
+     * @param maxSize Maior tamanho de buffer, arredondado para uma potência de
+     * dois.
+     */
+    public AdaptiveReceiveAllocator(int minSize, int maxSize) {
+        if (minSize < 1 || maxSize < minSize || maxSize > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid receive buffer sizes!");
+        }
+        this.minShift = shift(minSize);
+        this.maxShift = shift(maxSize);
+    }
+
+    public int getMinSize() {
+        return 1 << minShift;
+    }
+
+    public int getMaxSize() {
+        return 1 << maxShift;
+    }
+
+    /**
+     * @param initialSize Tamanho da primeira leitura, limitado entre o menor e
+     * o maior tamanho.
+     * @return Estado de uma nova conexão.
+     */
+    public Handle newHandle(int initialSize) {
+        return new Handle(Math.max(minShift, Math.min(maxShift, shift(Math.max(1, initialSize)))));
+    }
+
+    private static int shift(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Tamanho atual dos buffers de leitura de uma conexão.
+     */
+    public final class Handle {
+
+        private int shift;
+        private boolean shrinkNext;
+
+        private Handle(int shift) {
+            this.shift = shift;
+        }
+
+        /**
+         * @return Tamanho do próximo buffer de leitura.
+         */
+        public int guess() {
+            return 1 << shift;
+        }
+
+        /**
+         * @return Se o tamanho atual é o maior permitido.
+         */
+        public boolean isMax() {
+            return shift == maxShift;
+        }
+
+        /**
+         * Ajusta o tamanho a partir da quantidade de bytes lidos em um evento.
+         *
+         * @param bytes
+         */
+        public void record(long bytes) {
+            if (bytes >= guess()) {
+                shift = Math.min(maxShift, shift + GROW_STEPS);
+                shrinkNext = false;
+            } else if (shift > minShift && bytes <= (1 << (shift - 1))) {
+                if (shrinkNext) {
+                    shift--;
+                    shrinkNext = false;
+                } else {
+                    shrinkNext = true;
+                }
+            } else {
+                shrinkNext = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package br.com.server.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de buffers diretos reutilizáveis. Os buffers são separados em classes
+ * de tamanho (potências de dois) e recortados de slabs maiores, evitando um
+ * {@code ByteBuffer.allocateDirect} a cada leitura. As threads dos reactors
+ * podem ter um cache local, evitando a disputa pela lista compartilhada.
+ *
+ * Todo buffer obtido com {@link #lease(int)} deve ser devolvido com
+ * {@link #release(ByteBuffer)} quando não for mais utilizado. O pool conhece
+ * os buffers que entregou: um buffer que não veio do pool, como um
+ * {@code ByteBuffer.allocateDirect} ou um {@code duplicate()} de um buffer
+ * do pool, ou um buffer devolvido duas vezes, é recusado em vez de ser
+ * reutilizado por outra leitura.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BufferPool {
+
+    private static final int DEFAULT_MIN_CHUNK = 64;
+    private static final int DEFAULT_MAX_CHUNK = 64 * 1024;
+    private static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+    private static final int THREAD_CACHE_SIZE = 64;
+    private static final BufferPool DEFAULT = new BufferPool();
+
+    private final int minShift;
+    private final int maxShift;
+    private final int slabSize;
+    private final SizeClass[] classes;
+    private final ThreadLocal<ArrayDeque<Chunk>[]> threadCache;
+    /**
+     * Buffers maiores que a maior classe, alocados fora do pool e ainda não
+     * devolvidos.
+     */
+    private final Set<ByteBuffer> unpooled;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final AtomicLong outstanding;
+
+    public BufferPool() {
+        this(DEFAULT_MIN_CHUNK, DEFAULT_MAX_CHUNK, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @param minChunk Menor classe de tamanho, em bytes.
+     * @param maxChunk Maior classe de tamanho, em bytes. Pedidos maiores são
+     * alocados fora do pool e descartados ao serem devolvidos.
+     * @param slabSize Tamanho de cada slab de onde os buffers são recortados.
+     */
+    public BufferPool(int minChunk, int maxChunk, int slabSize) {
+        if (minChunk < 1 || maxChunk < minChunk || slabSize < maxChunk) {
+            throw new IllegalArgumentException("Invalid pool sizes!");
+        }
+
+        this.minShift = shiftOf(minChunk);
+        this.maxShift = shiftOf(maxChunk);
+        this.slabSize = slabSize;
+        this.classes = new SizeClass[maxShift - minShift + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass(1 << (minShift + i));
+        }
+        this.threadCache = new ThreadLocal<>();
+        this.unpooled = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.outstanding = new AtomicLong();
+    }
+
+    /**
+     * @return Pool compartilhado, utilizado quando nenhum outro é informado.
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Habilita o cache local para a thread atual. Deve ser chamado pelas
+     * threads que mais obtém e devolvem buffers, como as dos reactors.
+     */
+    public void attachThreadCache() {
+        if (null == threadCache.get()) {
+            //não existe array de um tipo genérico, só do tipo cru
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            ArrayDeque<Chunk>[] cache = new ArrayDeque[classes.length];
+            for (int i = 0; i < cache.length; i++) {
+                cache[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+            }
+            threadCache.set(cache);
+        }
+    }
+
+    /**
+     * Obtém um buffer direto com o limite igual ao tamanho pedido. A
+     * capacidade pode ser maior, pois corresponde à classe de tamanho.
+     *
+     * @param size Quantidade de bytes necessária.
+     * @return Buffer pronto para escrita, com position 0 e limit igual a size.
+     */
+    public ByteBuffer lease(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid size!");
+        }
+
+        outstanding.incrementAndGet();
+        int shift = Math.max(shiftOf(size), minShift);
+        if (shift > maxShift) {
+            misses.increment();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+            unpooled.add(buffer);
+            return buffer;
+        }
+
+        int index = shift - minShift;
+        Chunk chunk = null;
+        ArrayDeque<Chunk>[] cache = threadCache.get();
+        if (null != cache) {
+            chunk = cache[index].pollLast();
+        }
+
+        if (null == chunk) {
+            chunk = classes[index].poll();
+        }
+
+        if (null == chunk) {
+            misses.increment();
+            chunk = classes[index].carve(slabSize);
+        } else {
+            hits.increment();
+        }
+
+        chunk.leased.lazySet(true);
+        return chunk.buffer.clear().limit(size);
+    }
+
+    /**
+     * Devolve um buffer obtido com {@link #lease(int)}. O buffer não pode ser
+     * utilizado depois de devolvido.
+     *
+     * @param buffer
+     * @throws IllegalArgumentException Se o buffer não foi obtido deste pool
+     * ou já foi devolvido.
+     */
+    public void release(ByteBuffer buffer) {
+        if (null == buffer) {
+            return;
+        }
+
+        Chunk chunk = chunkOf(buffer);
+        if (null == chunk) {
+            if (!unpooled.remove(buffer)) {
+                throw new IllegalArgumentException("Buffer not leased from the pool!");
+            }
+            outstanding.decrementAndGet();
+            return;
+        }
+
+        if (!chunk.leased.compareAndSet(true, false)) {
+            throw new IllegalArgumentException("Buffer already released!");
+        }
+
+        outstanding.decrementAndGet();
+        int index = shiftOf(buffer.capacity()) - minShift;
+        ArrayDeque<Chunk>[] cache = threadCache.get();
+        if (null != cache && cache[index].size() < THREAD_CACHE_SIZE) {
+            cache[index].offerLast(chunk);
+            return;
+        }
+
+        classes[index].offer(chunk);
+    }
+
+    /**
+     * @param buffer
+     * @return Se o buffer foi obtido deste pool com {@link #lease(int)} e
+     * ainda não foi devolvido.
+     */
+    public boolean isLeased(ByteBuffer buffer) {
+        if (null == buffer) {
+            return false;
+        }
+
+        Chunk chunk = chunkOf(buffer);
+        return null == chunk ? unpooled.contains(buffer) : chunk.leased.get();
+    }
+
+    /**
+     * @return O chunk recortado por este pool que é o próprio buffer, ou null
+     * se o buffer não é um dos chunks.
+     */
+    private Chunk chunkOf(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int shift = shiftOf(capacity);
+        if (shift < minShift || shift > maxShift || capacity != 1 << shift) {
+            return null;
+        }
+        return classes[shift - minShift].find(buffer);
+    }
+
+    /**
+     * @return Quantidade de buffers entregues a partir de um buffer já
+     * devolvido.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Quantidade de buffers que precisaram de memória nova, seja
+     * recortada de um slab ou alocada fora do pool.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Quantidade de buffers obtidos e ainda não devolvidos.
+     */
+    public long getOutstanding() {
+        return outstanding.get();
+    }
+
+    private static int shiftOf(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{"
+                + "hits=" + getHits()
+                + ", misses=" + getMisses()
+                + ", outstanding=" + getOutstanding()
+                + '}';
+    }
+
+    /**
+     * Buffer recortado de um slab, e se ele está emprestado.
+     */
+    private static final class Chunk {
+
+        private final ByteBuffer buffer;
+        private final AtomicBoolean leased;
+
+        private Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.leased = new AtomicBoolean();
+        }
+    }
+
+    private static final class SizeClass {
+
+        private static final int INITIAL_TABLE_SIZE = 64;
+
+        private final int chunkSize;
+        private final ArrayDeque<Chunk> free;
+        /**
+         * Todos os chunks recortados, em uma tabela de hash por identidade do
+         * buffer. Só é alterada com o lock da classe e é lida sem lock: ao
+         * crescer, a nova tabela é preenchida antes de substituir a anterior.
+         */
+        private volatile AtomicReferenceArray<Chunk> chunks;
+        private int carved;
+        private ByteBuffer slab;
+
+        private SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+            this.free = new ArrayDeque<>();
+            this.chunks = new AtomicReferenceArray<>(INITIAL_TABLE_SIZE);
+        }
+
+        private synchronized Chunk poll() {
+            return free.pollLast();
+        }
+
+        private synchronized void offer(Chunk chunk) {
+            free.offerLast(chunk);
+        }
+
+        private synchronized Chunk carve(int slabSize) {
+            if (null == slab || slab.remaining() < chunkSize) {
+                slab = ByteBuffer.allocateDirect(slabSize - slabSize % chunkSize);
+            }
+
+            int position = slab.position();
+            slab.limit(position + chunkSize);
+            Chunk chunk = new Chunk(slab.slice());
+            slab.limit(slab.capacity()).position(position + chunkSize);
+
+            AtomicReferenceArray<Chunk> table = chunks;
+            if (2 * (carved + 1) > table.length()) {
+                AtomicReferenceArray<Chunk> grown = new AtomicReferenceArray<>(table.length() * 2);
+                for (int i = 0; i < table.length(); i++) {
+                    Chunk carvedChunk = table.get(i);
+                    if (null != carvedChunk) {
+                        insert(grown, carvedChunk);
+                    }
+                }
+                insert(grown, chunk);
+                chunks = grown;
+            } else {
+                insert(table, chunk);
+            }
+            carved++;
+            return chunk;
+        }
+
+        private Chunk find(ByteBuffer buffer) {
+            AtomicReferenceArray<Chunk> table = chunks;
+            int mask = table.length() - 1;
+            for (int i = System.identityHashCode(buffer) & mask; ; i = (i + 1) & mask) {
+                Chunk chunk = table.get(i);
+                if (null == chunk || chunk.buffer == buffer) {
+                    return chunk;
+                }
+            }
+        }
+
+        private static void insert(AtomicReferenceArray<Chunk> table, Chunk chunk) {
+            int mask = table.length() - 1;
+            int i = System.identityHashCode(chunk.buffer) & mask;
+            while (null != table.get(i)) {
+                i = (i + 1) & mask;
+            }
+            table.set(i, chunk);
+        }
+    }
+}
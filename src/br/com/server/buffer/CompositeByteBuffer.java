@@ -0,0 +1,371 @@
+package br.com.server.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Visão somente leitura sobre as partes de uma requisição, sem copiá-las para
+ * um único buffer. Os índices são absolutos, começando em 0 no primeiro byte
+ * da primeira parte, independente da posição de cada parte.
+ *
+ * Quando criada com buffers do pool, a visão é dona deles e os devolve em
+ * {@link #close()}. As visões criadas com {@link #slice(int, int)} não são
+ * donas de nenhum buffer e não podem ser utilizadas depois do close da
+ * visão original.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class CompositeByteBuffer implements AutoCloseable {
+
+    private static final ByteBuffer[] EMPTY = new ByteBuffer[0];
+
+    private final ByteBuffer[] parts;
+    /**
+     * Índice absoluto do primeiro byte de cada parte.
+     */
+    private final int[] offsets;
+    private final int size;
+    private final BufferPool bufferPool;
+    private ByteBuffer[] owned;
+    private int lastPart;
+
+    /**
+     * Cria uma visão que não é dona de nenhum buffer.
+     *
+     * @param parts Partes, do position até o limit de cada uma.
+     */
+    public CompositeByteBuffer(List<ByteBuffer> parts) {
+        this(parts, null, null);
+    }
+
+    /**
+     * @param parts Partes, do position até o limit de cada uma.
+     * @param owned Buffers devolvidos ao pool no close.
+     * @param bufferPool Pool de onde os buffers foram obtidos.
+     */
+    public CompositeByteBuffer(List<ByteBuffer> parts, List<ByteBuffer> owned, BufferPool bufferPool) {
+        this(toReadOnly(parts), null == owned ? EMPTY : owned.toArray(EMPTY), bufferPool);
+    }
+
+    private CompositeByteBuffer(ByteBuffer[] parts, ByteBuffer[] owned, BufferPool bufferPool) {
+        if (owned.length > 0) {
+            Objects.requireNonNull(bufferPool);
+        }
+
+        this.parts = parts;
+        this.offsets = new int[parts.length];
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            offsets[i] = total;
+            total += parts[i].remaining();
+        }
+        this.size = total;
+        this.owned = owned;
+        this.bufferPool = bufferPool;
+    }
+
+    private static ByteBuffer[] toReadOnly(List<ByteBuffer> parts) {
+        ByteBuffer[] readOnly = new ByteBuffer[parts.size()];
+        for (int i = 0; i < readOnly.length; i++) {
+            readOnly[i] = parts.get(i).asReadOnlyBuffer();
+        }
+        return readOnly;
+    }
+
+    /**
+     * @return Quantidade de bytes da visão.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    /**
+     * @param index Índice absoluto.
+     * @return O byte no índice informado.
+     */
+    public byte get(int index) {
+        checkIndex(index, 1);
+        int part = partOf(index);
+        ByteBuffer buffer = parts[part];
+        return buffer.get(buffer.position() + index - offsets[part]);
+    }
+
+    /**
+     * Copia os bytes a partir do índice informado para o array de destino.
+     *
+     * @param index Índice absoluto.
+     * @param dst
+     * @param offset
+     * @param length
+     */
+    public void get(int index, byte[] dst, int offset, int length) {
+        checkIndex(index, length);
+        if (0 == length) {
+            return;
+        }
+
+        int part = partOf(index);
+        while (length > 0) {
+            ByteBuffer buffer = parts[part].duplicate();
+            buffer.position(buffer.position() + index - offsets[part]);
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(dst, offset, count);
+            offset += count;
+            index += count;
+            length -= count;
+            part++;
+        }
+    }
+
+    /**
+     * @param index Índice absoluto do primeiro byte.
+     * @param length Quantidade de bytes.
+     * @return Uma visão sobre parte desta visão, sem copiar os bytes.
+     */
+    public CompositeByteBuffer slice(int index, int length) {
+        checkIndex(index, length);
+        if (0 == length) {
+            return new CompositeByteBuffer(EMPTY, EMPTY, null);
+        }
+
+        int first = partOf(index);
+        int last = partOf(index + length - 1);
+        ByteBuffer[] sliced = new ByteBuffer[last - first + 1];
+        for (int i = first; i <= last; i++) {
+            ByteBuffer buffer = parts[i].duplicate();
+            int start = Math.max(index - offsets[i], 0);
+            int end = Math.min(index + length - offsets[i], buffer.remaining());
+            buffer.limit(buffer.position() + end).position(buffer.position() + start);
+            sliced[i - first] = buffer;
+        }
+        return new CompositeByteBuffer(sliced, EMPTY, null);
+    }
+
+    /**
+     * Procura a sequência de bytes a partir do índice informado.
+     *
+     * @param needle Sequência procurada.
+     * @param fromIndex Índice absoluto de inicio da busca.
+     * @return Índice absoluto do inicio da sequência ou -1 se não for
+     * encontrada.
+     */
+    public int indexOf(byte[] needle, int fromIndex) {
+        Objects.requireNonNull(needle);
+        if (0 == needle.length) {
+            return Math.min(Math.max(fromIndex, 0), size);
+        }
+
+        int end = size - needle.length;
+        for (int i = Math.max(fromIndex, 0); i <= end; i++) {
+            if (get(i) != needle[0]) {
+                continue;
+            }
+
+            int j = 1;
+            while (j < needle.length && get(i + j) == needle[j]) {
+                j++;
+            }
+
+            if (j == needle.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Novos buffers somente leitura com o conteúdo de cada parte,
+     * prontos para uma escrita com {@link GatheringByteChannel}.
+     */
+    public ByteBuffer[] nioBuffers() {
+        ByteBuffer[] buffers = new ByteBuffer[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            buffers[i] = parts[i].duplicate();
+        }
+        return buffers;
+    }
+
+    /**
+     * Escreve todos os bytes da visão no channel, com escritas agrupadas. O
+     * channel deve ser bloqueante, para canais não bloqueantes utilize
+     * {@link #nioBuffers()} e continue a escrita quando possível.
+     *
+     * @param channel
+     * @return Quantidade de bytes escritos.
+     * @throws IOException
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        ByteBuffer[] buffers = nioBuffers();
+        long written = 0;
+        int first = 0;
+        while (written < size) {
+            written += channel.write(buffers, first, buffers.length - first);
+            while (first < buffers.length && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return Cópia dos bytes da visão.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size];
+        get(0, bytes, 0, size);
+        return bytes;
+    }
+
+    public String toString(Charset charset) {
+        return new String(toByteArray(), charset);
+    }
+
+    /**
+     * @return Um InputStream que lê os bytes da visão, do inicio ao fim.
+     */
+    public InputStream asInputStream() {
+        return new InputStream() {
+
+            private int position;
+
+            @Override
+            public int read() {
+                return position < size ? get(position++) & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                Objects.checkFromIndexSize(off, len, b.length);
+                if (0 == len) {
+                    return 0;
+                }
+
+                if (position >= size) {
+                    return -1;
+                }
+
+                int count = Math.min(len, size - position);
+                get(position, b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public long skip(long n) {
+                long skipped = Math.max(Math.min(n, size - position), 0);
+                position += (int) skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return size - position;
+            }
+        };
+    }
+
+    /**
+     * @return Um ReadableByteChannel que lê os bytes da visão, do inicio ao
+     * fim.
+     */
+    public ReadableByteChannel asReadableByteChannel() {
+        return new ReadableByteChannel() {
+
+            private int position;
+            private boolean open = true;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (!open) {
+                    throw new ClosedChannelException();
+                }
+
+                if (position >= size) {
+                    return -1;
+                }
+
+                int start = position;
+                int part = partOf(position);
+                while (dst.hasRemaining() && position < size) {
+                    ByteBuffer buffer = parts[part].duplicate();
+                    buffer.position(buffer.position() + position - offsets[part]);
+                    if (buffer.remaining() > dst.remaining()) {
+                        buffer.limit(buffer.position() + dst.remaining());
+                    }
+                    position += buffer.remaining();
+                    dst.put(buffer);
+                    part++;
+                }
+                return position - start;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+        };
+    }
+
+    /**
+     * Devolve ao pool os buffers dos quais esta visão é dona.
+     */
+    @Override
+    public void close() {
+        ByteBuffer[] toRelease = owned;
+        owned = EMPTY;
+        for (ByteBuffer buffer : toRelease) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private int partOf(int index) {
+        int part = lastPart;
+        if (part < parts.length && offsets[part] <= index
+                && index - offsets[part] < parts[part].remaining()) {
+            return part;
+        }
+
+        part = Arrays.binarySearch(offsets, index);
+        if (part < 0) {
+            part = -part - 2;
+        }
+
+        while (0 == parts[part].remaining()) {
+            part++;
+        }
+        lastPart = part;
+        return part;
+    }
+
+    private void checkIndex(int index, int length) {
+        if (index < 0 || length < 0 || index > size - length) {
+            throw new IndexOutOfBoundsException("index=" + index
+                    + ", length=" + length + ", size=" + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeByteBuffer{"
+                + "parts=" + parts.length
+                + ", size=" + size
+                + '}';
+    }
+}
@@ -0,0 +1,208 @@
+package br.com.server.buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Resposta formada por uma região de um arquivo, enviada sem passar pelo heap
+ * da JVM. A região é enviada aos poucos: cada chamada de
+ * {@link #transferTo(WritableByteChannel)} escreve o quanto o socket aceitar,
+ * e o restante é enviado na próxima vez que o cliente puder ser escrito.
+ *
+ * Existem duas formas de envio: {@link #of(FileChannel, long, long, boolean)}
+ * utiliza o {@code FileChannel.transferTo}, que no Linux é um
+ * {@code sendfile} direto do page cache para o socket, e o
+ * {@link MappedFileCache} utiliza partes de um {@code MappedByteBuffer} já
+ * mapeado, compartilhado entre as respostas do mesmo arquivo.
+ *
+ * O arquivo não deve ser truncado enquanto a região é enviada. Com
+ * {@code transferTo} o envio falha com uma {@code IOException} quando o fim
+ * do arquivo é alcançado antes do fim da região. Com um mapeamento, ler a
+ * parte que deixou de existir gera um SIGBUS, que a JVM informa com um
+ * {@code InternalError} na thread que escreve o cliente.
+ *
+ * Não é thread-safe, deve ser enviada somente pela thread do reactor.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public abstract class FileRegion implements Closeable {
+
+    private final long count;
+    private long transferred;
+
+    protected FileRegion(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid count!");
+        }
+        this.count = count;
+    }
+
+    /**
+     * Região enviada com {@code FileChannel.transferTo}.
+     *
+     * @param file Arquivo aberto para leitura.
+     * @param position Posição do primeiro byte da região.
+     * @param count Quantidade de bytes da região.
+     * @param closeFile Se o arquivo deve ser fechado junto com a região.
+     * @return A região.
+     * @throws IOException Se a região ultrapassar o fim do arquivo.
+     */
+    public static FileRegion of(FileChannel file, long position, long count, boolean closeFile)
+            throws IOException {
+        if (position < 0 || count < 0 || position + count > file.size()) {
+            throw new IOException("The region exceeds the file size!");
+        }
+        return new TransferRegion(file, position, count, closeFile);
+    }
+
+    /**
+     * Escreve o máximo possível da região no channel, até a região terminar
+     * ou o channel não aceitar mais bytes.
+     *
+     * @param target
+     * @return Quantidade de bytes escritos.
+     * @throws IOException
+     */
+    public final long transferTo(WritableByteChannel target) throws IOException {
+        return transferTo(target, Long.MAX_VALUE);
+    }
+
+    /**
+     * Escreve no máximo maxBytes da região no channel, até a região terminar
+     * ou o channel não aceitar mais bytes.
+     *
+     * @param target
+     * @param maxBytes Quantidade máxima de bytes escritos nesta chamada.
+     * @return Quantidade de bytes escritos.
+     * @throws IOException
+     */
+    public final long transferTo(WritableByteChannel target, long maxBytes) throws IOException {
+        long total = 0;
+        while (!isComplete() && total < maxBytes) {
+            long written = write(target, transferred, Math.min(count - transferred, maxBytes - total));
+            if (written <= 0) {
+                break;
+            }
+            transferred += written;
+            total += written;
+        }
+        return total;
+    }
+
+    /**
+     * Escreve uma parte da região.
+     *
+     * @param target
+     * @param offset Quantidade de bytes da região já escritos.
+     * @param remaining Quantidade máxima de bytes a escrever.
+     * @return Quantidade de bytes escritos, 0 se o channel não aceitou bytes.
+     * @throws IOException
+     */
+    protected abstract long write(WritableByteChannel target, long offset, long remaining)
+            throws IOException;
+
+    public long count() {
+        return count;
+    }
+
+    public long transferred() {
+        return transferred;
+    }
+
+    public long remaining() {
+        return count - transferred;
+    }
+
+    public boolean isComplete() {
+        return transferred == count;
+    }
+
+    /**
+     * Libera os recursos da região, chamado quando a região foi enviada ou
+     * descartada.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        //Do nothing
+    }
+
+    private static final class TransferRegion extends FileRegion {
+
+        private final FileChannel file;
+        private final long position;
+        private final boolean closeFile;
+
+        TransferRegion(FileChannel file, long position, long count, boolean closeFile) {
+            super(count);
+            this.file = file;
+            this.position = position;
+            this.closeFile = closeFile;
+        }
+
+        /**
+         * O {@code transferTo} retorna 0 tanto quando o socket não aceita
+         * bytes quanto no fim do arquivo, então o tamanho só é conferido
+         * quando nada foi escrito.
+         */
+        @Override
+        protected long write(WritableByteChannel target, long offset, long remaining)
+                throws IOException {
+            long written = file.transferTo(position + offset, remaining, target);
+            if (0 == written && position + offset >= file.size()) {
+                throw new IOException("The file was truncated before the region was sent!");
+            }
+            return written;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closeFile) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Região formada por partes de buffers mapeados, escritas em sequência.
+     */
+    static final class MappedRegion extends FileRegion {
+
+        private final ByteBuffer[] slices;
+        private int current;
+
+        MappedRegion(ByteBuffer[] slices, long count) {
+            super(count);
+            this.slices = slices;
+        }
+
+        @Override
+        protected long write(WritableByteChannel target, long offset, long remaining)
+                throws IOException {
+            while (current < slices.length && !slices[current].hasRemaining()) {
+                current++;
+            }
+
+            if (current == slices.length) {
+                return 0;
+            }
+
+            ByteBuffer slice = slices[current];
+            if (slice.remaining() <= remaining) {
+                return target.write(slice);
+            }
+
+            int limit = slice.limit();
+            slice.limit(slice.position() + (int) remaining);
+            try {
+                return target.write(slice);
+            } finally {
+                slice.limit(limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package br.com.server.buffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache de arquivos mapeados em memória ({@code MappedByteBuffer}) para
+ * respostas que enviam sempre os mesmos arquivos. Cada arquivo é mapeado uma
+ * única vez, em segmentos de até 1 GB, e cada resposta recebe somente
+ * duplicatas dos segmentos, então nenhuma resposta copia ou mapeia o arquivo
+ * novamente e os bytes saem do page cache direto para o socket.
+ *
+ * O mapeamento reflete o tamanho do arquivo no momento em que foi feito; se o
+ * arquivo for alterado, ele deve ser removido do cache com
+ * {@link #invalidate(Path)}. Um arquivo mapeado não pode ser truncado: enviar
+ * a parte que deixou de existir gera um SIGBUS, informado pela JVM com um
+ * {@code InternalError}. Pode ser utilizado por várias threads.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class MappedFileCache {
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final ConcurrentMap<Path, MappedFile> files;
+    private final long segmentSize;
+
+    public MappedFileCache() {
+        this(SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize Tamanho máximo, em bytes, de cada mapeamento.
+     */
+    public MappedFileCache(long segmentSize) {
+        if (segmentSize < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size!");
+        }
+        this.files = new ConcurrentHashMap<>();
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param path
+     * @return Região com o arquivo inteiro.
+     * @throws IOException
+     */
+    public FileRegion region(Path path) throws IOException {
+        MappedFile file = map(path);
+        return file.region(0, file.size);
+    }
+
+    /**
+     * @param path
+     * @param position Posição do primeiro byte da região.
+     * @param count Quantidade de bytes da região.
+     * @return A região.
+     * @throws IOException Se o arquivo não puder ser mapeado ou a região
+     * ultrapassar o fim do arquivo.
+     */
+    public FileRegion region(Path path, long position, long count) throws IOException {
+        MappedFile file = map(path);
+        if (position < 0 || count < 0 || position + count > file.size) {
+            throw new IOException("The region exceeds the file size!");
+        }
+        return file.region(position, count);
+    }
+
+    /**
+     * Remove o arquivo do cache. As regiões já criadas continuam válidas, e o
+     * mapeamento é liberado pelo GC depois que elas forem enviadas.
+     *
+     * @param path
+     */
+    public void invalidate(Path path) {
+        files.remove(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * @return Quantidade de arquivos mapeados.
+     */
+    public int size() {
+        return files.size();
+    }
+
+    private MappedFile map(Path path) throws IOException {
+        try {
+            return files.computeIfAbsent(path.toAbsolutePath().normalize(), key -> {
+                try {
+                    return new MappedFile(key, segmentSize);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static final class MappedFile {
+
+        private final long size;
+        private final long segmentSize;
+        private final MappedByteBuffer[] segments;
+
+        MappedFile(Path path, long segmentSize) throws IOException {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                this.size = file.size();
+                this.segmentSize = segmentSize;
+                this.segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+                for (int i = 0; i < segments.length; i++) {
+                    long position = i * segmentSize;
+                    segments[i] = file.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(segmentSize, size - position));
+                }
+            }
+        }
+
+        FileRegion region(long position, long count) {
+            if (0 == count) {
+                return new FileRegion.MappedRegion(new ByteBuffer[0], 0);
+            }
+
+            int first = (int) (position / segmentSize);
+            int last = (int) ((position + count - 1) / segmentSize);
+            ByteBuffer[] slices = new ByteBuffer[last - first + 1];
+            for (int i = first; i <= last; i++) {
+                long segmentStart = i * segmentSize;
+                ByteBuffer slice = segments[i].duplicate();
+                slice.limit((int) (Math.min(position + count, segmentStart + slice.capacity()) - segmentStart));
+                slice.position((int) (Math.max(position, segmentStart) - segmentStart));
+                slices[i - first] = slice;
+            }
+            return new FileRegion.MappedRegion(slices, count);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package br.com.server.buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Fila de buffers a serem enviados para um cliente. Os buffers são enviados
+ * em ordem, agrupados em uma única escrita ({@code write(ByteBuffer[])}), e
+ * uma escrita parcial é continuada na próxima chamada. A fila também aceita
+ * regiões de arquivos ({@link FileRegion}), enviadas na mesma ordem, sem que
+ * os bytes passem pelo heap, e fechadas depois de enviadas.
+ *
+ * Não é thread-safe, deve ser utilizada somente pela thread do reactor.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class OutboundQueue {
+
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * Buffers ({@link ByteBuffer}) e regiões ({@link FileRegion}), na ordem
+     * de envio.
+     */
+    private final ArrayDeque<Object> buffers;
+    private final ByteBuffer[] gather;
+    private long pendingBytes;
+
+    public OutboundQueue() {
+        this.buffers = new ArrayDeque<>();
+        this.gather = new ByteBuffer[MAX_GATHER];
+    }
+
+    /**
+     * @param buffer Buffer pronto para ser lido, do position até o limit.
+     */
+    public void add(ByteBuffer buffer) {
+        if (buffer.hasRemaining()) {
+            pendingBytes += buffer.remaining();
+        }
+        buffers.offerLast(buffer);
+    }
+
+    /**
+     * @param region Região enviada depois dos buffers já adicionados.
+     */
+    public void add(FileRegion region) {
+        pendingBytes += region.remaining();
+        buffers.offerLast(region);
+    }
+
+    /**
+     * Escreve o máximo possível no channel, até a fila esvaziar ou o channel
+     * não aceitar mais bytes.
+     *
+     * @param channel
+     * @param onWritten Recebe cada buffer que foi totalmente enviado, as
+     * regiões são fechadas.
+     * @return Quantidade de bytes escritos.
+     * @throws IOException
+     */
+    public long write(GatheringByteChannel channel, Consumer<ByteBuffer> onWritten)
+            throws IOException {
+        return write(channel, onWritten, Long.MAX_VALUE);
+    }
+
+    /**
+     * Escreve no channel até a fila esvaziar, o channel não aceitar mais
+     * bytes ou a quantidade escrita alcançar maxBytes. O limite é verificado
+     * entre as escritas, então uma escrita agrupada pode ultrapassá-lo.
+     *
+     * @param channel
+     * @param onWritten Recebe cada buffer que foi totalmente enviado, as
+     * regiões são fechadas.
+     * @param maxBytes Quantidade de bytes a partir da qual a escrita para.
+     * @return Quantidade de bytes escritos.
+     * @throws IOException
+     */
+    public long write(GatheringByteChannel channel, Consumer<ByteBuffer> onWritten, long maxBytes)
+            throws IOException {
+        long total = 0;
+        try {
+            while (!buffers.isEmpty() && total < maxBytes) {
+                if (buffers.peekFirst() instanceof FileRegion) {
+                    FileRegion region = (FileRegion) buffers.peekFirst();
+                    long written = region.transferTo(channel, maxBytes - total);
+                    total += written;
+                    pendingBytes -= written;
+                    if (!region.isComplete()) {
+                        //O socket não aceitou todos os bytes ou o limite foi alcançado
+                        break;
+                    }
+                    buffers.pollFirst();
+                    region.close();
+                    continue;
+                }
+
+                int count = 0;
+                for (Object buffer : buffers) {
+                    if (count == gather.length || buffer instanceof FileRegion) {
+                        break;
+                    }
+                    gather[count++] = (ByteBuffer) buffer;
+                }
+
+                long written = channel.write(gather, 0, count);
+                total += written;
+                pendingBytes -= written;
+                Object first;
+                while (null != (first = buffers.peekFirst())
+                        && first instanceof ByteBuffer && !((ByteBuffer) first).hasRemaining()) {
+                    onWritten.accept((ByteBuffer) buffers.pollFirst());
+                }
+
+                if (first instanceof ByteBuffer) {
+                    //O socket não aceitou todos os bytes, então está cheio
+                    if (count < gather.length || 0 == written) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            Arrays.fill(gather, null);
+        }
+        return total;
+    }
+
+    /**
+     * Descarta os buffers da fila.
+     *
+     * @param onDiscarded Recebe cada buffer descartado, as regiões são
+     * fechadas.
+     */
+    public void clear(Consumer<ByteBuffer> onDiscarded) {
+        Object buffer;
+        while (null != (buffer = buffers.pollFirst())) {
+            if (buffer instanceof FileRegion) {
+                closeQuietly((FileRegion) buffer);
+            } else {
+                onDiscarded.accept((ByteBuffer) buffer);
+            }
+        }
+        pendingBytes = 0;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            //O cliente já foi desconectado, não há o que fazer
+        }
+    }
+
+    public boolean isEmpty() {
+        return buffers.isEmpty();
+    }
+
+    /**
+     * @return Quantidade de bytes aguardando para serem enviados.
+     */
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+}
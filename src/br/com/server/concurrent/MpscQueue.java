@@ -0,0 +1,79 @@
+package br.com.server.concurrent;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fila sem locks com vários produtores e um único consumidor (MPSC), no
+ * formato de lista ligada do Dmitry Vyukov. Cada {@link #offer(Object)} é uma
+ * única troca atômica no fim da fila, então os produtores nunca esperam uns
+ * pelos outros, e o consumidor só lê campos volatile.
+ *
+ * Somente a thread consumidora pode chamar {@link #poll()} e
+ * {@link #isEmpty()}. Um elemento cujo {@code offer} ainda não terminou pode
+ * não ser visto pelo consumidor, por isso o produtor deve avisá-lo (por
+ * exemplo com {@code selector.wakeup()}) depois do {@code offer}.
+ *
+ * @author Guilherme Alves Silveira
+ * @param <E> Tipo dos elementos.
+ */
+public final class MpscQueue<E> {
+
+    private final AtomicReference<Node<E>> tail;
+    private Node<E> head;
+
+    public MpscQueue() {
+        Node<E> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Adiciona um elemento no fim da fila. Pode ser chamado por qualquer
+     * thread.
+     *
+     * @param element
+     */
+    public void offer(E element) {
+        if (null == element) {
+            throw new NullPointerException("The element can't be null!");
+        }
+
+        Node<E> node = new Node<>(element);
+        Node<E> previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * @return O primeiro elemento da fila, ou null se estiver vazia. Só pode
+     * ser chamado pela thread consumidora.
+     */
+    public E poll() {
+        Node<E> next = head.next;
+        if (null == next) {
+            return null;
+        }
+
+        E element = next.element;
+        next.element = null;
+        head = next;
+        return element;
+    }
+
+    /**
+     * @return Se não há elementos visíveis para o consumidor. Só pode ser
+     * chamado pela thread consumidora.
+     */
+    public boolean isEmpty() {
+        return null == head.next;
+    }
+
+    private static final class Node<E> {
+
+        private E element;
+        private volatile Node<E> next;
+
+        Node(E element) {
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package br.com.server.executor;
+
+import br.com.server.metrics.LatencyHistogram;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Executa as tarefas em um {@link Executor}, medindo o tempo de espera na
+ * fila e o tempo de execução de cada tarefa.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public abstract class AbstractProcessExecutor implements ProcessExecutor {
+
+    private final AtomicInteger queueDepth;
+    private final LatencyHistogram queueTime;
+    private final LatencyHistogram serviceTime;
+    private final LongAdder rejected;
+
+    protected AbstractProcessExecutor() {
+        this.queueDepth = new AtomicInteger();
+        this.queueTime = new LatencyHistogram();
+        this.serviceTime = new LatencyHistogram();
+        this.rejected = new LongAdder();
+    }
+
+    /**
+     * @return Executor onde as tarefas são executadas.
+     */
+    protected abstract Executor executor();
+
+    @Override
+    public <R> CompletableFuture<R> submit(Supplier<R> task) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        queueDepth.incrementAndGet();
+        try {
+            executor().execute(() -> {
+                long started = System.nanoTime();
+                queueDepth.decrementAndGet();
+                queueTime.record(started - submitted);
+                try {
+                    result.complete(task.get());
+                } catch (Throwable th) {
+                    result.completeExceptionally(th);
+                } finally {
+                    serviceTime.record(System.nanoTime() - started);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            queueDepth.decrementAndGet();
+            rejected.increment();
+            throw ex;
+        }
+        return result;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    @Override
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    @Override
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{"
+                + "queueDepth=" + getQueueDepth()
+                + ", rejected=" + getRejected()
+                + ", queueTime=" + queueTime
+                + ", serviceTime=" + serviceTime
+                + '}';
+    }
+}
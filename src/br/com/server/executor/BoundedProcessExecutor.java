@@ -0,0 +1,46 @@
+package br.com.server.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executa as tarefas em um pool com quantidade fixa de threads e uma fila
+ * limitada. Quando a fila está cheia a tarefa é rejeitada, e o servidor
+ * responde ao cliente que está ocupado.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BoundedProcessExecutor extends AbstractProcessExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads Quantidade de threads do pool.
+     * @param queueCapacity Quantidade máxima de tarefas aguardando.
+     */
+    public BoundedProcessExecutor(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "process-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    protected Executor executor() {
+        return executor;
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
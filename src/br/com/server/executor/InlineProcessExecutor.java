@@ -0,0 +1,23 @@
+package br.com.server.executor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executa as tarefas na própria thread do reactor. Indicado somente para
+ * processamentos triviais, pois enquanto a tarefa executa nenhum outro
+ * cliente do reactor é atendido.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class InlineProcessExecutor extends AbstractProcessExecutor {
+
+    @Override
+    protected Executor executor() {
+        return Runnable::run;
+    }
+
+    @Override
+    public void shutdown() {
+        //Do nothing
+    }
+}
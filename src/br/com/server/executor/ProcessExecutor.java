@@ -0,0 +1,51 @@
+package br.com.server.executor;
+
+import br.com.server.metrics.LatencyHistogram;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Estratégia utilizada pelo servidor para executar o processamento das
+ * mensagens dos clientes, fora ou dentro da thread do reactor.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public interface ProcessExecutor {
+
+    /**
+     * Executa a tarefa de acordo com a estratégia.
+     *
+     * @param <R>
+     * @param task
+     * @return O resultado da tarefa.
+     * @throws RejectedExecutionException Se a tarefa não puder ser aceita,
+     * por exemplo, porque a fila está cheia.
+     */
+    <R> CompletableFuture<R> submit(Supplier<R> task);
+
+    /**
+     * @return Quantidade de tarefas aguardando para serem executadas.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return Tempo, em ns, que as tarefas aguardaram para serem executadas.
+     */
+    LatencyHistogram getQueueTime();
+
+    /**
+     * @return Tempo, em ns, de execução das tarefas.
+     */
+    LatencyHistogram getServiceTime();
+
+    /**
+     * @return Quantidade de tarefas rejeitadas.
+     */
+    long getRejected();
+
+    /**
+     * Para de aceitar tarefas e libera as threads utilizadas.
+     */
+    void shutdown();
+}
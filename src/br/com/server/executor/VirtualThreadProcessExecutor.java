@@ -0,0 +1,83 @@
+package br.com.server.executor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executa cada tarefa em uma nova virtual thread. As virtual threads só
+ * existem a partir do Java 21 (nos Java 19 e 20, somente com
+ * {@code --enable-preview}), então nas outras JVMs cada tarefa é executada em
+ * uma thread de um pool sem limite de threads. {@link #isSupported()} informa
+ * qual dos dois é utilizado.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class VirtualThreadProcessExecutor extends AbstractProcessExecutor {
+
+    private final ExecutorService executor;
+
+    public VirtualThreadProcessExecutor() {
+        this.executor = newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * @return Um executor que cria uma virtual thread por tarefa ou, se a JVM
+     * não tiver virtual threads, um pool sem limite de threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        ExecutorService executor = virtualThreadExecutor();
+        if (null != executor) {
+            return executor;
+        }
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Nos Java 19 e 20 o método existe, mas sem {@code --enable-preview}
+     * lança uma {@code UnsupportedOperationException}, então o executor é
+     * criado para conferir.
+     *
+     * @return Se {@link #newVirtualThreadPerTaskExecutor()} cria virtual
+     * threads na JVM atual.
+     */
+    public static boolean isSupported() {
+        ExecutorService executor = virtualThreadExecutor();
+        if (null == executor) {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * @return Nome do tipo de thread utilizado, "virtual" ou "platform".
+     */
+    public static String threadKind() {
+        return isSupported() ? "virtual" : "platform";
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    protected Executor executor() {
+        return executor;
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,36 @@
+package br.com.server.impl;
+
+import br.com.server.ClientProtocol;
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.model.impl.EndClientTracker;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * Mensagens terminadas em CRLF.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class EndProtocol implements ClientProtocol<EndClientTracker> {
+
+    private static final byte[] CRLF = "\r\n".getBytes();
+
+    @Override
+    public EndClientTracker newClientTracker(NetworkChannel socketClient, long timeout, BufferPool bufferPool) {
+        return new EndClientTracker(timeout, false, socketClient, bufferPool, CRLF);
+    }
+
+    @Override
+    public int frameLength(EndClientTracker clientTracker) {
+        return clientTracker.frameLength(CRLF);
+    }
+
+    @Override
+    public ByteBuffer process(EndClientTracker clientTracker, CompositeByteBuffer request) {
+        try (request) {
+            String response = "SUCESSO! PROCESSADO " + request.size() + " BYTES!";
+            return clientTracker.newResponse(response.getBytes());
+        }
+    }
+}
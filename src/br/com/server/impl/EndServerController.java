@@ -1,52 +1,61 @@
-package br.com.server.impl;
-
-import br.com.server.AbstractServerController;
-import br.com.server.model.impl.EndClientTracker;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.CompletableFuture;
-
-/**
- *
- * @author Guilherme Alves Silveira
- */
-public class EndServerController extends AbstractServerController<EndClientTracker> {
-
-    private static final byte[] CRLF = "\r\n".getBytes();
-
-    public EndServerController(
-            long timeout,
-            int buffSize,
-            ServerSocketChannel server, 
-            Selector selector
-    ) throws ClosedChannelException {
-        super(timeout, buffSize, server, selector);
-    }
-
-    @Override
-    protected EndClientTracker newClientTracker(SocketChannel socketClient) {
-        return new EndClientTracker(timeout, socketClient);
-    }
-
-    @Override
-    protected boolean isEndOfMessage(EndClientTracker clientTracker) {
-        return clientTracker.isEndOfRequest(CRLF);
-    }
-
-    @Override
-    protected CompletableFuture<Void> process(EndClientTracker clientTracker) {
-        return CompletableFuture.runAsync(() -> {
-            byte[] request = clientTracker.mountByteRequest();
-            String input = new String(request);
-            String response = "SUCESSO! PROCESSADO " + input.length() + " BYTES!";
-            clientTracker.setResponse(response.getBytes());
-        });
-    }
-
-    @Override
-    protected void whenTimeout() {
-        System.out.println("EndServerController - TIMEOUT ");
-    }
-}
+package br.com.server.impl;
+
+import br.com.server.AbstractServerController;
+import br.com.server.ServerConfig;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.log.Logger;
+import br.com.server.model.impl.EndClientTracker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class EndServerController extends AbstractServerController<EndClientTracker> {
+
+    private static final Logger LOG = Logger.getLogger(EndServerController.class);
+    private final EndProtocol protocol = new EndProtocol();
+
+    public EndServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server, 
+            Selector selector
+    ) throws IOException {
+        super(timeout, buffSize, server, selector);
+    }
+
+    public EndServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server, 
+            Selector selector,
+            ServerConfig config
+    ) throws IOException {
+        super(timeout, buffSize, server, selector, config);
+    }
+
+    @Override
+    protected EndClientTracker newClientTracker(SocketChannel socketClient) {
+        return protocol.newClientTracker(socketClient, timeout, bufferPool);
+    }
+
+    @Override
+    protected int frameLength(EndClientTracker clientTracker) {
+        return protocol.frameLength(clientTracker);
+    }
+
+    @Override
+    protected ByteBuffer process(EndClientTracker clientTracker, CompositeByteBuffer request) {
+        return protocol.process(clientTracker, request);
+    }
+
+    @Override
+    protected void whenTimeout() {
+        LOG.info("TIMEOUT");
+    }
+}
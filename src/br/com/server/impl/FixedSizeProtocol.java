@@ -0,0 +1,36 @@
+package br.com.server.impl;
+
+import br.com.server.ClientProtocol;
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.model.impl.FixedSizeClientTracker;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * Mensagens de tamanho fixo, com 64 bytes.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class FixedSizeProtocol implements ClientProtocol<FixedSizeClientTracker> {
+
+    private static final int FIXED_REQUEST_LENGTH = 64;
+
+    @Override
+    public FixedSizeClientTracker newClientTracker(NetworkChannel socketClient, long timeout, BufferPool bufferPool) {
+        return new FixedSizeClientTracker(timeout, false, socketClient, bufferPool);
+    }
+
+    @Override
+    public int frameLength(FixedSizeClientTracker clientTracker) {
+        return clientTracker.frameLength(FIXED_REQUEST_LENGTH);
+    }
+
+    @Override
+    public ByteBuffer process(FixedSizeClientTracker clientTracker, CompositeByteBuffer request) {
+        try (request) {
+            String response = "SUCESSO! PROCESSADO " + request.size() + " BYTES!";
+            return clientTracker.newResponse(response.getBytes());
+        }
+    }
+}
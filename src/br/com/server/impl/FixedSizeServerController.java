@@ -1,52 +1,61 @@
-package br.com.server.impl;
-
-import br.com.server.AbstractServerController;
-import br.com.server.model.impl.FixedSizeClientTracker;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.CompletableFuture;
-
-/**
- *
- * @author Guilherme Alves Silveira
- */
-public class FixedSizeServerController extends AbstractServerController<FixedSizeClientTracker> {
-
-    private static final int FIXED_REQUEST_LENGTH = 64;
-    
-    public FixedSizeServerController(
-            long timeout,
-            int buffSize,
-            ServerSocketChannel server, 
-            Selector selector
-    ) throws ClosedChannelException {
-        super(timeout, buffSize, server, selector);
-    }
-
-    @Override
-    protected FixedSizeClientTracker newClientTracker(SocketChannel socketClient) {
-        return new FixedSizeClientTracker(timeout, socketClient);
-    }
-
-    @Override
-    protected boolean isEndOfMessage(FixedSizeClientTracker clientTracker) {
-        return clientTracker.isEndOfRequest(FIXED_REQUEST_LENGTH);
-    }
-
-    @Override
-    protected CompletableFuture<Void> process(FixedSizeClientTracker clientTracker) {
-        return CompletableFuture.runAsync(() -> {
-            byte[] request = clientTracker.mountByteRequest();
-            String input = new String(request);
-            String response = "SUCESSO! PROCESSADO " + input.length() + " BYTES!";
-            clientTracker.setResponse(response.getBytes());
-        });
-    }
-
-    @Override
-    protected void whenTimeout() {
-        System.out.println("FixedSizeServerController - TIMEOUT ");
-    }
-}
+package br.com.server.impl;
+
+import br.com.server.AbstractServerController;
+import br.com.server.ServerConfig;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.log.Logger;
+import br.com.server.model.impl.FixedSizeClientTracker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class FixedSizeServerController extends AbstractServerController<FixedSizeClientTracker> {
+
+    private static final Logger LOG = Logger.getLogger(FixedSizeServerController.class);
+    private final FixedSizeProtocol protocol = new FixedSizeProtocol();
+
+    public FixedSizeServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server, 
+            Selector selector
+    ) throws IOException {
+        super(timeout, buffSize, server, selector);
+    }
+
+    public FixedSizeServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server, 
+            Selector selector,
+            ServerConfig config
+    ) throws IOException {
+        super(timeout, buffSize, server, selector, config);
+    }
+
+    @Override
+    protected FixedSizeClientTracker newClientTracker(SocketChannel socketClient) {
+        return protocol.newClientTracker(socketClient, timeout, bufferPool);
+    }
+
+    @Override
+    protected int frameLength(FixedSizeClientTracker clientTracker) {
+        return protocol.frameLength(clientTracker);
+    }
+
+    @Override
+    protected ByteBuffer process(FixedSizeClientTracker clientTracker, CompositeByteBuffer request) {
+        return protocol.process(clientTracker, request);
+    }
+
+    @Override
+    protected void whenTimeout() {
+        LOG.info("TIMEOUT");
+    }
+}
@@ -0,0 +1,53 @@
+package br.com.server.impl;
+
+import br.com.server.ClientProtocol;
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.model.LengthPrefixFramer;
+import br.com.server.model.impl.SizeClientTracker;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.util.Objects;
+
+/**
+ * Mensagens precedidas por um cabeçalho com o tamanho do corpo, por padrão em
+ * 5 dígitos ASCII.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class SizeProtocol implements ClientProtocol<SizeClientTracker> {
+
+    private static final int HEADER_BODY_LENGTH = 5;
+    private static final int MAX_BODY_LENGTH = 99_999;
+
+    private final LengthPrefixFramer framer;
+
+    public SizeProtocol() {
+        this(LengthPrefixFramer.ascii(HEADER_BODY_LENGTH, HEADER_BODY_LENGTH + MAX_BODY_LENGTH));
+    }
+
+    /**
+     * @param framer Formato do cabeçalho com o tamanho do corpo.
+     */
+    public SizeProtocol(LengthPrefixFramer framer) {
+        this.framer = Objects.requireNonNull(framer);
+    }
+
+    @Override
+    public SizeClientTracker newClientTracker(NetworkChannel socketClient, long timeout, BufferPool bufferPool) {
+        return new SizeClientTracker(timeout, false, socketClient, bufferPool, framer);
+    }
+
+    @Override
+    public int frameLength(SizeClientTracker clientTracker) {
+        return clientTracker.frameLength(HEADER_BODY_LENGTH);
+    }
+
+    @Override
+    public ByteBuffer process(SizeClientTracker clientTracker, CompositeByteBuffer request) {
+        try (request) {
+            String response = "SUCESSO! PROCESSADO " + request.size() + " BYTES!";
+            return clientTracker.newResponse(response.getBytes());
+        }
+    }
+}
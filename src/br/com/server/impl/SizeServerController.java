@@ -1,52 +1,85 @@
-package br.com.server.impl;
-
-import br.com.server.AbstractServerController;
-import br.com.server.model.impl.SizeClientTracker;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.CompletableFuture;
-
-/**
- *
- * @author Guilherme Alves Silveira
- */
-public class SizeServerController extends AbstractServerController<SizeClientTracker> {
-
-    private static final int HEADER_BODY_LENGTH = 5;
-
-    public SizeServerController(
-            long timeout, 
-            int buffSize,
-            ServerSocketChannel server, 
-            Selector selector
-    ) throws ClosedChannelException {
-        super(timeout, buffSize, server, selector);
-    }
-
-    @Override
-    protected SizeClientTracker newClientTracker(SocketChannel socketClient) {
-        return new SizeClientTracker(timeout, socketClient);
-    }
-
-    @Override
-    protected boolean isEndOfMessage(SizeClientTracker clientTracker) {
-        return clientTracker.isEndOfRequest(HEADER_BODY_LENGTH);
-    }
-
-    @Override
-    protected CompletableFuture<Void> process(SizeClientTracker clientTracker) {
-        return CompletableFuture.runAsync(() -> {
-            byte[] request = clientTracker.mountByteRequest();
-            String input = new String(request);
-            String response = "SUCESSO! PROCESSADO " + input.length() + " BYTES!";
-            clientTracker.setResponse(response.getBytes());
-        });
-    }
-
-    @Override
-    protected void whenTimeout() {
-        System.out.println("SizeServerController - TIMEOUT ");
-    }
-}
+package br.com.server.impl;
+
+import br.com.server.AbstractServerController;
+import br.com.server.ServerConfig;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.log.Logger;
+import br.com.server.model.LengthPrefixFramer;
+import br.com.server.model.impl.SizeClientTracker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class SizeServerController extends AbstractServerController<SizeClientTracker> {
+
+    private static final Logger LOG = Logger.getLogger(SizeServerController.class);
+    private final SizeProtocol protocol;
+
+    public SizeServerController(
+            long timeout, 
+            int buffSize,
+            ServerSocketChannel server, 
+            Selector selector
+    ) throws IOException {
+        super(timeout, buffSize, server, selector);
+        this.protocol = new SizeProtocol();
+    }
+
+    public SizeServerController(
+            long timeout, 
+            int buffSize,
+            ServerSocketChannel server, 
+            Selector selector,
+            ServerConfig config
+    ) throws IOException {
+        super(timeout, buffSize, server, selector, config);
+        this.protocol = new SizeProtocol();
+    }
+
+    /**
+     * @param timeout
+     * @param buffSize
+     * @param server
+     * @param selector
+     * @param config
+     * @param framer Formato do cabeçalho com o tamanho do corpo.
+     * @throws IOException
+     */
+    public SizeServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server,
+            Selector selector,
+            ServerConfig config,
+            LengthPrefixFramer framer
+    ) throws IOException {
+        super(timeout, buffSize, server, selector, config);
+        this.protocol = new SizeProtocol(framer);
+    }
+
+    @Override
+    protected SizeClientTracker newClientTracker(SocketChannel socketClient) {
+        return protocol.newClientTracker(socketClient, timeout, bufferPool);
+    }
+
+    @Override
+    protected int frameLength(SizeClientTracker clientTracker) {
+        return protocol.frameLength(clientTracker);
+    }
+
+    @Override
+    protected ByteBuffer process(SizeClientTracker clientTracker, CompositeByteBuffer request) {
+        return protocol.process(clientTracker, request);
+    }
+
+    @Override
+    protected void whenTimeout() {
+        LOG.info("TIMEOUT");
+    }
+}
@@ -0,0 +1,294 @@
+package br.com.server.impl;
+
+import br.com.server.AbstractServerController;
+import br.com.server.Reactor;
+import br.com.server.ServerConfig;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.log.Logger;
+import br.com.server.model.AbstractClientTracker;
+import br.com.server.model.InvalidFrameException;
+import br.com.server.model.LengthPrefixFramer;
+import br.com.server.model.StatusClientTracker;
+import br.com.server.model.impl.StreamClientTracker;
+import br.com.server.stream.BufferingStreamHandler;
+import br.com.server.stream.StreamControl;
+import br.com.server.stream.StreamHandler;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Mensagens precedidas por um cabeçalho com o tamanho do corpo, como no
+ * {@link SizeServerController}, mas o corpo é entregue em partes para um
+ * {@link StreamHandler} conforme chega, sem ser montado. A memória utilizada
+ * por conexão é a do buffer de leitura, independente do tamanho da mensagem.
+ *
+ * Por padrão cada mensagem é montada pelo {@link BufferingStreamHandler} e
+ * processada com {@link #process(StreamClientTracker, CompositeByteBuffer)},
+ * respondendo a quantidade de bytes do corpo. Para tratar o corpo sem
+ * montá-lo, por exemplo gravando-o em um arquivo, sobreescreva
+ * {@link #newStreamHandler(StreamClientTracker, long)}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class StreamingSizeServerController extends AbstractServerController<StreamClientTracker> {
+
+    private static final int HEADER_BODY_LENGTH = 5;
+    private static final int MAX_BODY_LENGTH = 99_999;
+    private static final Logger LOG = Logger.getLogger(StreamingSizeServerController.class);
+
+    private final LengthPrefixFramer framer;
+
+    public StreamingSizeServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server,
+            Selector selector,
+            ServerConfig config
+    ) throws IOException {
+        this(timeout, buffSize, server, selector, config,
+                LengthPrefixFramer.ascii(HEADER_BODY_LENGTH, HEADER_BODY_LENGTH + MAX_BODY_LENGTH));
+    }
+
+    /**
+     * @param timeout
+     * @param buffSize
+     * @param server
+     * @param selector
+     * @param config
+     * @param framer Formato do cabeçalho com o tamanho do corpo.
+     * @throws IOException
+     */
+    public StreamingSizeServerController(
+            long timeout,
+            int buffSize,
+            ServerSocketChannel server,
+            Selector selector,
+            ServerConfig config,
+            LengthPrefixFramer framer
+    ) throws IOException {
+        super(timeout, buffSize, server, selector, config);
+        this.framer = Objects.requireNonNull(framer);
+    }
+
+    @Override
+    protected StreamClientTracker newClientTracker(SocketChannel socketClient) {
+        return new StreamClientTracker(timeout, socketClient, bufferPool, framer);
+    }
+
+    @Override
+    protected void acceptClient(Reactor reactor, SocketChannel socketClient) throws IOException {
+        super.acceptClient(reactor, socketClient);
+        SelectionKey key = socketClient.keyFor(reactor.getSelector());
+        StreamClientTracker clientTracker = tracker(key);
+        clientTracker.setControl(new StreamControl(reactor,
+                () -> resumeRead(reactor, key, clientTracker)));
+    }
+
+    /**
+     * Cria o handler que recebe o corpo de uma mensagem.
+     *
+     * @param clientTracker Cliente que enviou a mensagem.
+     * @param length Tamanho do corpo.
+     * @return O handler.
+     */
+    protected StreamHandler newStreamHandler(StreamClientTracker clientTracker, long length) {
+        return new BufferingStreamHandler(bufferPool, processExecutor,
+                request -> respond(clientTracker, request));
+    }
+
+    /**
+     * Entrega os bytes lidos para o handler da mensagem atual, sem guardá-los
+     * no tracker. Se a leitura for pausada pelo handler, os bytes restantes,
+     * e os lidos na mesma leitura depois deles, ficam guardados até que a
+     * leitura seja retomada. O mesmo acontece quando a cota de mensagens do
+     * ciclo ({@link ServerConfig#getMessageBudget()}) acaba ou a fila de
+     * respostas pausa a leitura, e os bytes guardados são entregues pela
+     * fila de prontos do reactor.
+     */
+    @Override
+    protected void received(Reactor reactor, SelectionKey key,
+            StreamClientTracker clientTracker, ByteBuffer buf) {
+        if (clientTracker.hasPending()) {
+            clientTracker.addPending(buf);
+            if (!clientTracker.isFramingPending()) {
+                key.interestOpsAnd(~SelectionKey.OP_READ);
+            }
+            return;
+        }
+
+        receive(reactor, key, clientTracker, buf);
+    }
+
+    /**
+     * Entrega, com a nova cota, os bytes que ficaram guardados no ciclo
+     * anterior.
+     */
+    @Override
+    protected boolean resumeFraming(Reactor reactor, SelectionKey key,
+            StreamClientTracker clientTracker) {
+        return deliverPending(reactor, key, clientTracker);
+    }
+
+    /**
+     * @return Se todos os bytes do buffer foram entregues, ou false se o
+     * buffer ficou guardado porque a leitura foi pausada ou a cota acabou.
+     */
+    private boolean receive(Reactor reactor, SelectionKey key,
+            StreamClientTracker clientTracker, ByteBuffer buf) {
+        boolean delivered;
+        try {
+            delivered = deliver(reactor, clientTracker, buf);
+        } catch (RuntimeException ex) {
+            clientTracker.release(buf);
+            throw ex;
+        }
+
+        if (delivered) {
+            clientTracker.release(buf);
+        } else if (clientTracker.getControl().isPaused()) {
+            clientTracker.returnPending(buf);
+            key.interestOpsAnd(~SelectionKey.OP_READ);
+        } else {
+            clientTracker.returnPending(buf);
+            clientTracker.setFramingPending(true);
+        }
+        return delivered;
+    }
+
+    /**
+     * Entrega os bytes guardados, em ordem.
+     *
+     * @return Se todos foram entregues, ou false se a leitura foi pausada, a
+     * cota acabou ou o cliente foi desconectado.
+     */
+    private boolean deliverPending(Reactor reactor, SelectionKey key,
+            StreamClientTracker clientTracker) {
+        clientTracker.setFramingPending(false);
+        ByteBuffer pending;
+        while (null != (pending = clientTracker.takePending())) {
+            try {
+                if (!receive(reactor, key, clientTracker, pending)) {
+                    return false;
+                }
+            } catch (InvalidFrameException ex) {
+                LOG.debug("[%s INVALID FRAME] %s", clientTracker.getClient(), ex.getMessage());
+                invalidateClient(reactor, key);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Uma nova mensagem só é iniciada se ainda houver cota no ciclo e a
+     * leitura não tiver sido pausada pela fila de respostas.
+     *
+     * @return Se todos os bytes do buffer foram entregues, ou false se a
+     * leitura foi pausada antes.
+     */
+    private boolean deliver(Reactor reactor, StreamClientTracker clientTracker, ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            if (clientTracker.getControl().isPaused()) {
+                return false;
+            }
+
+            if (clientTracker.isReadingHeader()) {
+                if (clientTracker.isMessageBudgetExhausted() || clientTracker.isReadPaused()) {
+                    return false;
+                }
+
+                long length = clientTracker.readHeader(buf);
+                if (AbstractClientTracker.NO_FRAME == length) {
+                    return true;
+                }
+
+                StreamHandler handler = newStreamHandler(clientTracker, length);
+                clientTracker.startMessage(handler, length);
+                handler.onStart(length);
+            } else {
+                clientTracker.getHandler().onChunk(clientTracker.nextChunk(buf));
+            }
+
+            if (clientTracker.isEndOfRequest(null)) {
+                endMessage(reactor, clientTracker);
+            }
+        }
+        return true;
+    }
+
+    private void endMessage(Reactor reactor, StreamClientTracker clientTracker) {
+        LOG.debug("PROCESSED %s", clientTracker.getClient());
+        clientTracker.takeMessageBudget();
+        countFrame(clientTracker);
+        clientTracker.setStatus(StatusClientTracker.PROCESS);
+        StreamHandler handler = clientTracker.endMessage();
+        CompletableFuture<?> response;
+        try {
+            response = handler.onEnd();
+        } catch (RejectedExecutionException ex) {
+            response = CompletableFuture.completedFuture(busyResponse(clientTracker));
+        }
+        addResponse(reactor, clientTracker, response);
+    }
+
+    /**
+     * Executado pela thread do reactor quando o handler retoma a leitura:
+     * entrega os bytes que ficaram guardados e volta a ler do cliente. Se a
+     * cota acabar, o restante é entregue pela fila de prontos.
+     */
+    private void resumeRead(Reactor reactor, SelectionKey key, StreamClientTracker clientTracker) {
+        if (!key.isValid()) {
+            return;
+        }
+
+        clientTracker.beginCycle(reactor.getCycle(), config.getMessageBudget());
+        deliverPending(reactor, key, clientTracker);
+        if (key.isValid() && !isReadSuspended(clientTracker) && !clientTracker.isReadPaused()) {
+            key.interestOpsOr(SelectionKey.OP_READ);
+            if (clientTracker.isFramingPending()) {
+                addReady(reactor, key, clientTracker);
+            }
+        }
+    }
+
+    @Override
+    protected boolean isReadSuspended(StreamClientTracker clientTracker) {
+        return clientTracker.isReadSuspended();
+    }
+
+    /**
+     * As mensagens não são montadas, o corpo é entregue ao handler pelo
+     * {@link #received(Reactor, SelectionKey, StreamClientTracker, ByteBuffer)}.
+     */
+    @Override
+    protected int frameLength(StreamClientTracker clientTracker) {
+        return AbstractClientTracker.NO_FRAME;
+    }
+
+    /**
+     * Processa o corpo montado pelo {@link BufferingStreamHandler}.
+     *
+     * @param clientTracker
+     * @param request Corpo da mensagem, sem o cabeçalho.
+     * @return
+     */
+    @Override
+    protected ByteBuffer process(StreamClientTracker clientTracker, CompositeByteBuffer request) {
+        try (request) {
+            String response = "SUCESSO! PROCESSADO " + request.size() + " BYTES!";
+            return clientTracker.newResponse(response.getBytes());
+        }
+    }
+
+    @Override
+    protected void whenTimeout() {
+        LOG.info("TIMEOUT");
+    }
+}
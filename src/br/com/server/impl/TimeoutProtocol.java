@@ -0,0 +1,34 @@
+package br.com.server.impl;
+
+import br.com.server.ClientProtocol;
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.model.impl.TimeoutClientTracker;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * Mensagens compostas por tudo o que o cliente enviou até o timeout.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class TimeoutProtocol implements ClientProtocol<TimeoutClientTracker> {
+
+    @Override
+    public TimeoutClientTracker newClientTracker(NetworkChannel socketClient, long timeout, BufferPool bufferPool) {
+        return new TimeoutClientTracker(timeout, false, socketClient, bufferPool);
+    }
+
+    @Override
+    public int frameLength(TimeoutClientTracker clientTracker) {
+        return clientTracker.frameLength(null);
+    }
+
+    @Override
+    public ByteBuffer process(TimeoutClientTracker clientTracker, CompositeByteBuffer request) {
+        try (request) {
+            String response = "SUCESSO! PROCESSADO " + request.size() + " BYTES!";
+            return clientTracker.newResponse(response.getBytes());
+        }
+    }
+}
@@ -1,50 +1,61 @@
-package br.com.server.impl;
-
-import br.com.server.AbstractServerController;
-import br.com.server.model.impl.TimeoutClientTracker;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.CompletableFuture;
-
-/**
- *
- * @author Guilherme Alves Silveira
- */
-public class TimeoutServerController extends AbstractServerController<TimeoutClientTracker> {
-
-    public TimeoutServerController(
-            long timeout,
-            int buffSize, 
-            ServerSocketChannel server, 
-            Selector selector
-    ) throws ClosedChannelException {
-        super(timeout, buffSize, server, selector);
-    }
-
-    @Override
-    protected TimeoutClientTracker newClientTracker(SocketChannel socketClient) {
-        return new TimeoutClientTracker(timeout, socketClient);
-    }
-
-    @Override
-    protected boolean isEndOfMessage(TimeoutClientTracker clientTracker) {
-        return clientTracker.isEndOfRequest(null);
-    }
-
-    @Override
-    protected CompletableFuture<Void> process(TimeoutClientTracker clientTracker) {
-        return CompletableFuture.runAsync(() -> {
-            byte[] request = clientTracker.mountByteRequest();
-            String input = new String(request);
-            String response = "SUCESSO! PROCESSADO " + input.length() + " BYTES!";
-            clientTracker.setResponse(response.getBytes());
-        });
-    }
-
-    @Override
-    protected void whenTimeout() {
-        System.out.println("TimeoutServerController - TIMEOUT ");
-    }
-}
+package br.com.server.impl;
+
+import br.com.server.AbstractServerController;
+import br.com.server.ServerConfig;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.log.Logger;
+import br.com.server.model.impl.TimeoutClientTracker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class TimeoutServerController extends AbstractServerController<TimeoutClientTracker> {
+
+    private static final Logger LOG = Logger.getLogger(TimeoutServerController.class);
+    private final TimeoutProtocol protocol = new TimeoutProtocol();
+
+    public TimeoutServerController(
+            long timeout,
+            int buffSize, 
+            ServerSocketChannel server, 
+            Selector selector
+    ) throws IOException {
+        super(timeout, buffSize, server, selector);
+    }
+
+    public TimeoutServerController(
+            long timeout,
+            int buffSize, 
+            ServerSocketChannel server, 
+            Selector selector,
+            ServerConfig config
+    ) throws IOException {
+        super(timeout, buffSize, server, selector, config);
+    }
+
+    @Override
+    protected TimeoutClientTracker newClientTracker(SocketChannel socketClient) {
+        return protocol.newClientTracker(socketClient, timeout, bufferPool);
+    }
+
+    @Override
+    protected int frameLength(TimeoutClientTracker clientTracker) {
+        return protocol.frameLength(clientTracker);
+    }
+
+    @Override
+    protected ByteBuffer process(TimeoutClientTracker clientTracker, CompositeByteBuffer request) {
+        return protocol.process(clientTracker, request);
+    }
+
+    @Override
+    protected void whenTimeout() {
+        LOG.info("TIMEOUT");
+    }
+}
@@ -0,0 +1,223 @@
+package br.com.server.log;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Escreve as mensagens do {@link Logger} em uma thread daemon. As mensagens
+ * são guardadas em um ring buffer de registros pré-alocados: quem registra
+ * uma mensagem reserva a próxima posição com um CAS, preenche o registro e o
+ * publica, sem locks, sem esperar e sem alocar registros novos. A formatação
+ * e a escrita no stdout são feitas somente pela thread do writer.
+ *
+ * Quando o ring está cheio a mensagem é descartada e contada em
+ * {@link #getDropped()}, para que o event loop nunca espere pelo stdout. A
+ * quantidade descartada é informada pelo writer assim que houver espaço.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class AsyncLogWriter {
+
+    private static final int CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SHUTDOWN_WAIT_MILLIS = 1_000;
+    private static final AsyncLogWriter DEFAULT = new AsyncLogWriter(null, CAPACITY);
+
+    /**
+     * Destino das mensagens, ou null para o {@code System.out} atual.
+     */
+    private final PrintStream out;
+    private final Record[] ring;
+    private final int mask;
+    /**
+     * Próxima posição a ser reservada pelos produtores.
+     */
+    private final AtomicLong tail;
+    private final LongAdder dropped;
+    private final Thread drainer;
+    /**
+     * Próxima posição a ser escrita, só é acessada pela thread do writer.
+     */
+    private long head;
+    private long reportedDropped;
+    private volatile boolean closed;
+
+    AsyncLogWriter(PrintStream out, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two!");
+        }
+
+        this.out = out;
+        this.ring = new Record[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Record(i);
+        }
+        this.mask = capacity - 1;
+        this.tail = new AtomicLong();
+        this.dropped = new LongAdder();
+        this.drainer = new Thread(this::drain, "log-writer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-writer-shutdown"));
+    }
+
+    public static AsyncLogWriter getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return Quantidade de mensagens descartadas porque o ring estava cheio.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    void append(int level, String logger, String format, Object arg1, Object arg2, Throwable error) {
+        Record record;
+        long position = tail.get();
+        while (true) {
+            record = ring[(int) position & mask];
+            long difference = record.sequence - position;
+            if (0 == difference) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                //O writer ainda não escreveu o registro da volta anterior
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        record.time = System.currentTimeMillis();
+        record.level = level;
+        record.logger = logger;
+        record.thread = Thread.currentThread().getName();
+        record.format = format;
+        record.arg1 = arg1;
+        record.arg2 = arg2;
+        record.error = error;
+        record.sequence = position + 1;
+    }
+
+    /**
+     * Espera o writer escrever as mensagens já registradas, chamado quando a
+     * JVM é encerrada.
+     */
+    private void close() {
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            boolean written = false;
+            Record record;
+            while (null != (record = next())) {
+                write(record);
+                release(record);
+                written = true;
+            }
+
+            reportDropped();
+            if (written) {
+                flush();
+            } else if (closed) {
+                return;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * @return O próximo registro publicado, ou null se não houver.
+     */
+    private Record next() {
+        Record record = ring[(int) head & mask];
+        return record.sequence == head + 1 ? record : null;
+    }
+
+    /**
+     * Limpa o registro e o devolve para os produtores na próxima volta do
+     * ring.
+     */
+    private void release(Record record) {
+        record.logger = null;
+        record.thread = null;
+        record.format = null;
+        record.arg1 = null;
+        record.arg2 = null;
+        record.error = null;
+        record.sequence = head + ring.length;
+        head++;
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total != reportedDropped) {
+            stream().println(Instant.now() + " WARN [log-writer] AsyncLogWriter - "
+                    + (total - reportedDropped) + " log records dropped");
+            reportedDropped = total;
+        }
+    }
+
+    private void write(Record record) {
+        PrintStream stream = stream();
+        String message;
+        try {
+            message = null == record.arg1 && null == record.arg2
+                    ? record.format
+                    : String.format(record.format, record.arg1, record.arg2);
+        } catch (RuntimeException ex) {
+            message = record.format + " " + record.arg1 + " " + record.arg2;
+        }
+        stream.println(Instant.ofEpochMilli(record.time) + " " + Logger.levelName(record.level)
+                + " [" + record.thread + "] " + record.logger + " - " + message);
+        if (null != record.error) {
+            record.error.printStackTrace(stream);
+        }
+    }
+
+    private void flush() {
+        stream().flush();
+    }
+
+    private PrintStream stream() {
+        return null == out ? System.out : out;
+    }
+
+    /**
+     * Posição do ring. A sequência indica o estado do registro: igual à
+     * posição quando está livre para o produtor da volta atual, e a posição
+     * + 1 quando foi publicado e aguarda o writer.
+     */
+    private static final class Record {
+
+        private volatile long sequence;
+        private long time;
+        private int level;
+        private String logger;
+        private String thread;
+        private String format;
+        private Object arg1;
+        private Object arg2;
+        private Throwable error;
+
+        Record(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
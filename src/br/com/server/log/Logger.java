@@ -0,0 +1,158 @@
+package br.com.server.log;
+
+import java.util.Locale;
+
+/**
+ * Logger do servidor. As mensagens são formatadas e escritas por uma thread
+ * em segundo plano ({@link AsyncLogWriter}), então quem registra uma mensagem
+ * nunca espera pelo stdout. Abaixo do nível configurado os métodos retornam
+ * sem formatar nem alocar nada.
+ *
+ * O nível é informado com {@code -Dserver.log.level=ERROR|WARN|INFO|DEBUG},
+ * por padrão INFO, ou alterado com {@link #setLevel(int)}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class Logger {
+
+    public static final int ERROR = 1;
+    public static final int WARN = 2;
+    public static final int INFO = 3;
+    public static final int DEBUG = 4;
+
+    private static volatile int level = parseLevel(System.getProperty("server.log.level", "INFO"));
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param type Classe que registra as mensagens.
+     * @return Logger identificado pelo nome simples da classe.
+     */
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    public static void setLevel(int level) {
+        if (level < ERROR || level > DEBUG) {
+            throw new IllegalArgumentException("Invalid log level!");
+        }
+        Logger.level = level;
+    }
+
+    /**
+     * @param level ERROR, WARN, INFO ou DEBUG.
+     * @return A constante do nível.
+     */
+    public static int parseLevel(String level) {
+        switch (level.toUpperCase(Locale.ROOT)) {
+            case "ERROR":
+                return ERROR;
+            case "WARN":
+                return WARN;
+            case "INFO":
+                return INFO;
+            case "DEBUG":
+                return DEBUG;
+            default:
+                throw new IllegalArgumentException("Invalid log level!");
+        }
+    }
+
+    public boolean isEnabled(int level) {
+        return level <= Logger.level;
+    }
+
+    public boolean isDebugEnabled() {
+        return DEBUG <= level;
+    }
+
+    public void debug(String message) {
+        if (DEBUG <= level) {
+            log(DEBUG, message, null, null, null);
+        }
+    }
+
+    /**
+     * @param format Formato do {@link String#format(String, Object...)},
+     * aplicado pela thread do writer.
+     * @param arg
+     */
+    public void debug(String format, Object arg) {
+        if (DEBUG <= level) {
+            log(DEBUG, format, arg, null, null);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (DEBUG <= level) {
+            log(DEBUG, format, arg1, arg2, null);
+        }
+    }
+
+    public void info(String message) {
+        if (INFO <= level) {
+            log(INFO, message, null, null, null);
+        }
+    }
+
+    public void info(String format, Object arg) {
+        if (INFO <= level) {
+            log(INFO, format, arg, null, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (WARN <= level) {
+            log(WARN, message, null, null, null);
+        }
+    }
+
+    public void warn(String format, Object arg) {
+        if (WARN <= level) {
+            log(WARN, format, arg, null, null);
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (WARN <= level) {
+            log(WARN, format, arg1, arg2, null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        if (ERROR <= level) {
+            log(ERROR, message, null, null, error);
+        }
+    }
+
+    public void error(String format, Object arg, Throwable error) {
+        if (ERROR <= level) {
+            log(ERROR, format, arg, null, error);
+        }
+    }
+
+    private void log(int level, String format, Object arg1, Object arg2, Throwable error) {
+        AsyncLogWriter.getDefault().append(level, name, format, arg1, arg2, error);
+    }
+
+    static String levelName(int level) {
+        switch (level) {
+            case ERROR:
+                return "ERROR";
+            case WARN:
+                return "WARN";
+            case INFO:
+                return "INFO";
+            default:
+                return "DEBUG";
+        }
+    }
+}
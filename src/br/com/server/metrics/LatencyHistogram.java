@@ -0,0 +1,201 @@
+package br.com.server.metrics;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências sem locks. Os valores são agrupados em faixas
+ * log-lineares: cada potência de dois é dividida em 32 faixas, então o erro
+ * de cada valor é de no máximo ~3%. Pode ser atualizado por várias threads
+ * ao mesmo tempo.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * @param value Valor a ser registrado, valores negativos são
+     * considerados 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            //Tenta novamente
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long total = count.sum();
+        return 0 == total ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * @param percentile Percentil entre 0 e 100.
+     * @return Maior valor da faixa que contém o percentil, ou 0 se nada foi
+     * registrado.
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (0 == total) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Soma os valores de outro histograma neste.
+     *
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = other.counts.get(i);
+            if (0 != value) {
+                counts.addAndGet(i, value);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        long otherMax = other.getMax();
+        long current;
+        while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) {
+            //Tenta novamente
+        }
+    }
+
+    /**
+     * Descarta todos os valores registrados. Valores registrados durante a
+     * chamada podem ser perdidos.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Escreve a distribuição dos percentis no mesmo formato do
+     * {@code outputPercentileDistribution} do HdrHistogram, que pode ser
+     * utilizado nas mesmas ferramentas de gráficos.
+     *
+     * @param out
+     * @param ticksPerHalfDistance Quantidade de percentis informados em cada
+     * metade da distância que falta até 100%.
+     * @param scale Divisor dos valores, por exemplo 1000 para informar em us
+     * valores registrados em ns.
+     */
+    public void outputPercentileDistribution(PrintStream out, int ticksPerHalfDistance, double scale) {
+        long total = getCount();
+        out.println(String.format(Locale.ROOT, "%12s %14s %10s %14s%n",
+                "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+        if (0 != total) {
+            double percentile = 0;
+            double halfDistance = 50;
+            while (true) {
+                long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+                if (percentile >= 100 || rank >= total) {
+                    out.println(String.format(Locale.ROOT, "%12.3f %14.12f %10d",
+                            getPercentile(100) / scale, 1.0, total));
+                    break;
+                }
+
+                out.println(String.format(Locale.ROOT, "%12.3f %14.12f %10d %14.2f",
+                        getPercentile(percentile) / scale, percentile / 100, rank,
+                        1 / (1 - percentile / 100)));
+                percentile += halfDistance / ticksPerHalfDistance;
+                if (percentile >= 100 - halfDistance - 1e-9) {
+                    percentile = 100 - halfDistance;
+                    halfDistance /= 2;
+                }
+            }
+        }
+        out.println(String.format(Locale.ROOT, "#[Mean    = %12.3f, Max            = %12.3f]",
+                getMean() / scale, getMax() / scale));
+        out.println(String.format(Locale.ROOT, "#[Total count    = %12d, SubBuckets     = %12d]",
+                total, SUB_BUCKETS));
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowest = (1L << exponent) | (sub << (exponent - SUB_BITS));
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{"
+                + "count=" + getCount()
+                + ", mean=" + (long) getMean()
+                + ", p50=" + getPercentile(50)
+                + ", p99=" + getPercentile(99)
+                + ", max=" + getMax()
+                + '}';
+    }
+}
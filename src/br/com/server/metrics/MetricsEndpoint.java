@@ -0,0 +1,67 @@
+package br.com.server.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Endpoint HTTP que serve as métricas em {@code GET /metrics}, no formato
+ * texto do Prometheus. Roda em uma thread própria, separada dos reactors, e
+ * só lê as métricas quando é consultado.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class MetricsEndpoint implements Closeable {
+
+    private final HttpServer http;
+    private final ServerMetrics metrics;
+
+    /**
+     * @param address Endereço onde o endpoint escuta.
+     * @param metrics
+     * @throws IOException
+     */
+    public MetricsEndpoint(InetSocketAddress address, ServerMetrics metrics) throws IOException {
+        this.metrics = Objects.requireNonNull(metrics);
+        this.http = HttpServer.create(address, 0);
+        this.http.createContext("/metrics", this::handle);
+        this.http.start();
+    }
+
+    /**
+     * @return Porta onde o endpoint escuta.
+     */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            StringWriter text = new StringWriter();
+            metrics.writeText(new PrintWriter(text));
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+    }
+}
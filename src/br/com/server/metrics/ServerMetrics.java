@@ -0,0 +1,286 @@
+package br.com.server.metrics;
+
+import br.com.server.executor.ProcessExecutor;
+import br.com.server.log.AsyncLogWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métricas do servidor. Os contadores são {@link LongAdder} e as
+ * distribuições são {@link LatencyHistogram}, então as threads dos reactors e
+ * do processamento atualizam as métricas sem locks e sem disputar a mesma
+ * linha de cache. A leitura é feita sob demanda, via JMX
+ * ({@link #register(String)}) ou em texto ({@link #writeText(PrintWriter)},
+ * servido pelo {@link MetricsEndpoint}).
+ *
+ * Uma instância é compartilhada por todos os reactors de um servidor, obtida
+ * com {@link br.com.server.ServerConfig#getMetrics()}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+    private final LongAdder accepts;
+    private final LongAdder disconnects;
+    private final LongAdder rejects;
+    private final LongAdder bytesRead;
+    private final LongAdder bytesWritten;
+    private final LongAdder timeouts;
+    private final ConcurrentMap<String, LongAdder> frames;
+    private final LatencyHistogram selectLoopTime;
+    private final LatencyHistogram keysPerSelect;
+    private volatile ProcessExecutor processExecutor;
+
+    public ServerMetrics() {
+        this.accepts = new LongAdder();
+        this.disconnects = new LongAdder();
+        this.rejects = new LongAdder();
+        this.bytesRead = new LongAdder();
+        this.bytesWritten = new LongAdder();
+        this.timeouts = new LongAdder();
+        this.frames = new ConcurrentHashMap<>();
+        this.selectLoopTime = new LatencyHistogram();
+        this.keysPerSelect = new LatencyHistogram();
+    }
+
+    public void accepted() {
+        accepts.increment();
+    }
+
+    public void disconnected() {
+        disconnects.increment();
+    }
+
+    public void rejected() {
+        rejects.increment();
+    }
+
+    public void read(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void written(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void timeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Contador de mensagens de um modo de framing. Deve ser obtido uma vez,
+     * e não a cada mensagem.
+     *
+     * @param mode Nome do modo, por exemplo "size".
+     * @return O contador do modo.
+     */
+    public LongAdder frames(String mode) {
+        return frames.computeIfAbsent(mode, key -> new LongAdder());
+    }
+
+    /**
+     * Registra uma volta do event loop de um reactor.
+     *
+     * @param nanos Tempo, em ns, gasto tratando as keys, sem a espera do
+     * select.
+     * @param keys Quantidade de keys selecionadas.
+     */
+    public void selectLoop(long nanos, int keys) {
+        selectLoopTime.record(nanos);
+        keysPerSelect.record(keys);
+    }
+
+    /**
+     * @param processExecutor Executor cujas filas e tempos de processamento
+     * são expostos junto com as métricas do servidor.
+     */
+    public void setProcessExecutor(ProcessExecutor processExecutor) {
+        this.processExecutor = processExecutor;
+    }
+
+    public LatencyHistogram getSelectLoopTime() {
+        return selectLoopTime;
+    }
+
+    public LatencyHistogram getKeysPerSelect() {
+        return keysPerSelect;
+    }
+
+    @Override
+    public long getAccepts() {
+        return accepts.sum();
+    }
+
+    @Override
+    public long getConnections() {
+        return accepts.sum() - disconnects.sum();
+    }
+
+    @Override
+    public long getRejects() {
+        return rejects.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public Map<String, Long> getFrames() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        frames.forEach((mode, count) -> snapshot.put(mode, count.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public long getSelectLoopP50Micros() {
+        return micros(selectLoopTime.getPercentile(50));
+    }
+
+    @Override
+    public long getSelectLoopP99Micros() {
+        return micros(selectLoopTime.getPercentile(99));
+    }
+
+    @Override
+    public long getKeysPerSelectP50() {
+        return keysPerSelect.getPercentile(50);
+    }
+
+    @Override
+    public long getKeysPerSelectMax() {
+        return keysPerSelect.getMax();
+    }
+
+    @Override
+    public int getProcessQueueDepth() {
+        ProcessExecutor executor = processExecutor;
+        return null == executor ? 0 : executor.getQueueDepth();
+    }
+
+    @Override
+    public long getProcessQueueTimeP99Micros() {
+        ProcessExecutor executor = processExecutor;
+        return null == executor ? 0 : micros(executor.getQueueTime().getPercentile(99));
+    }
+
+    @Override
+    public long getProcessServiceTimeP50Micros() {
+        ProcessExecutor executor = processExecutor;
+        return null == executor ? 0 : micros(executor.getServiceTime().getPercentile(50));
+    }
+
+    @Override
+    public long getProcessServiceTimeP99Micros() {
+        ProcessExecutor executor = processExecutor;
+        return null == executor ? 0 : micros(executor.getServiceTime().getPercentile(99));
+    }
+
+    @Override
+    public long getProcessRejected() {
+        ProcessExecutor executor = processExecutor;
+        return null == executor ? 0 : executor.getRejected();
+    }
+
+    @Override
+    public long getLogDropped() {
+        return AsyncLogWriter.getDefault().getDropped();
+    }
+
+    /**
+     * Registra as métricas no MBeanServer da plataforma.
+     *
+     * @param name Nome do servidor, utilizado no ObjectName
+     * {@code br.com.server:type=ServerMetrics,name=<name>}.
+     * @return O ObjectName registrado.
+     * @throws JMException
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("br.com.server:type=ServerMetrics,name="
+                + ObjectName.quote(name));
+        MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        mbeans.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Escreve as métricas no formato texto do Prometheus.
+     *
+     * @param out
+     */
+    public void writeText(PrintWriter out) {
+        counter(out, "server_accepts_total", getAccepts());
+        gauge(out, "server_connections", getConnections());
+        counter(out, "server_rejects_total", getRejects());
+        counter(out, "server_bytes_read_total", getBytesRead());
+        counter(out, "server_bytes_written_total", getBytesWritten());
+        counter(out, "server_timeouts_total", getTimeouts());
+        out.println("# TYPE server_frames_total counter");
+        getFrames().forEach((mode, count) ->
+                out.println("server_frames_total{mode=\"" + mode + "\"} " + count));
+        summary(out, "server_select_loop_seconds", selectLoopTime, 1e-9);
+        summary(out, "server_keys_per_select", keysPerSelect, 1);
+        counter(out, "server_log_dropped_total", getLogDropped());
+
+        ProcessExecutor executor = processExecutor;
+        if (null != executor) {
+            gauge(out, "server_process_queue_depth", executor.getQueueDepth());
+            counter(out, "server_process_rejected_total", executor.getRejected());
+            summary(out, "server_process_queue_seconds", executor.getQueueTime(), 1e-9);
+            summary(out, "server_process_service_seconds", executor.getServiceTime(), 1e-9);
+        }
+        out.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringWriter text = new StringWriter();
+        writeText(new PrintWriter(text));
+        return text.toString();
+    }
+
+    private static void counter(PrintWriter out, String name, long value) {
+        out.println("# TYPE " + name + " counter");
+        out.println(name + " " + value);
+    }
+
+    private static void gauge(PrintWriter out, String name, long value) {
+        out.println("# TYPE " + name + " gauge");
+        out.println(name + " " + value);
+    }
+
+    private static void summary(PrintWriter out, String name, LatencyHistogram histogram, double scale) {
+        out.println("# TYPE " + name + " summary");
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            out.println(name + "{quantile=\"" + quantile + "\"} "
+                    + histogram.getPercentile(quantile * 100) * scale);
+        }
+        out.println(name + "_count " + histogram.getCount());
+        out.println(name + "_sum " + histogram.getMean() * histogram.getCount() * scale);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,57 @@
+package br.com.server.metrics;
+
+import java.util.Map;
+
+/**
+ * Métricas do servidor expostas via JMX, registradas com
+ * {@link ServerMetrics#register(String)}. Os tempos são em microssegundos.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public interface ServerMetricsMXBean {
+
+    long getAccepts();
+
+    long getConnections();
+
+    /**
+     * @return Quantidade de clientes desconectados ao serem aceitos por
+     * ultrapassarem os limites de conexões.
+     */
+    long getRejects();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getTimeouts();
+
+    /**
+     * @return Quantidade de mensagens separadas por modo de framing.
+     */
+    Map<String, Long> getFrames();
+
+    long getSelectLoopP50Micros();
+
+    long getSelectLoopP99Micros();
+
+    long getKeysPerSelectP50();
+
+    long getKeysPerSelectMax();
+
+    int getProcessQueueDepth();
+
+    long getProcessQueueTimeP99Micros();
+
+    long getProcessServiceTimeP50Micros();
+
+    long getProcessServiceTimeP99Micros();
+
+    long getProcessRejected();
+
+    /**
+     * @return Quantidade de mensagens de log descartadas porque o buffer do
+     * logger estava cheio.
+     */
+    long getLogDropped();
+}
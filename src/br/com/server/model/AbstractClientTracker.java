@@ -1,241 +1,738 @@
-package br.com.server.model;
-
-import static br.com.MainServer.DEBUG;
-
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-
-/**
- * Classe utilizada para processar os dados recebidos do cliente.
- *
- * @author Guilherme Alves Silveira.
- */
-public abstract class AbstractClientTracker<T> {
-
-    private final boolean updateTime;
-    private final long timeout;
-    /**
-     * Utilizado para informar, se caso mais dados do cliente cheguem, o tempo
-     * de inicio é atualizado para que evite o timeout e os dados sejam
-     * processados.
-     */
-    private final SocketChannel client;
-    private final List<ByteBuffer> partRequest;
-    private final List<ByteBuffer> partReadOnlyRequests;
-
-    private int status;
-    private ByteBuffer response;
-    private long startTime;
-    private int totalBytesLength;
-
-    public AbstractClientTracker(long timeout, SocketChannel client) {
-        this(timeout, false, client);
-    }
-
-    public AbstractClientTracker(long timeout, boolean updateTime, SocketChannel client) {
-        this.timeout = timeout;
-        this.updateTime = updateTime;
-        this.partRequest = new ArrayList<>();
-        this.partReadOnlyRequests = new ArrayList<>();
-        this.startTime = System.currentTimeMillis();
-        this.client = Objects.requireNonNull(client);
-    }
-
-    /**
-     * @return As requisições que serão somente usadas para leitura, onde seus
-     * dados não poderão ser modificados, mas poderão ser usados para
-     * processamento.
-     */
-    public List<ByteBuffer> getPartReadOnlyRequests() {
-        return Collections.unmodifiableList(partReadOnlyRequests);
-    }
-
-    public boolean isEmpty() {
-        return partRequest.isEmpty();
-    }
-
-    public boolean timeoutReached() {
-        return (System.currentTimeMillis() - startTime) > timeout;
-    }
-
-    public int getStatus() {
-        return status;
-    }
-
-    public void setStatus(int status) {
-        switch (status) {
-            case StatusClientTracker.PROCESS:
-            case StatusClientTracker.TIMEOUT:
-                this.status = status;
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid status!");
-        }
-    }
-
-    public boolean addRequestPart(ByteBuffer buff) {
-        if (!buff.hasRemaining()) {
-            throw new IllegalArgumentException("Buffer don't has data or it has to be flipped!");
-        }
-
-        if (updateTime) {
-            startTime = System.currentTimeMillis();
-        }
-
-        totalBytesLength += buff.remaining();
-        partReadOnlyRequests.add(buff.asReadOnlyBuffer());
-        return partRequest.add(buff);
-    }
-
-    public ByteBuffer mountPartRequest(int length) {
-        ByteBuffer part = ByteBuffer.allocateDirect(length);
-        int realSize = 0;
-        for (ByteBuffer requestPart : partReadOnlyRequests) {
-            realSize += requestPart.remaining();
-            ByteBuffer duplicated = requestPart.duplicate();
-
-            if (duplicated.remaining() > length) {
-                duplicated.limit(duplicated.position() + length);
-            }
-
-            part.put(duplicated);
-            if (realSize >= length) {
-                break;
-            }
-        }
-        part.flip();
-        return part;
-    }
-
-    public ByteBuffer mountRequest() {
-        try {
-            if (DEBUG) {
-                int size = 0;
-                for (ByteBuffer requestPart : partRequest) {
-                    size += requestPart.remaining();
-                }
-
-                if (size != totalBytesLength) {
-                    System.err.println("WRONG!");
-                }
-            }
-
-            ByteBuffer request = ByteBuffer.allocateDirect(totalBytesLength);
-            for (ByteBuffer requestPart : partRequest) {
-                request.put(requestPart);
-            }
-            request.flip();
-            return request;
-        } finally {
-            totalBytesLength = 0;
-            partRequest.clear();
-            partReadOnlyRequests.clear();
-        }
-    }
-
-    public byte[] mountByteRequest() {
-        ByteBuffer request = mountRequest();
-        byte[] bb = new byte[request.limit()];
-        request.get(bb);
-        return bb;
-    }
-
-    public List<ByteBuffer> copyRequests() {
-        List<ByteBuffer> copies = new ArrayList<>();
-        for (ByteBuffer src : partRequest) {
-            ByteBuffer dest = ByteBuffer.allocateDirect(src.capacity());
-            dest.position(src.position())
-                    .limit(src.limit());
-            for (int i = src.position(); i < src.limit(); i++) {
-                dest.put(i, src.get(i));
-            }
-            copies.add(dest);
-        }
-
-        return copies;
-    }
-
-    public SocketChannel getClient() {
-        return client;
-    }
-
-    public int getTotalBytesLength() {
-        return totalBytesLength;
-    }
-
-    public boolean isUpdateTime() {
-        return updateTime;
-    }
-
-    public ByteBuffer getResponse() {
-        return response;
-    }
-
-    public void setResponse(ByteBuffer response) {
-        this.response = Objects.requireNonNull(response);
-    }
-
-    public void setResponse(byte[] byteResponse) {
-        Objects.requireNonNull(byteResponse);
-        if (null == response || response.capacity() < byteResponse.length) {
-            this.response = ByteBuffer.allocateDirect(byteResponse.length);
-        }
-        response.clear();
-        this.response.put(byteResponse);
-        this.response.flip();
-    }
-
-    public long getTimeout() {
-        return timeout;
-    }
-
-    public long getStartTime() {
-        return startTime;
-    }
-
-    /**
-     * <pre>
-     * A classe que sobreescrever esse método, deverá informar se o objeto passado
-     * indica que é o fim da requisição, exemplo:
-     * byte[] crlf = "\r\n".getBytes();
-     * if (isEndOfRequest(crlf)) {
-     *  //Sucesso, agora os dados deverão ser processados.
-     * } else {
-     *  //O servidor continua acumulando os bytes para processar na próxima vez.
-     * }
-     * // Ou ...
-     * int tamanhoDosDados = //...
-     * if (isEndOfRequest(tamanhoDosDados)) {
-     *  //Sucesso, agora os dados deverão ser processados.
-     * } else {
-     *  //O servidor continua acumulando os bytes para processar na próxima vez.
-     * }
-     * </pre>
-     *
-     * @param end Valor que indica que chegou a fim da requisição e que juntou
-     * todas as informações necessárias para realizar o processamento.
-     * @return Se o byte passado indica que chegou ao fim da requisição.
-     */
-    public abstract boolean isEndOfRequest(T t);
-
-    public boolean isTimeoutReached() {
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        return elapsedTime >= timeout;
-    }
-
-    @Override
-    public String toString() {
-        return "ClientTracker{"
-                + "timeout=" + timeout
-                + ", requests=" + partRequest
-                + ", response=" + response
-                + ", startTime=" + startTime
-                + ", totalBytes=" + totalBytesLength
-                + ", updateTime=" + updateTime
-                + '}';
-    }
-}
+package br.com.server.model;
+
+import br.com.server.buffer.AdaptiveReceiveAllocator;
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.buffer.FileRegion;
+import br.com.server.buffer.OutboundQueue;
+import br.com.server.log.Logger;
+import br.com.server.timer.TimingWheel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Classe utilizada para processar os dados recebidos do cliente.
+ *
+ * @author Guilherme Alves Silveira.
+ */
+public abstract class AbstractClientTracker<T> {
+
+    /**
+     * Indica que as partes recebidas ainda não formam uma mensagem completa.
+     */
+    public static final int NO_FRAME = -1;
+
+    private static final Logger LOG = Logger.getLogger(AbstractClientTracker.class);
+
+    private final boolean updateTime;
+    private final long timeout;
+    /**
+     * Utilizado para informar, se caso mais dados do cliente cheguem, o tempo
+     * de inicio é atualizado para que evite o timeout e os dados sejam
+     * processados.
+     */
+    private final NetworkChannel client;
+    private final BufferPool bufferPool;
+    private final List<ByteBuffer> partRequest;
+    private final List<ByteBuffer> partReadOnlyRequests;
+    private final List<ByteBuffer> partReadOnlyView;
+    /**
+     * Respostas das mensagens, na ordem em que as mensagens foram recebidas,
+     * cada uma um {@link ByteBuffer} ou uma {@link FileRegion}. Só é acessada
+     * pela thread do reactor.
+     */
+    private final Deque<CompletableFuture<?>> responses;
+    /**
+     * Respostas prontas, aguardando para serem enviadas.
+     */
+    private final OutboundQueue outbound;
+    /**
+     * Indica que o reactor já foi avisado que existem respostas prontas e
+     * ainda não escreveu o cliente.
+     */
+    private final AtomicBoolean writeRequested;
+
+    private int status;
+    private boolean readPaused;
+    private long startTime;
+    private int totalBytesLength;
+    private TimingWheel.Timeout<?> timeoutTask;
+    private int connectionId = -1;
+    private AdaptiveReceiveAllocator.Handle receiveHandle;
+    /**
+     * Ciclo do reactor em que o cliente foi tratado pela última vez e a cota
+     * de mensagens restante nesse ciclo.
+     */
+    private long cycle = -1;
+    private int messageBudget;
+    private boolean ready;
+    private boolean framingPending;
+    /**
+     * Métricas da conexão, atualizadas somente pela thread que trata o
+     * cliente.
+     */
+    private long bytesRead;
+    private long bytesWritten;
+    private long requests;
+
+    public AbstractClientTracker(long timeout, NetworkChannel client) {
+        this(timeout, false, client);
+    }
+
+    public AbstractClientTracker(long timeout, boolean updateTime, NetworkChannel client) {
+        this(timeout, updateTime, client, BufferPool.getDefault());
+    }
+
+    /**
+     * @param timeout
+     * @param updateTime
+     * @param client Channel do cliente, um {@code SocketChannel} ou um
+     * {@code AsynchronousSocketChannel}.
+     * @param bufferPool Pool de onde foram obtidas as partes da requisição e
+     * para onde elas são devolvidas quando não forem mais necessárias.
+     */
+    public AbstractClientTracker(long timeout, boolean updateTime, NetworkChannel client, BufferPool bufferPool) {
+        this.timeout = timeout;
+        this.updateTime = updateTime;
+        this.partRequest = new ArrayList<>();
+        this.partReadOnlyRequests = new ArrayList<>();
+        this.partReadOnlyView = Collections.unmodifiableList(partReadOnlyRequests);
+        this.responses = new ArrayDeque<>();
+        this.outbound = new OutboundQueue();
+        this.writeRequested = new AtomicBoolean();
+        this.startTime = System.currentTimeMillis();
+        this.client = Objects.requireNonNull(client);
+        this.bufferPool = Objects.requireNonNull(bufferPool);
+    }
+
+    /**
+     * @return As requisições que serão somente usadas para leitura, onde seus
+     * dados não poderão ser modificados, mas poderão ser usados para
+     * processamento.
+     */
+    public List<ByteBuffer> getPartReadOnlyRequests() {
+        return partReadOnlyView;
+    }
+
+    public boolean isEmpty() {
+        return partRequest.isEmpty();
+    }
+
+    public boolean timeoutReached() {
+        return (System.currentTimeMillis() - startTime) > timeout;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        switch (status) {
+            case StatusClientTracker.PROCESS:
+            case StatusClientTracker.TIMEOUT:
+                this.status = status;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid status!");
+        }
+    }
+
+    public boolean addRequestPart(ByteBuffer buff) {
+        if (!buff.hasRemaining()) {
+            throw new IllegalArgumentException("Buffer don't has data or it has to be flipped!");
+        }
+
+        if (updateTime) {
+            startTime = System.currentTimeMillis();
+            if (null != timeoutTask) {
+                timeoutTask.rearm(getDeadline());
+            }
+        }
+
+        totalBytesLength += buff.remaining();
+        partReadOnlyRequests.add(buff.asReadOnlyBuffer());
+        return partRequest.add(buff);
+    }
+
+    /**
+     * Junta os primeiros bytes da requisição em um buffer obtido do pool, que
+     * deve ser devolvido com {@link #release(ByteBuffer)}.
+     *
+     * @param length
+     * @return
+     */
+    public ByteBuffer mountPartRequest(int length) {
+        ByteBuffer part = bufferPool.lease(length);
+        for (ByteBuffer requestPart : partReadOnlyRequests) {
+            ByteBuffer duplicated = requestPart.duplicate();
+
+            if (duplicated.remaining() > part.remaining()) {
+                duplicated.limit(duplicated.position() + part.remaining());
+            }
+
+            part.put(duplicated);
+            if (!part.hasRemaining()) {
+                break;
+            }
+        }
+        part.flip();
+        return part;
+    }
+
+    /**
+     * Junta todas as partes da requisição em um buffer obtido do pool, que
+     * deve ser devolvido com {@link #release(ByteBuffer)}. As partes são
+     * devolvidas ao pool.
+     *
+     * @return
+     */
+    public ByteBuffer mountRequest() {
+        try {
+            if (LOG.isDebugEnabled()) {
+                int size = 0;
+                for (ByteBuffer requestPart : partRequest) {
+                    size += requestPart.remaining();
+                }
+
+                if (size != totalBytesLength) {
+                    LOG.warn("WRONG! %s bytes in the parts, expected %s", size, totalBytesLength);
+                }
+            }
+
+            ByteBuffer request = bufferPool.lease(totalBytesLength);
+            for (ByteBuffer requestPart : partRequest) {
+                request.put(requestPart);
+            }
+            request.flip();
+            return request;
+        } finally {
+            releaseParts();
+        }
+    }
+
+    /**
+     * Entrega as partes da requisição em uma visão somente leitura, sem
+     * copiá-las. A visão passa a ser dona das partes e as devolve ao pool no
+     * seu close, então deve ser utilizada com try-with-resources.
+     *
+     * @return
+     */
+    public CompositeByteBuffer takeRequest() {
+        return takeRequest(totalBytesLength);
+    }
+
+    /**
+     * Entrega os primeiros bytes da requisição (uma mensagem completa) em uma
+     * visão somente leitura, mantendo o restante para a próxima mensagem. Se
+     * uma parte contém o fim da mensagem e o inicio da próxima, somente os
+     * bytes da próxima mensagem são copiados para um novo buffer.
+     *
+     * @param length Tamanho da mensagem.
+     * @return
+     */
+    public CompositeByteBuffer takeRequest(int length) {
+        if (length < 0 || length > totalBytesLength) {
+            throw new IllegalArgumentException("Invalid request length!");
+        }
+
+        List<ByteBuffer> taken = new ArrayList<>();
+        List<ByteBuffer> takenReadOnly = new ArrayList<>();
+        int remaining = length;
+        int parts = 0;
+        while (remaining > 0) {
+            ByteBuffer readOnly = partReadOnlyRequests.get(parts);
+            taken.add(partRequest.get(parts));
+            if (readOnly.remaining() <= remaining) {
+                takenReadOnly.add(readOnly);
+                remaining -= readOnly.remaining();
+                parts++;
+                continue;
+            }
+
+            ByteBuffer head = readOnly.duplicate();
+            head.limit(head.position() + remaining);
+            takenReadOnly.add(head);
+            ByteBuffer tail = readOnly.duplicate();
+            tail.position(tail.position() + remaining);
+            ByteBuffer leftover = bufferPool.lease(tail.remaining());
+            leftover.put(tail).flip();
+            partRequest.set(parts, leftover);
+            partReadOnlyRequests.set(parts, leftover.asReadOnlyBuffer());
+            remaining = 0;
+        }
+
+        partRequest.subList(0, parts).clear();
+        partReadOnlyRequests.subList(0, parts).clear();
+        totalBytesLength -= length;
+        onRequestTaken(length);
+        return new CompositeByteBuffer(takenReadOnly, taken, bufferPool);
+    }
+
+    public byte[] mountByteRequest() {
+        ByteBuffer request = mountRequest();
+        try {
+            byte[] bb = new byte[request.limit()];
+            request.get(bb);
+            return bb;
+        } finally {
+            release(request);
+        }
+    }
+
+    /**
+     * Copia as partes da requisição para buffers obtidos do pool, que devem
+     * ser devolvidos com {@link #release(ByteBuffer)}.
+     *
+     * @return
+     */
+    public List<ByteBuffer> copyRequests() {
+        List<ByteBuffer> copies = new ArrayList<>();
+        for (ByteBuffer src : partRequest) {
+            ByteBuffer dest = bufferPool.lease(src.limit());
+            dest.position(src.position());
+            dest.put(src.duplicate());
+            dest.position(src.position());
+            copies.add(dest);
+        }
+
+        return copies;
+    }
+
+    /**
+     * Devolve ao pool um buffer obtido por este tracker.
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    /**
+     * Devolve ao pool as partes da requisição e as respostas, as que ainda
+     * estão sendo processadas são devolvidas quando terminarem. Deve ser
+     * chamado quando o cliente é desconectado.
+     */
+    public void release() {
+        if (null != timeoutTask) {
+            timeoutTask.cancel();
+        }
+        releaseParts();
+        outbound.clear(this::releaseResponse);
+        CompletableFuture<?> response;
+        while (null != (response = responses.poll())) {
+            response.thenAccept(this::discardResponse);
+        }
+    }
+
+    private void discardResponse(Object response) {
+        if (response instanceof FileRegion) {
+            try {
+                ((FileRegion) response).close();
+            } catch (IOException ex) {
+                //O cliente já foi desconectado, não há o que fazer
+            }
+        } else if (response instanceof ByteBuffer) {
+            releaseResponse((ByteBuffer) response);
+        }
+    }
+
+    /**
+     * Devolve ao pool uma resposta já enviada, se ela foi obtida do pool,
+     * como as criadas com {@link #newResponse(byte[])}. Outros buffers, como
+     * um {@code duplicate()} de uma resposta estática compartilhada, não
+     * pertencem ao pool e continuam com quem os criou.
+     *
+     * @param response
+     */
+    public void releaseResponse(ByteBuffer response) {
+        if (bufferPool.isLeased(response)) {
+            bufferPool.release(response);
+        }
+    }
+
+    private void releaseParts() {
+        for (ByteBuffer requestPart : partRequest) {
+            bufferPool.release(requestPart);
+        }
+        clearParts();
+    }
+
+    private void clearParts() {
+        int length = totalBytesLength;
+        totalBytesLength = 0;
+        partRequest.clear();
+        partReadOnlyRequests.clear();
+        onRequestTaken(length);
+    }
+
+    /**
+     * Chamado quando os primeiros bytes da requisição são entregues ou
+     * descartados, para que as subclasses descartem o que guardaram sobre a
+     * mensagem entregue. Os bytes restantes pertencem à próxima mensagem.
+     *
+     * @param length Quantidade de bytes entregues.
+     */
+    protected void onRequestTaken(int length) {
+        //Do nothing
+    }
+
+    /**
+     * Informa o tamanho da primeira mensagem completa presente nas partes da
+     * requisição. Por padrão, a mensagem é composta por todas as partes
+     * recebidas quando {@link #isEndOfRequest(Object)} retorna true, as
+     * subclasses que conseguem separar mais de uma mensagem devem
+     * sobreescrever esse método.
+     *
+     * @param t O mesmo valor de {@link #isEndOfRequest(Object)}.
+     * @return Tamanho da mensagem ou {@link #NO_FRAME}.
+     */
+    public int frameLength(T t) {
+        if (isEmpty() || !isEndOfRequest(t)) {
+            return NO_FRAME;
+        }
+        return totalBytesLength;
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public NetworkChannel getClient() {
+        return client;
+    }
+
+    public int getTotalBytesLength() {
+        return totalBytesLength;
+    }
+
+    public boolean isUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * Cria uma resposta com um buffer do pool, devolvido depois que a
+     * resposta é enviada. Respostas que não foram obtidas do pool nunca são
+     * devolvidas a ele. Pode ser chamado de qualquer thread.
+     *
+     * @param byteResponse
+     * @return
+     */
+    public ByteBuffer newResponse(byte[] byteResponse) {
+        Objects.requireNonNull(byteResponse);
+        ByteBuffer response = bufferPool.lease(byteResponse.length);
+        response.put(byteResponse);
+        response.flip();
+        return response;
+    }
+
+    /**
+     * Adiciona a resposta de uma mensagem, as respostas são enviadas na ordem
+     * em que foram adicionadas.
+     *
+     * @param response Resposta, que deve terminar com um {@link ByteBuffer}
+     * ou uma {@link FileRegion}.
+     */
+    public void addResponse(CompletableFuture<?> response) {
+        responses.offer(Objects.requireNonNull(response));
+    }
+
+    /**
+     * @return A próxima resposta a ser enviada, que pode ainda não estar
+     * pronta, ou null.
+     */
+    public CompletableFuture<?> peekResponse() {
+        return responses.peek();
+    }
+
+    public CompletableFuture<?> pollResponse() {
+        return responses.poll();
+    }
+
+    /**
+     * @return Se existe alguma resposta sendo processada ou aguardando para
+     * ser enviada.
+     */
+    public boolean hasPendingResponses() {
+        return !responses.isEmpty() || !outbound.isEmpty();
+    }
+
+    /**
+     * Move para a fila de envio as respostas já processadas, respeitando a
+     * ordem das mensagens. Uma resposta que falhou continua no início da
+     * fila, e a exceção é lançada novamente a cada chamada.
+     *
+     * @return A fila de envio.
+     * @throws java.util.concurrent.CompletionException Se o processamento
+     * da próxima resposta falhou.
+     * @throws IllegalStateException Se a próxima resposta não é um
+     * {@link ByteBuffer} nem uma {@link FileRegion}.
+     */
+    public OutboundQueue drainReadyResponses() {
+        CompletableFuture<?> next;
+        while (null != (next = responses.peek()) && next.isDone()) {
+            Object response = next.join();
+            if (response instanceof FileRegion) {
+                outbound.add((FileRegion) response);
+            } else if (response instanceof ByteBuffer) {
+                outbound.add((ByteBuffer) response);
+            } else {
+                throw new IllegalStateException("Invalid response: " + response);
+            }
+            responses.poll();
+        }
+        return outbound;
+    }
+
+    /**
+     * @return Se a próxima resposta a ser enviada já está pronta.
+     */
+    public boolean isResponseReady() {
+        CompletableFuture<?> next = responses.peek();
+        return !outbound.isEmpty() || (null != next && next.isDone());
+    }
+
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    /**
+     * @return Se a leitura do cliente está pausada porque ele não está
+     * consumindo as respostas.
+     */
+    public boolean isReadPaused() {
+        return readPaused;
+    }
+
+    public void setReadPaused(boolean readPaused) {
+        this.readPaused = readPaused;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return Tempo, em ms, em que o timeout do cliente é atingido.
+     */
+    public long getDeadline() {
+        return startTime + timeout;
+    }
+
+    /**
+     * @param timeoutTask Timeout agendado para este cliente, reagendado quando
+     * o tempo de inicio é atualizado e cancelado quando o tracker é liberado.
+     */
+    public void setTimeoutTask(TimingWheel.Timeout<?> timeoutTask) {
+        this.timeoutTask = timeoutTask;
+    }
+
+    /**
+     * @return Id da conexão na tabela do reactor, ou -1 se o cliente não é
+     * tratado por um reactor.
+     */
+    public int getConnectionId() {
+        return connectionId;
+    }
+
+    public void setConnectionId(int connectionId) {
+        this.connectionId = connectionId;
+    }
+
+    /**
+     * @return Tamanho dos buffers de leitura deste cliente, ou null se o
+     * cliente não é tratado por um reactor.
+     */
+    public AdaptiveReceiveAllocator.Handle getReceiveHandle() {
+        return receiveHandle;
+    }
+
+    public void setReceiveHandle(AdaptiveReceiveAllocator.Handle receiveHandle) {
+        this.receiveHandle = receiveHandle;
+    }
+
+    /**
+     * Inicia o tratamento do cliente em um ciclo do reactor. A cota de
+     * mensagens só é renovada uma vez por ciclo.
+     *
+     * @param cycle Ciclo atual do reactor.
+     * @param messageBudget Cota de mensagens do ciclo.
+     */
+    public void beginCycle(long cycle, int messageBudget) {
+        if (this.cycle != cycle) {
+            this.cycle = cycle;
+            this.messageBudget = messageBudget;
+        }
+    }
+
+    /**
+     * @return Ciclo do reactor em que o cliente foi tratado pela última vez.
+     */
+    public long getCycle() {
+        return cycle;
+    }
+
+    /**
+     * Consome uma mensagem da cota do ciclo.
+     *
+     * @return false se a cota acabou.
+     */
+    public boolean takeMessageBudget() {
+        if (messageBudget <= 0) {
+            return false;
+        }
+        messageBudget--;
+        return true;
+    }
+
+    public boolean isMessageBudgetExhausted() {
+        return messageBudget <= 0;
+    }
+
+    /**
+     * @return Se o cliente está na fila de prontos do reactor.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * @return Se podem existir mensagens completas nas partes recebidas que
+     * não foram separadas porque a cota do ciclo acabou.
+     */
+    public boolean isFramingPending() {
+        return framingPending;
+    }
+
+    public void setFramingPending(boolean framingPending) {
+        this.framingPending = framingPending;
+    }
+
+    /**
+     * @return Quantidade de bytes lidos do cliente.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead += bytes;
+    }
+
+    /**
+     * @return Quantidade de bytes escritos para o cliente.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten += bytes;
+    }
+
+    /**
+     * @return Quantidade de mensagens recebidas do cliente.
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    public void requestReceived() {
+        requests++;
+    }
+
+    /**
+     * @return Resumo do tráfego do cliente, registrado em DEBUG quando ele é
+     * desconectado.
+     */
+    public String trafficSummary() {
+        return "requests=" + requests + " read=" + bytesRead + " written=" + bytesWritten;
+    }
+
+    /**
+     * Marca que o reactor deve escrever o cliente. Pode ser chamado de
+     * qualquer thread.
+     *
+     * @return Se o reactor ainda não tinha sido avisado, ou seja, se quem
+     * chamou deve avisá-lo.
+     */
+    public boolean requestWrite() {
+        return !writeRequested.get() && writeRequested.compareAndSet(false, true);
+    }
+
+    /**
+     * Chamado pela thread do reactor antes de obter as respostas prontas, as
+     * respostas que ficarem prontas depois disso avisam o reactor novamente.
+     */
+    public void clearWriteRequest() {
+        writeRequested.set(false);
+    }
+
+    /**
+     * <pre>
+     * A classe que sobreescrever esse método, deverá informar se o objeto passado
+     * indica que é o fim da requisição, exemplo:
+     * byte[] crlf = "\r\n".getBytes();
+     * if (isEndOfRequest(crlf)) {
+     *  //Sucesso, agora os dados deverão ser processados.
+     * } else {
+     *  //O servidor continua acumulando os bytes para processar na próxima vez.
+     * }
+     * // Ou ...
+     * int tamanhoDosDados = //...
+     * if (isEndOfRequest(tamanhoDosDados)) {
+     *  //Sucesso, agora os dados deverão ser processados.
+     * } else {
+     *  //O servidor continua acumulando os bytes para processar na próxima vez.
+     * }
+     * </pre>
+     *
+     * @param end Valor que indica que chegou a fim da requisição e que juntou
+     * todas as informações necessárias para realizar o processamento.
+     * @return Se o byte passado indica que chegou ao fim da requisição.
+     */
+    public abstract boolean isEndOfRequest(T t);
+
+    /**
+     * @return Se o cliente pode atingir o timeout. Os trackers que nunca
+     * atingem o timeout retornam false, e os servidores não precisam
+     * agendar o timeout deles.
+     */
+    public boolean canTimeout() {
+        return true;
+    }
+
+    public boolean isTimeoutReached() {
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        return elapsedTime >= timeout;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientTracker{"
+                + "timeout=" + timeout
+                + ", requests=" + partRequest
+                + ", responses=" + responses.size()
+                + ", outbound=" + outbound.getPendingBytes()
+                + ", startTime=" + startTime
+                + ", totalBytes=" + totalBytesLength
+                + ", updateTime=" + updateTime
+                + '}';
+    }
+}
@@ -0,0 +1,169 @@
+package br.com.server.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * Procura delimitadores em um fluxo de bytes que chega em partes. O estado da
+ * busca é mantido entre as chamadas de {@link #scan(ByteBuffer, Listener)},
+ * então um delimitador dividido entre duas partes é encontrado, e cada byte é
+ * analisado uma única vez.
+ *
+ * Utiliza um autômato de Aho-Corasick (equivalente ao KMP quando existe só um
+ * delimitador), montado como tabela de transições para não alocar nada
+ * durante a busca. Depois de encontrar um delimitador a busca recomeça do
+ * estado inicial, pois ele marca o fim de uma mensagem.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class DelimiterMatcher {
+
+    private static final int ALPHABET = 256;
+    private static final int NO_MATCH = -1;
+
+    private final byte[][] delimiters;
+    private final int[][] transitions;
+    /**
+     * Índice do maior delimitador que termina em cada estado.
+     */
+    private final int[] matches;
+    private int state;
+    private long scanned;
+
+    /**
+     * @param delimiters Delimitadores procurados, nenhum pode ser vazio.
+     */
+    public DelimiterMatcher(byte[]... delimiters) {
+        if (0 == delimiters.length) {
+            throw new IllegalArgumentException("At least one delimiter is required!");
+        }
+
+        this.delimiters = new byte[delimiters.length][];
+        int states = 1;
+        for (int i = 0; i < delimiters.length; i++) {
+            if (0 == Objects.requireNonNull(delimiters[i]).length) {
+                throw new IllegalArgumentException("Empty delimiter!");
+            }
+            this.delimiters[i] = delimiters[i].clone();
+            states += delimiters[i].length;
+        }
+
+        this.transitions = new int[states][];
+        this.matches = new int[states];
+        build(states);
+    }
+
+    private void build(int states) {
+        int[][] trie = new int[states][ALPHABET];
+        for (int[] row : trie) {
+            Arrays.fill(row, -1);
+        }
+        Arrays.fill(matches, NO_MATCH);
+
+        int created = 1;
+        for (int i = 0; i < delimiters.length; i++) {
+            int current = 0;
+            for (byte b : delimiters[i]) {
+                int c = b & 0xFF;
+                if (trie[current][c] < 0) {
+                    trie[current][c] = created++;
+                }
+                current = trie[current][c];
+            }
+            if (NO_MATCH == matches[current]) {
+                matches[current] = i;
+            }
+        }
+
+        //Monta as transições em largura, com os links de falha do Aho-Corasick
+        int[] fail = new int[created];
+        Queue<Integer> queue = new ArrayDeque<>();
+        transitions[0] = new int[ALPHABET];
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie[0][c];
+            if (next > 0) {
+                fail[next] = 0;
+                queue.add(next);
+                transitions[0][c] = next;
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (NO_MATCH == matches[current] && NO_MATCH != matches[fail[current]]) {
+                matches[current] = matches[fail[current]];
+            }
+
+            transitions[current] = new int[ALPHABET];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie[current][c];
+                if (next > 0) {
+                    fail[next] = transitions[fail[current]][c];
+                    queue.add(next);
+                    transitions[current][c] = next;
+                } else {
+                    transitions[current][c] = transitions[fail[current]][c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Analisa os bytes do position até o limit do buffer, sem alterá-lo,
+     * avisando o listener de cada delimitador encontrado.
+     *
+     * @param buffer
+     * @param listener
+     */
+    public void scan(ByteBuffer buffer, Listener listener) {
+        int current = state;
+        long offset = scanned;
+        for (int i = buffer.position(), limit = buffer.limit(); i < limit; i++) {
+            current = transitions[current][buffer.get(i) & 0xFF];
+            offset++;
+            int match = matches[current];
+            if (NO_MATCH != match) {
+                current = 0;
+                listener.onDelimiter(offset, match);
+            }
+        }
+        state = current;
+        scanned = offset;
+    }
+
+    /**
+     * Volta ao estado inicial, como se nenhum byte tivesse sido analisado.
+     */
+    public void reset() {
+        state = 0;
+        scanned = 0;
+    }
+
+    /**
+     * @return Quantidade de bytes analisados desde o último reset.
+     */
+    public long getScanned() {
+        return scanned;
+    }
+
+    public int getDelimiterLength(int delimiter) {
+        return delimiters[delimiter].length;
+    }
+
+    /**
+     * Recebe os delimitadores encontrados.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param end Quantidade de bytes analisados até o fim do delimitador,
+         * ou seja, o índice do primeiro byte depois dele.
+         * @param delimiter Índice do delimitador encontrado.
+         */
+        void onDelimiter(long end, int delimiter);
+    }
+}
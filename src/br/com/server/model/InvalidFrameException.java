@@ -0,0 +1,17 @@
+package br.com.server.model;
+
+/**
+ * Indica que o cliente enviou uma mensagem que não pode ser separada, como um
+ * cabeçalho de tamanho inválido ou uma mensagem maior que o permitido. O
+ * cliente deve ser desconectado.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class InvalidFrameException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidFrameException(String message) {
+        super(message);
+    }
+}
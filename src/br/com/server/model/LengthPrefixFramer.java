@@ -0,0 +1,205 @@
+package br.com.server.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Separa mensagens precedidas por um cabeçalho com o tamanho do corpo. O
+ * cabeçalho é lido diretamente das partes recebidas, sem juntá-las e sem
+ * alocar nada, e uma mensagem maior que o tamanho máximo é rejeitada assim
+ * que o cabeçalho é lido, antes de o corpo chegar.
+ *
+ * As instâncias não guardam estado, então podem ser compartilhadas entre os
+ * clientes.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public abstract class LengthPrefixFramer {
+
+    private final int maxFrameLength;
+
+    protected LengthPrefixFramer(int maxFrameLength) {
+        if (maxFrameLength < 1) {
+            throw new IllegalArgumentException("Invalid max frame length!");
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Cabeçalho de tamanho fixo com um inteiro sem sinal.
+     *
+     * @param width Tamanho do cabeçalho: 1, 2, 4 ou 8 bytes.
+     * @param order Ordem dos bytes do cabeçalho.
+     * @param maxFrameLength Tamanho máximo da mensagem, incluindo o
+     * cabeçalho.
+     * @return
+     */
+    public static LengthPrefixFramer fixed(int width, ByteOrder order, int maxFrameLength) {
+        return new Fixed(width, order, maxFrameLength);
+    }
+
+    /**
+     * Cabeçalho no formato varint (o mesmo do Protocol Buffers): 7 bits por
+     * byte, do menos significativo para o mais significativo, com o bit mais
+     * alto indicando que existe mais um byte.
+     *
+     * @param maxFrameLength Tamanho máximo da mensagem, incluindo o
+     * cabeçalho.
+     * @return
+     */
+    public static LengthPrefixFramer varint(int maxFrameLength) {
+        return new Varint(maxFrameLength);
+    }
+
+    /**
+     * Cabeçalho com o tamanho em dígitos decimais ASCII, com zeros à
+     * esquerda, por exemplo "00010" para um corpo de 10 bytes.
+     *
+     * @param digits Quantidade de dígitos do cabeçalho.
+     * @param maxFrameLength Tamanho máximo da mensagem, incluindo o
+     * cabeçalho.
+     * @return
+     */
+    public static LengthPrefixFramer ascii(int digits, int maxFrameLength) {
+        return new Ascii(digits, maxFrameLength);
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * Lê o cabeçalho da primeira mensagem presente nas partes.
+     *
+     * @param parts Partes recebidas, do position até o limit de cada uma,
+     * que não são alteradas.
+     * @return Tamanho da mensagem, incluindo o cabeçalho, ou
+     * {@link AbstractClientTracker#NO_FRAME} se o cabeçalho ainda não chegou
+     * completo. O corpo pode ainda não ter chegado.
+     * @throws InvalidFrameException Se o cabeçalho é inválido ou a mensagem é
+     * maior que o tamanho máximo.
+     */
+    public abstract int frameLength(List<ByteBuffer> parts);
+
+    /**
+     * @param headerLength
+     * @param bodyLength Tamanho do corpo, sem sinal.
+     * @return Tamanho da mensagem.
+     * @throws InvalidFrameException Se a mensagem é maior que o tamanho
+     * máximo.
+     */
+    protected int checkFrameLength(int headerLength, long bodyLength) {
+        if (bodyLength < 0 || bodyLength > maxFrameLength - headerLength) {
+            throw new InvalidFrameException("Frame too long! "
+                    + Long.toUnsignedString(bodyLength) + " bytes, max " + maxFrameLength);
+        }
+        return headerLength + (int) bodyLength;
+    }
+
+    private static final class Fixed extends LengthPrefixFramer {
+
+        private final int width;
+        private final boolean bigEndian;
+
+        Fixed(int width, ByteOrder order, int maxFrameLength) {
+            super(maxFrameLength);
+            switch (width) {
+                case 1:
+                case 2:
+                case 4:
+                case 8:
+                    this.width = width;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid length prefix width!");
+            }
+            this.bigEndian = ByteOrder.BIG_ENDIAN.equals(Objects.requireNonNull(order));
+        }
+
+        @Override
+        public int frameLength(List<ByteBuffer> parts) {
+            long value = 0;
+            int read = 0;
+            for (int p = 0, size = parts.size(); p < size; p++) {
+                ByteBuffer part = parts.get(p);
+                for (int i = part.position(), limit = part.limit(); i < limit; i++) {
+                    long b = part.get(i) & 0xFF;
+                    value = bigEndian ? value << 8 | b : value | b << (8 * read);
+                    if (++read == width) {
+                        return checkFrameLength(width, value);
+                    }
+                }
+            }
+            return AbstractClientTracker.NO_FRAME;
+        }
+    }
+
+    private static final class Varint extends LengthPrefixFramer {
+
+        private static final int MAX_WIDTH = 10;
+
+        Varint(int maxFrameLength) {
+            super(maxFrameLength);
+        }
+
+        @Override
+        public int frameLength(List<ByteBuffer> parts) {
+            long value = 0;
+            int read = 0;
+            for (int p = 0, size = parts.size(); p < size; p++) {
+                ByteBuffer part = parts.get(p);
+                for (int i = part.position(), limit = part.limit(); i < limit; i++) {
+                    int b = part.get(i);
+                    value |= (long) (b & 0x7F) << (7 * read);
+                    read++;
+                    if (0 == (b & 0x80)) {
+                        return checkFrameLength(read, value);
+                    }
+
+                    if (read == MAX_WIDTH) {
+                        throw new InvalidFrameException("Invalid varint length prefix!");
+                    }
+                    //Rejeita antes do fim do cabeçalho se já passou do máximo
+                    checkFrameLength(read, value);
+                }
+            }
+            return AbstractClientTracker.NO_FRAME;
+        }
+    }
+
+    private static final class Ascii extends LengthPrefixFramer {
+
+        private final int digits;
+
+        Ascii(int digits, int maxFrameLength) {
+            super(maxFrameLength);
+            if (digits < 1 || digits > 18) {
+                throw new IllegalArgumentException("Invalid length prefix digits!");
+            }
+            this.digits = digits;
+        }
+
+        @Override
+        public int frameLength(List<ByteBuffer> parts) {
+            long value = 0;
+            int read = 0;
+            for (int p = 0, size = parts.size(); p < size; p++) {
+                ByteBuffer part = parts.get(p);
+                for (int i = part.position(), limit = part.limit(); i < limit; i++) {
+                    int digit = part.get(i) - '0';
+                    if (digit < 0 || digit > 9) {
+                        throw new InvalidFrameException("Invalid length prefix digit!");
+                    }
+
+                    value = value * 10 + digit;
+                    if (++read == digits) {
+                        return checkFrameLength(digits, value);
+                    }
+                }
+            }
+            return AbstractClientTracker.NO_FRAME;
+        }
+    }
+}
@@ -1,72 +1,137 @@
-package br.com.server.model.impl;
-
-import br.com.server.model.AbstractClientTracker;
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
-
-/**
- *
- * @author Guilherme Alves
- */
-public class EndClientTracker extends AbstractClientTracker<byte[]> {
-
-    public EndClientTracker(long timeout, SocketChannel client) {
-        super(timeout, client);
-    }
-
-    public EndClientTracker(long timeout, boolean updateTime, SocketChannel client) {
-        super(timeout, updateTime, client);
-    }
-    
-    /**
-     * Compara o byteEnd com os ultimos bytes presentes nas partes 
-     * da requisição. Se o ultimo byte não conter informação o suficiente,
-     * o byte anterior ao ultimo será processado junto do ultimo, até que se tenha
-     * tamanho suficiente para realizar a comparação do byteEnd com os bytes juntados.
-     * Caso não tenha bytes o suficientes para serem processados o método retorna false.
-     * @param byteEnd
-     * @return 
-     */
-    @Override
-    public boolean isEndOfRequest(byte[] byteEnd) {
-        Objects.requireNonNull(byteEnd);
-        List<ByteBuffer> requests = getPartReadOnlyRequests();
-        ByteBuffer last = requests.get(requests.size() - 1);
-        if (last.limit() >= byteEnd.length) {
-            return endOfRequest(last, byteEnd);
-        }
-
-        byte[] bufferEnd = new byte[byteEnd.length];
-        int offset = 1;
-        for (int i = requests.size() - 1; i >= 0; i--) {
-            ByteBuffer buff = requests.get(i);
-            int posBuff = buff.limit() - 1;
-            for (int j = bufferEnd.length - offset; j >= 0 && posBuff >= 0; j--) {
-                bufferEnd[j] = buff.get(posBuff--);
-                offset++;
-            }
-        }
-
-        return Arrays.equals(byteEnd, bufferEnd);
-    }
-
-    private boolean endOfRequest(ByteBuffer buf, byte[] byteEnd) {
-        byte[] bufferEnd = new byte[byteEnd.length];
-        ByteBuffer duplicatedBuff = buf.duplicate();
-        if (!duplicatedBuff.hasRemaining()) {
-            duplicatedBuff.flip();
-        }
-        
-        int readed = buf.limit();
-        if (readed < byteEnd.length) {
-            return false;
-        }
-
-        duplicatedBuff.position(readed - byteEnd.length);
-        duplicatedBuff.get(bufferEnd);
-        return Arrays.equals(byteEnd, bufferEnd);
-    }
+package br.com.server.model.impl;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.model.AbstractClientTracker;
+import br.com.server.model.DelimiterMatcher;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ *
+ * @author Guilherme Alves
+ */
+public class EndClientTracker extends AbstractClientTracker<byte[]> {
+
+    private static final int NO_BOUNDARY = -1;
+
+    private final DelimiterMatcher.Listener boundaryListener = this::addBoundary;
+    private DelimiterMatcher matcher;
+    /**
+     * Fim (índice do byte depois do delimitador) de cada mensagem encontrada
+     * e ainda não entregue, em ordem, contando desde o último reset do
+     * matcher.
+     */
+    private long[] boundaries = new long[4];
+    private int boundaryCount;
+    /**
+     * Quantidade de bytes já entregues desde o último reset do matcher.
+     */
+    private long consumed;
+
+    public EndClientTracker(long timeout, NetworkChannel client) {
+        super(timeout, client);
+    }
+
+    public EndClientTracker(long timeout, boolean updateTime, NetworkChannel client) {
+        super(timeout, updateTime, client);
+    }
+
+    public EndClientTracker(long timeout, boolean updateTime, NetworkChannel client, BufferPool bufferPool) {
+        super(timeout, updateTime, client, bufferPool);
+    }
+
+    /**
+     * @param delimiters Delimitadores que indicam o fim de uma mensagem,
+     * procurados conforme as partes da requisição chegam.
+     */
+    public EndClientTracker(long timeout, boolean updateTime, NetworkChannel client, BufferPool bufferPool, byte[]... delimiters) {
+        super(timeout, updateTime, client, bufferPool);
+        this.matcher = new DelimiterMatcher(delimiters);
+    }
+
+    @Override
+    public boolean addRequestPart(ByteBuffer buff) {
+        boolean added = super.addRequestPart(buff);
+        if (null != matcher) {
+            matcher.scan(buff, boundaryListener);
+        }
+        return added;
+    }
+
+    private void addBoundary(long end, int delimiter) {
+        if (boundaryCount == boundaries.length) {
+            boundaries = Arrays.copyOf(boundaries, boundaryCount * 2);
+        }
+        boundaries[boundaryCount++] = end;
+    }
+
+    /**
+     * Informa se algum delimitador já foi encontrado nas partes da requisição.
+     * Cada parte é analisada uma única vez, quando é adicionada. Se o tracker
+     * foi criado sem delimitadores, o byteEnd passa a ser o delimitador e as
+     * partes já recebidas são analisadas.
+     *
+     * @param byteEnd
+     * @return
+     */
+    @Override
+    public boolean isEndOfRequest(byte[] byteEnd) {
+        Objects.requireNonNull(byteEnd);
+        if (null == matcher) {
+            matcher = new DelimiterMatcher(byteEnd);
+            for (ByteBuffer part : getPartReadOnlyRequests()) {
+                matcher.scan(part, boundaryListener);
+            }
+        }
+
+        return boundaryCount > 0;
+    }
+
+    /**
+     * @param byteEnd
+     * @return Tamanho da primeira mensagem, incluindo o delimitador.
+     */
+    @Override
+    public int frameLength(byte[] byteEnd) {
+        return isEndOfRequest(byteEnd) ? (int) getBoundary(0) : NO_FRAME;
+    }
+
+    /**
+     * @return Quantidade de mensagens completas encontradas na requisição.
+     */
+    public int getBoundaryCount() {
+        return boundaryCount;
+    }
+
+    /**
+     * @param index
+     * @return Fim (índice do byte depois do delimitador) da mensagem
+     * informada, relativo ao inicio da requisição, ou -1 se ela ainda não foi
+     * encontrada.
+     */
+    public long getBoundary(int index) {
+        return index < boundaryCount ? boundaries[index] - consumed : NO_BOUNDARY;
+    }
+
+    @Override
+    protected void onRequestTaken(int length) {
+        if (isEmpty()) {
+            consumed = 0;
+            boundaryCount = 0;
+            if (null != matcher) {
+                matcher.reset();
+            }
+            return;
+        }
+
+        consumed += length;
+        int delivered = 0;
+        while (delivered < boundaryCount && boundaries[delivered] <= consumed) {
+            delivered++;
+        }
+        boundaryCount -= delivered;
+        System.arraycopy(boundaries, delivered, boundaries, 0, boundaryCount);
+    }
 }
\ No newline at end of file
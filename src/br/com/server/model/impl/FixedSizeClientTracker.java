@@ -1,29 +1,44 @@
-package br.com.server.model.impl;
-
-import br.com.server.model.AbstractClientTracker;
-import java.nio.channels.SocketChannel;
-
-/**
- *
- * @author Guilherme Alves
- */
-public class FixedSizeClientTracker extends AbstractClientTracker<Integer> {
-
-    public FixedSizeClientTracker(long timeout, SocketChannel client) {
-        super(timeout, client);
-    }
-
-    public FixedSizeClientTracker(long timeout, boolean updateTime, SocketChannel client) {
-        super(timeout, updateTime, client);
-    }
-
-    /**
-     * Analisa se a requisição atingiu o tamanho informado.
-     * @param requestHeaderLength
-     * @return 
-     */
-    @Override
-    public boolean isEndOfRequest(Integer fixedSize) {
-        return getTotalBytesLength() >= fixedSize;
-    }
-}
+package br.com.server.model.impl;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.model.AbstractClientTracker;
+import java.nio.channels.NetworkChannel;
+
+/**
+ *
+ * @author Guilherme Alves
+ */
+public class FixedSizeClientTracker extends AbstractClientTracker<Integer> {
+
+    public FixedSizeClientTracker(long timeout, NetworkChannel client) {
+        super(timeout, client);
+    }
+
+    public FixedSizeClientTracker(long timeout, boolean updateTime, NetworkChannel client) {
+        super(timeout, updateTime, client);
+    }
+
+    public FixedSizeClientTracker(long timeout, boolean updateTime, NetworkChannel client, BufferPool bufferPool) {
+        super(timeout, updateTime, client, bufferPool);
+    }
+
+    /**
+     * Analisa se a requisição atingiu o tamanho informado.
+     * @param requestHeaderLength
+     * @return 
+     */
+    @Override
+    public boolean isEndOfRequest(Integer fixedSize) {
+        return getTotalBytesLength() >= fixedSize;
+    }
+
+    /**
+     * @param fixedSize
+     * @return O tamanho fixo, se a requisição já atingiu esse tamanho. Os
+     * bytes excedentes pertencem à próxima mensagem.
+     */
+    @Override
+    public int frameLength(Integer fixedSize) {
+        return isEndOfRequest(fixedSize) ? fixedSize : NO_FRAME;
+    }
+}
@@ -1,56 +1,98 @@
-package br.com.server.model.impl;
-
-import br.com.server.model.AbstractClientTracker;
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-
-/**
- *
- * @author Guilherme Alves
- */
-public class SizeClientTracker extends AbstractClientTracker<Integer> {
-
-    private static final int WITHOUT_REQUEST_BODY_LENGHT = -1;
-    private int requestBodyLength = WITHOUT_REQUEST_BODY_LENGHT;
-
-    public SizeClientTracker(long timeout, SocketChannel client) {
-        super(timeout, client);
-    }
-
-    public SizeClientTracker(long timeout, boolean updateTime, SocketChannel client) {
-        super(timeout, updateTime, client);
-    }
-
-    /**
-     * Analisa se a requisição atingiu o tamanho informado.
-     * @param requestHeaderLength
-     * @return 
-     */
-    @Override
-    public boolean isEndOfRequest(Integer requestHeaderLength) {
-        if (isEmpty() || getTotalBytesLength() < requestHeaderLength) {
-            return false;
-        }
-
-        if (WITHOUT_REQUEST_BODY_LENGHT == requestBodyLength) {
-            ByteBuffer bodySize = mountPartRequest(requestHeaderLength);
-            if (bodySize.remaining() < requestHeaderLength) {
-                return false;
-            }
-
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < requestHeaderLength; i++) {
-                sb.append((char) bodySize.get());
-            }
-
-            this.requestBodyLength = Integer.parseInt(sb.toString());
-        }
-        
-        return (getTotalBytesLength() - requestHeaderLength) >= this.requestBodyLength;
-    }
-
-    @Override
-    public boolean isTimeoutReached() {
-        return false; //Temporário
-    }
-}
+package br.com.server.model.impl;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.model.AbstractClientTracker;
+import br.com.server.model.LengthPrefixFramer;
+import java.nio.channels.NetworkChannel;
+import java.util.Objects;
+
+/**
+ * Separa as mensagens pelo tamanho informado no cabeçalho de cada uma, lido
+ * por um {@link LengthPrefixFramer}.
+ *
+ * @author Guilherme Alves
+ */
+public class SizeClientTracker extends AbstractClientTracker<Integer> {
+
+    private LengthPrefixFramer framer;
+    /**
+     * Tamanho da primeira mensagem, guardado assim que o cabeçalho é lido
+     * para não ler o cabeçalho novamente a cada parte recebida.
+     */
+    private int frameLength = NO_FRAME;
+
+    public SizeClientTracker(long timeout, NetworkChannel client) {
+        super(timeout, client);
+    }
+
+    public SizeClientTracker(long timeout, boolean updateTime, NetworkChannel client) {
+        super(timeout, updateTime, client);
+    }
+
+    public SizeClientTracker(long timeout, boolean updateTime, NetworkChannel client, BufferPool bufferPool) {
+        super(timeout, updateTime, client, bufferPool);
+    }
+
+    /**
+     * @param timeout
+     * @param updateTime
+     * @param client
+     * @param bufferPool
+     * @param framer Formato do cabeçalho, quando informado o tamanho passado
+     * para {@link #frameLength(Integer)} é ignorado.
+     */
+    public SizeClientTracker(long timeout, boolean updateTime, NetworkChannel client,
+            BufferPool bufferPool, LengthPrefixFramer framer) {
+        super(timeout, updateTime, client, bufferPool);
+        this.framer = Objects.requireNonNull(framer);
+    }
+
+    /**
+     * Analisa se a requisição atingiu o tamanho informado.
+     * @param requestHeaderLength
+     * @return 
+     */
+    @Override
+    public boolean isEndOfRequest(Integer requestHeaderLength) {
+        return NO_FRAME != frameLength(requestHeaderLength);
+    }
+
+    /**
+     * @param requestHeaderLength Quantidade de dígitos do cabeçalho ASCII,
+     * utilizado quando o tracker foi criado sem um {@link LengthPrefixFramer}.
+     * @return Tamanho do cabeçalho mais o corpo da mensagem, se ela estiver
+     * completa.
+     * @throws br.com.server.model.InvalidFrameException Se o cabeçalho é
+     * inválido ou a mensagem é maior que o tamanho máximo.
+     */
+    @Override
+    public int frameLength(Integer requestHeaderLength) {
+        if (null == framer) {
+            framer = LengthPrefixFramer.ascii(requestHeaderLength, Integer.MAX_VALUE);
+        }
+
+        if (NO_FRAME == frameLength) {
+            frameLength = framer.frameLength(getPartReadOnlyRequests());
+            if (NO_FRAME == frameLength) {
+                return NO_FRAME;
+            }
+        }
+
+        return getTotalBytesLength() >= frameLength ? frameLength : NO_FRAME;
+    }
+
+    @Override
+    protected void onRequestTaken(int length) {
+        frameLength = NO_FRAME;
+    }
+
+    @Override
+    public boolean canTimeout() {
+        return false;
+    }
+
+    @Override
+    public boolean isTimeoutReached() {
+        return false; //Temporário
+    }
+}
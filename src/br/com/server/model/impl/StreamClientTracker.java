@@ -0,0 +1,227 @@
+package br.com.server.model.impl;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.model.AbstractClientTracker;
+import br.com.server.model.InvalidFrameException;
+import br.com.server.model.LengthPrefixFramer;
+import br.com.server.stream.StreamControl;
+import br.com.server.stream.StreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Separa as mensagens pelo tamanho informado no cabeçalho de cada uma, como o
+ * {@link SizeClientTracker}, mas sem montar as mensagens: somente o cabeçalho
+ * é guardado, e o corpo é entregue em partes para o {@link StreamHandler} da
+ * mensagem atual conforme chega.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class StreamClientTracker extends AbstractClientTracker<Void> {
+
+    /**
+     * Maior cabeçalho entre os formatos do {@link LengthPrefixFramer}.
+     */
+    private static final int MAX_HEADER_LENGTH = 18;
+
+    private final LengthPrefixFramer framer;
+    private final ByteBuffer header;
+    private final List<ByteBuffer> headerView;
+    private StreamHandler handler;
+    private StreamControl control;
+    private long bodyRemaining;
+    /**
+     * Bytes já lidos que ainda não foram entregues porque a leitura foi
+     * pausada, na ordem em que foram lidos.
+     */
+    private final Deque<ByteBuffer> pending;
+
+    /**
+     * @param timeout
+     * @param client
+     * @param bufferPool
+     * @param framer Formato do cabeçalho com o tamanho do corpo.
+     */
+    public StreamClientTracker(long timeout, NetworkChannel client, BufferPool bufferPool,
+            LengthPrefixFramer framer) {
+        super(timeout, false, client, bufferPool);
+        this.framer = Objects.requireNonNull(framer);
+        this.header = ByteBuffer.allocate(MAX_HEADER_LENGTH);
+        this.headerView = Collections.singletonList(header);
+        this.pending = new ArrayDeque<>();
+    }
+
+    /**
+     * Lê o cabeçalho da próxima mensagem, consumindo do buffer somente os
+     * bytes do cabeçalho. O cabeçalho pode chegar dividido em vários buffers.
+     *
+     * @param buf
+     * @return Tamanho do corpo, ou {@link #NO_FRAME} se o cabeçalho ainda não
+     * chegou completo.
+     * @throws InvalidFrameException Se o cabeçalho é inválido ou a mensagem é
+     * maior que o tamanho máximo.
+     */
+    public long readHeader(ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            if (!header.hasRemaining()) {
+                throw new InvalidFrameException("Length prefix too long!");
+            }
+
+            header.put(buf.get());
+            header.flip();
+            int frameLength = framer.frameLength(headerView);
+            int headerLength = header.limit();
+            header.position(headerLength).limit(header.capacity());
+            if (NO_FRAME != frameLength) {
+                header.clear();
+                return frameLength - headerLength;
+            }
+        }
+        return NO_FRAME;
+    }
+
+    /**
+     * Inicia uma mensagem.
+     *
+     * @param handler Recebe o corpo da mensagem.
+     * @param bodyLength Tamanho do corpo.
+     */
+    public void startMessage(StreamHandler handler, long bodyLength) {
+        this.handler = Objects.requireNonNull(handler);
+        this.bodyRemaining = bodyLength;
+    }
+
+    /**
+     * Separa a próxima parte do corpo, avançando o buffer.
+     *
+     * @param buf
+     * @return Visão dos bytes do buffer que pertencem ao corpo atual.
+     */
+    public ByteBuffer nextChunk(ByteBuffer buf) {
+        int length = (int) Math.min(buf.remaining(), bodyRemaining);
+        ByteBuffer chunk = buf.slice();
+        chunk.limit(length);
+        buf.position(buf.position() + length);
+        bodyRemaining -= length;
+        return chunk;
+    }
+
+    /**
+     * Termina a mensagem atual.
+     *
+     * @return O handler da mensagem.
+     */
+    public StreamHandler endMessage() {
+        StreamHandler ended = handler;
+        handler = null;
+        return ended;
+    }
+
+    public StreamHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return Se o cabeçalho da próxima mensagem ainda não foi lido.
+     */
+    public boolean isReadingHeader() {
+        return null == handler;
+    }
+
+    public long getBodyRemaining() {
+        return bodyRemaining;
+    }
+
+    public StreamControl getControl() {
+        return control;
+    }
+
+    public void setControl(StreamControl control) {
+        this.control = control;
+    }
+
+    /**
+     * @return Se a leitura está pausada pelo handler ou ainda existem bytes
+     * lidos aguardando a leitura ser retomada. Os bytes guardados porque a
+     * cota de mensagens do ciclo acabou não suspendem a leitura, eles são
+     * entregues antes da próxima leitura.
+     */
+    public boolean isReadSuspended() {
+        return (null != control && control.isPaused())
+                || (!pending.isEmpty() && !isFramingPending());
+    }
+
+    /**
+     * @return Se existem bytes lidos aguardando para serem entregues.
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Guarda bytes lidos depois dos que já estão aguardando.
+     *
+     * @param buf Buffer do pool com os bytes ainda não entregues.
+     */
+    public void addPending(ByteBuffer buf) {
+        pending.addLast(buf);
+    }
+
+    /**
+     * Devolve um buffer obtido com {@link #takePending()} que não foi
+     * entregue por completo, para ser o próximo a ser entregue.
+     *
+     * @param buf
+     */
+    public void returnPending(ByteBuffer buf) {
+        pending.addFirst(buf);
+    }
+
+    /**
+     * @return O próximo buffer aguardando para ser entregue, ou null.
+     */
+    public ByteBuffer takePending() {
+        return pending.pollFirst();
+    }
+
+    /**
+     * O corpo não é guardado, então a mensagem termina quando todos os bytes
+     * do corpo foram entregues.
+     */
+    @Override
+    public boolean isEndOfRequest(Void nothing) {
+        return null != handler && 0 == bodyRemaining;
+    }
+
+    @Override
+    public boolean canTimeout() {
+        return false;
+    }
+
+    @Override
+    public boolean isTimeoutReached() {
+        return false;
+    }
+
+    /**
+     * Além das partes e respostas, avisa o handler da mensagem incompleta e
+     * devolve ao pool os bytes que não foram entregues.
+     */
+    @Override
+    public void release() {
+        super.release();
+        StreamHandler aborted = endMessage();
+        if (null != aborted) {
+            aborted.onAbort();
+        }
+        ByteBuffer buf;
+        while (null != (buf = takePending())) {
+            release(buf);
+        }
+    }
+}
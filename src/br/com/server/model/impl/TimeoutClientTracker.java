@@ -1,27 +1,32 @@
-package br.com.server.model.impl;
-
-import br.com.server.model.AbstractClientTracker;
-import java.nio.channels.SocketChannel;
-
-/**
- *
- * @author Guilherme Alves Silveira.
- */
-public class TimeoutClientTracker extends AbstractClientTracker {
-
-    public TimeoutClientTracker(long timeout, SocketChannel client) {
-        super(timeout, client);
-    }
-
-    public TimeoutClientTracker(long timeout, boolean updateTime, SocketChannel client) {
-        super(timeout, updateTime, client);
-    }
-    
-    /**
-     * Simplemente retorna se o timeout foi atingido.
-     */
-    @Override
-    public boolean isEndOfRequest(Object ignore) {
-        return timeoutReached();
-    }
+package br.com.server.model.impl;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.model.AbstractClientTracker;
+import java.nio.channels.NetworkChannel;
+
+/**
+ *
+ * @author Guilherme Alves Silveira.
+ */
+public class TimeoutClientTracker extends AbstractClientTracker<Object> {
+
+    public TimeoutClientTracker(long timeout, NetworkChannel client) {
+        super(timeout, client);
+    }
+
+    public TimeoutClientTracker(long timeout, boolean updateTime, NetworkChannel client) {
+        super(timeout, updateTime, client);
+    }
+
+    public TimeoutClientTracker(long timeout, boolean updateTime, NetworkChannel client, BufferPool bufferPool) {
+        super(timeout, updateTime, client, bufferPool);
+    }
+    
+    /**
+     * Simplemente retorna se o timeout foi atingido.
+     */
+    @Override
+    public boolean isEndOfRequest(Object ignore) {
+        return timeoutReached();
+    }
 }
\ No newline at end of file
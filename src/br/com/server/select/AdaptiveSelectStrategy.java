@@ -0,0 +1,43 @@
+package br.com.server.select;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Enquanto o último select encontrou channels prontos, os eventos são
+ * considerados frequentes e o reactor tenta até {@code spins} vezes o
+ * {@code selectNow}, evitando o custo de bloquear e ser acordado. Quando as
+ * tentativas não encontram nada, o reactor bloqueia como no
+ * {@link BlockingSelectStrategy}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class AdaptiveSelectStrategy extends BlockingSelectStrategy {
+
+    private final int spins;
+    private boolean dense;
+
+    public AdaptiveSelectStrategy(int spins) {
+        if (spins < 1) {
+            throw new IllegalArgumentException("At least one spin is required!");
+        }
+        this.spins = spins;
+    }
+
+    @Override
+    public int select(Selector selector, long timeoutMillis) throws IOException {
+        if (dense) {
+            for (int i = 0; i < spins; i++) {
+                int readyChannels = selector.selectNow();
+                if (readyChannels > 0) {
+                    return readyChannels;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        int readyChannels = super.select(selector, timeoutMillis);
+        dense = readyChannels > 0;
+        return readyChannels;
+    }
+}
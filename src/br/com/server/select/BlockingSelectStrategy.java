@@ -0,0 +1,24 @@
+package br.com.server.select;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Bloqueia no {@code select} até que existam eventos, o reactor seja acordado
+ * ou o próximo timeout da roda seja atingido. Sem timeouts agendados, bloqueia
+ * sem limite de tempo.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BlockingSelectStrategy implements SelectStrategy {
+
+    @Override
+    public int select(Selector selector, long timeoutMillis) throws IOException {
+        if (timeoutMillis < 0) {
+            return selector.select();
+        } else if (0 == timeoutMillis) {
+            return selector.selectNow();
+        }
+        return selector.select(timeoutMillis);
+    }
+}
@@ -0,0 +1,34 @@
+package br.com.server.select;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Somente {@code selectNow}: a thread do reactor nunca bloqueia e ocupa um
+ * processador inteiro, em troca da menor latência possível. Como o Selector
+ * nunca bloqueia, os comandos enviados por outras threads não precisam
+ * acordá-lo.
+ *
+ * A JVM não permite fixar uma thread em um processador, então para isolar o
+ * reactor o processo deve ser executado com a afinidade configurada pelo
+ * sistema operacional (por exemplo {@code taskset} e {@code isolcpus}), com
+ * um reactor por processador reservado.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BusyPollSelectStrategy implements SelectStrategy {
+
+    @Override
+    public int select(Selector selector, long timeoutMillis) throws IOException {
+        int readyChannels = selector.selectNow();
+        if (0 == readyChannels) {
+            Thread.onSpinWait();
+        }
+        return readyChannels;
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+}
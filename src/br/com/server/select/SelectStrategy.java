@@ -0,0 +1,59 @@
+package br.com.server.select;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Estratégia utilizada por cada reactor para esperar os eventos do seu
+ * Selector. Cada reactor tem a sua própria instância, então a estratégia pode
+ * guardar estado entre as chamadas.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public interface SelectStrategy {
+
+    /**
+     * Espera até que algum channel esteja pronto, o Selector seja acordado
+     * ou o tempo informado passe.
+     *
+     * @param selector Selector do reactor.
+     * @param timeoutMillis Tempo máximo, em ms, até o próximo timeout da roda
+     * do reactor, 0 para não esperar ou -1 se não houver timeouts agendados.
+     * @return Quantidade de channels prontos.
+     * @throws IOException
+     */
+    int select(Selector selector, long timeoutMillis) throws IOException;
+
+    /**
+     * @return Se o Selector pode ficar bloqueado e precisa ser acordado com
+     * {@code wakeup()} quando outra thread envia um comando para o reactor.
+     */
+    default boolean isBlocking() {
+        return true;
+    }
+
+    /**
+     * @return Espera bloqueando no {@code select}, pelo tempo até o próximo
+     * timeout.
+     */
+    static SelectStrategy blocking() {
+        return new BlockingSelectStrategy();
+    }
+
+    /**
+     * @param spins Quantidade máxima de {@code selectNow} tentados antes de
+     * bloquear, enquanto os eventos estiverem frequentes.
+     * @return Tenta o {@code selectNow} algumas vezes enquanto existirem
+     * eventos e bloqueia quando o reactor fica ocioso.
+     */
+    static SelectStrategy adaptive(int spins) {
+        return new AdaptiveSelectStrategy(spins);
+    }
+
+    /**
+     * @return Nunca bloqueia, somente {@code selectNow}.
+     */
+    static SelectStrategy busyPoll() {
+        return new BusyPollSelectStrategy();
+    }
+}
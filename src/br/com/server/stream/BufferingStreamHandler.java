@@ -0,0 +1,73 @@
+package br.com.server.stream;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.buffer.CompositeByteBuffer;
+import br.com.server.executor.ProcessExecutor;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Adaptador que monta o corpo inteiro, copiando as partes para buffers do
+ * pool, e no fim processa a mensagem montada com o {@link ProcessExecutor},
+ * como os controllers que não utilizam streaming. A memória utilizada é a do
+ * corpo inteiro, então deve ser utilizado somente para mensagens pequenas.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BufferingStreamHandler implements StreamHandler {
+
+    private final BufferPool bufferPool;
+    private final ProcessExecutor processExecutor;
+    private final Function<CompositeByteBuffer, ?> process;
+    private final List<ByteBuffer> parts;
+
+    /**
+     * @param bufferPool Pool de onde são obtidos os buffers das partes.
+     * @param processExecutor Executor do processamento.
+     * @param process Processa o corpo montado, que deve ser fechado depois de
+     * utilizado, e retorna um {@link ByteBuffer} ou uma
+     * {@link br.com.server.buffer.FileRegion}.
+     */
+    public BufferingStreamHandler(
+            BufferPool bufferPool,
+            ProcessExecutor processExecutor,
+            Function<CompositeByteBuffer, ?> process
+    ) {
+        this.bufferPool = Objects.requireNonNull(bufferPool);
+        this.processExecutor = Objects.requireNonNull(processExecutor);
+        this.process = Objects.requireNonNull(process);
+        this.parts = new ArrayList<>();
+    }
+
+    @Override
+    public void onChunk(ByteBuffer chunk) {
+        ByteBuffer part = bufferPool.lease(chunk.remaining());
+        part.put(chunk).flip();
+        parts.add(part);
+    }
+
+    @Override
+    public CompletableFuture<?> onEnd() {
+        CompositeByteBuffer request = new CompositeByteBuffer(parts, parts, bufferPool);
+        parts.clear();
+        try {
+            return processExecutor.submit(() -> process.apply(request));
+        } catch (RejectedExecutionException ex) {
+            request.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void onAbort() {
+        for (ByteBuffer part : parts) {
+            bufferPool.release(part);
+        }
+        parts.clear();
+    }
+}
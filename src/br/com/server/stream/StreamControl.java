@@ -0,0 +1,54 @@
+package br.com.server.stream;
+
+import br.com.server.Reactor;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Controle de fluxo da leitura de um cliente cujas mensagens são entregues a
+ * um {@link StreamHandler}. Enquanto pausado, o reactor não entrega mais
+ * partes ao handler e para de ler do cliente, então o cliente é limitado pelo
+ * TCP até que a leitura seja retomada.
+ *
+ * Pode ser utilizado por qualquer thread.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public final class StreamControl {
+
+    private final Reactor reactor;
+    private final Runnable onResume;
+    private final AtomicBoolean paused;
+
+    /**
+     * @param reactor Reactor responsável pelo cliente.
+     * @param onResume Executado pela thread do reactor quando a leitura é
+     * retomada.
+     */
+    public StreamControl(Reactor reactor, Runnable onResume) {
+        this.reactor = Objects.requireNonNull(reactor);
+        this.onResume = Objects.requireNonNull(onResume);
+        this.paused = new AtomicBoolean();
+    }
+
+    /**
+     * Para de entregar partes ao handler. A parte que já está sendo entregue
+     * termina normalmente.
+     */
+    public void pause() {
+        paused.set(true);
+    }
+
+    /**
+     * Retoma a leitura, entregando primeiro as partes que já foram lidas.
+     */
+    public void resume() {
+        if (paused.compareAndSet(true, false)) {
+            reactor.execute(onResume);
+        }
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+}
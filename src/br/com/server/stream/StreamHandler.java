@@ -0,0 +1,58 @@
+package br.com.server.stream;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recebe o corpo de uma mensagem aos poucos, conforme os bytes chegam do
+ * cliente, em vez de receber a mensagem inteira montada. Assim a memória
+ * utilizada por conexão depende do tamanho do buffer de leitura e não do
+ * tamanho da mensagem, e o corpo pode ir direto para um arquivo ou para um
+ * digest.
+ *
+ * Um handler é criado para cada mensagem e todos os métodos são chamados pela
+ * thread do reactor, então não devem bloquear. Trabalhos demorados devem ser
+ * feitos em outra thread, pausando a leitura do cliente com
+ * {@link StreamControl#pause()} até que terminem.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public interface StreamHandler {
+
+    /**
+     * Chamado quando o cabeçalho da mensagem é lido, antes do corpo.
+     *
+     * @param length Tamanho do corpo, em bytes.
+     */
+    default void onStart(long length) {
+        //Do nothing
+    }
+
+    /**
+     * Recebe a próxima parte do corpo. O buffer só é válido durante a
+     * chamada, então os bytes que precisarem ser guardados devem ser
+     * copiados.
+     *
+     * @param chunk Parte do corpo, do position até o limit.
+     */
+    void onChunk(ByteBuffer chunk);
+
+    /**
+     * Chamado depois da última parte do corpo.
+     *
+     * @return A resposta, que deve terminar com um {@link ByteBuffer} ou uma
+     * {@link br.com.server.buffer.FileRegion}.
+     * @throws java.util.concurrent.RejectedExecutionException Se a mensagem
+     * não puder ser processada, o cliente recebe a resposta de servidor
+     * ocupado.
+     */
+    CompletableFuture<?> onEnd();
+
+    /**
+     * Chamado quando o cliente é desconectado antes do fim do corpo, para
+     * liberar o que foi recebido até o momento.
+     */
+    default void onAbort() {
+        //Do nothing
+    }
+}
@@ -0,0 +1,213 @@
+package br.com.server.timer;
+
+import java.util.function.Consumer;
+
+/**
+ * Timing wheel (roda de tempo) utilizada para controlar os timeouts dos
+ * clientes. Os timeouts são guardados em baldes de acordo com o tick em que
+ * expiram, então cada avanço do relógio só percorre os baldes dos ticks que
+ * passaram, e não todos os clientes.
+ *
+ * Não é thread-safe: agendar e expirar deve ser feito pela thread dona da
+ * roda (a thread do reactor). Somente {@link Timeout#cancel()} pode ser
+ * chamado de outras threads.
+ *
+ * @author Guilherme Alves Silveira
+ * @param <T> Tipo do objeto associado a cada timeout.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final Timeout<T>[] buckets;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis Resolução da roda, em ms.
+     * @param wheelSize Quantidade de baldes, deve ser uma potência de dois.
+     * @param now Tempo atual, em ms.
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long now) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Invalid tick!");
+        }
+
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("The wheel size must be a power of two!");
+        }
+
+        this.tickMillis = tickMillis;
+        this.mask = wheelSize - 1;
+        //o array é criado com o tipo cru e só guarda Timeout<T>
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Timeout<T>[] wheel = new Timeout[wheelSize];
+        this.buckets = wheel;
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Agenda um timeout.
+     *
+     * @param attachment Objeto entregue quando o timeout expirar.
+     * @param deadline Tempo, em ms, em que o timeout expira.
+     * @return O timeout agendado, que pode ser reagendado ou cancelado.
+     */
+    public Timeout<T> schedule(T attachment, long deadline) {
+        Timeout<T> timeout = new Timeout<>(attachment, deadline);
+        add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Avança a roda até o tempo informado, entregando para o consumer os
+     * objetos dos timeouts expirados. Timeouts reagendados para depois do
+     * tempo atual são movidos para o balde correto.
+     *
+     * @param now Tempo atual, em ms.
+     * @param onExpire Chamado para cada timeout expirado.
+     */
+    public void expire(long now, Consumer<T> onExpire) {
+        long nowTick = now / tickMillis;
+        if (nowTick - currentTick > buckets.length) {
+            currentTick = nowTick - buckets.length;
+        }
+
+        while (currentTick < nowTick) {
+            currentTick++;
+            int index = (int) (currentTick & mask);
+            Timeout<T> timeout = buckets[index];
+            while (null != timeout) {
+                Timeout<T> next = timeout.next;
+                if (timeout.cancelled) {
+                    unlink(index, timeout);
+                    size--;
+                } else if (timeout.tick <= currentTick) {
+                    unlink(index, timeout);
+                    if (timeout.deadline > now) {
+                        add(timeout);
+                    } else {
+                        size--;
+                        onExpire.accept(timeout.attachment);
+                    }
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * @return Quantidade de timeouts agendados, incluindo os cancelados que
+     * ainda não foram removidos.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Tempo, em ms, do próximo tick da roda, ou -1 se não houver
+     * timeouts agendados.
+     */
+    public long nextTickTime() {
+        return 0 == size ? -1 : (currentTick + 1) * tickMillis;
+    }
+
+    /**
+     * Procura o próximo balde com timeouts agendados, a partir do próximo
+     * tick. O tempo retornado nunca é posterior ao próximo timeout, mas pode
+     * ser anterior, já que o balde pode conter somente timeouts cancelados,
+     * reagendados ou de voltas seguintes da roda.
+     *
+     * @return Tempo, em ms, do tick do próximo balde com timeouts, ou -1 se
+     * não houver timeouts agendados.
+     */
+    public long nextExpirationTime() {
+        if (0 == size) {
+            return -1;
+        }
+
+        for (long tick = currentTick + 1; tick <= currentTick + buckets.length; tick++) {
+            if (null != buckets[(int) (tick & mask)]) {
+                return tick * tickMillis;
+            }
+        }
+        return (currentTick + buckets.length) * tickMillis;
+    }
+
+    private void add(Timeout<T> timeout) {
+        timeout.tick = Math.max(timeout.deadline / tickMillis, currentTick + 1);
+        int index = (int) (timeout.tick & mask);
+        timeout.prev = null;
+        timeout.next = buckets[index];
+        if (null != timeout.next) {
+            timeout.next.prev = timeout;
+        }
+        buckets[index] = timeout;
+    }
+
+    private void unlink(int index, Timeout<T> timeout) {
+        if (null == timeout.prev) {
+            buckets[index] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+
+        if (null != timeout.next) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Timeout agendado em uma {@link TimingWheel}.
+     *
+     * @param <T>
+     */
+    public static final class Timeout<T> {
+
+        private final T attachment;
+        private long deadline;
+        private long tick;
+        private volatile boolean cancelled;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T attachment, long deadline) {
+            this.attachment = attachment;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Reagenda o timeout. Quando o novo tempo é posterior ao atual (o caso
+         * de um cliente que enviou mais dados), o timeout só é movido quando o
+         * seu balde for percorrido, sem custo no momento da chamada. Deve ser
+         * chamado pela thread dona da roda.
+         *
+         * @param deadline Novo tempo, em ms, em que o timeout expira.
+         */
+        public void rearm(long deadline) {
+            if (deadline < this.deadline) {
+                throw new IllegalArgumentException("The deadline can only be postponed!");
+            }
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancela o timeout, que será removido da roda quando o seu balde for
+         * percorrido.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
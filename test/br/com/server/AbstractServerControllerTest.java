@@ -0,0 +1,141 @@
+package br.com.server;
+
+import br.com.server.executor.InlineProcessExecutor;
+import br.com.server.impl.FixedSizeServerController;
+import br.com.server.model.impl.FixedSizeClientTracker;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testes da pressão de escrita: um cliente que envia mensagens sem parar e
+ * não lê as respostas deve ter a leitura pausada.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class AbstractServerControllerTest {
+
+    private static final int FRAME_LENGTH = 64;
+    private static final int HIGH_WATERMARK = 64 * 1024;
+    private static final int MAX_RESPONSE_LENGTH = 64;
+
+    private ServerSocketChannel server;
+    private CapturingController controller;
+    private Thread eventLoop;
+    private SocketChannel client;
+
+    @Before
+    public void setUp() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setReactors(1);
+        config.setProcessExecutor(new InlineProcessExecutor());
+        config.setWriteWatermarks(HIGH_WATERMARK / 2, HIGH_WATERMARK);
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", 0));
+        server.configureBlocking(false);
+        controller = new CapturingController(server, Selector.open(), config);
+        eventLoop = new Thread(() -> {
+            try {
+                controller.runEventLoop();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }, "event-loop");
+        eventLoop.setDaemon(true);
+        eventLoop.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (null != client) {
+            client.close();
+        }
+        controller.close();
+        eventLoop.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void floodingClientHasReadsPaused() throws Exception {
+        client = SocketChannel.open();
+        client.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+        client.connect(server.getLocalAddress());
+        Thread writer = new Thread(this::flood, "flood");
+        writer.setDaemon(true);
+        writer.start();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        boolean paused = false;
+        while (!paused && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            paused = null != controller.reactor
+                    && onReactor(() -> controller.tracker.isReadPaused());
+        }
+        assertTrue("Reads were never paused", paused);
+
+        //enquanto a leitura está pausada, nenhuma mensagem nova é processada
+        Thread.sleep(500);
+        long requests = onReactor(() -> controller.tracker.getRequests());
+        Thread.sleep(500);
+        assertEquals(requests, (long) onReactor(() -> controller.tracker.getRequests()));
+        assertEquals(0, (int) onReactor(() -> controller.key.interestOps() & SelectionKey.OP_READ));
+        long pending = onReactor(() -> controller.tracker.getOutbound().getPendingBytes());
+        assertTrue("Outbound grew to " + pending, pending <= HIGH_WATERMARK + MAX_RESPONSE_LENGTH);
+    }
+
+    private void flood() {
+        byte[] frames = new byte[FRAME_LENGTH * 1024];
+        Arrays.fill(frames, (byte) 'x');
+        ByteBuffer buf = ByteBuffer.wrap(frames);
+        try {
+            while (true) {
+                buf.clear();
+                while (buf.hasRemaining()) {
+                    client.write(buf);
+                }
+            }
+        } catch (IOException ex) {
+            //o cliente foi fechado pelo teste
+        }
+    }
+
+    private <R> R onReactor(Supplier<R> query) throws Exception {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        controller.reactor.execute(() -> result.complete(query.get()));
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    private static final class CapturingController extends FixedSizeServerController {
+
+        private volatile Reactor reactor;
+        private FixedSizeClientTracker tracker;
+        private SelectionKey key;
+
+        CapturingController(ServerSocketChannel server, Selector selector, ServerConfig config)
+                throws IOException {
+            super(TimeUnit.MINUTES.toMillis(1), FRAME_LENGTH, server, selector, config);
+        }
+
+        @Override
+        protected void acceptClient(Reactor reactor, SocketChannel socketClient) throws IOException {
+            super.acceptClient(reactor, socketClient);
+            this.key = socketClient.keyFor(reactor.getSelector());
+            this.tracker = tracker(key);
+            this.reactor = reactor;
+        }
+    }
+}
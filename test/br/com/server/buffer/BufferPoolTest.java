@@ -0,0 +1,90 @@
+package br.com.server.buffer;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testes da posse dos buffers do {@link BufferPool}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class BufferPoolTest {
+
+    private final BufferPool pool = new BufferPool(64, 1024, 4096);
+
+    @Test
+    public void releasedBufferIsReused() {
+        ByteBuffer buffer = pool.lease(100);
+        assertTrue(pool.isLeased(buffer));
+        pool.release(buffer);
+        assertFalse(pool.isLeased(buffer));
+        assertSame(buffer, pool.lease(128));
+        assertEquals(1, pool.getOutstanding());
+    }
+
+    @Test
+    public void foreignBufferIsRefused() {
+        ByteBuffer shared = ByteBuffer.allocateDirect(128);
+        assertFalse(pool.isLeased(shared));
+        assertRefused(shared);
+        assertEquals(0, pool.getOutstanding());
+        assertNotSame(shared, pool.lease(128));
+    }
+
+    @Test
+    public void duplicateOfLeasedBufferIsRefused() {
+        ByteBuffer buffer = pool.lease(128);
+        ByteBuffer duplicate = buffer.duplicate();
+        assertFalse(pool.isLeased(duplicate));
+        assertRefused(duplicate);
+        assertEquals(1, pool.getOutstanding());
+        assertNotSame(buffer, pool.lease(128));
+    }
+
+    @Test
+    public void doubleReleaseIsRefused() {
+        ByteBuffer buffer = pool.lease(128);
+        pool.release(buffer);
+        assertRefused(buffer);
+        assertEquals(0, pool.getOutstanding());
+        assertSame(buffer, pool.lease(128));
+        assertNotSame(buffer, pool.lease(128));
+    }
+
+    @Test
+    public void unpooledBufferIsReleasedOnce() {
+        ByteBuffer buffer = pool.lease(2048);
+        assertTrue(pool.isLeased(buffer));
+        pool.release(buffer);
+        assertFalse(pool.isLeased(buffer));
+        assertRefused(buffer);
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    public void leasedBuffersAreFoundAfterTheTableGrows() {
+        ByteBuffer[] buffers = new ByteBuffer[1000];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.lease(64);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    private void assertRefused(ByteBuffer buffer) {
+        try {
+            pool.release(buffer);
+            fail("The buffer was accepted by the pool");
+        } catch (IllegalArgumentException ex) {
+            //esperado
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package br.com.server.buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Testes do envio de uma {@link FileRegion} com {@code transferTo}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class FileRegionTest {
+
+    private static final int FILE_LENGTH = 4096;
+
+    private Path path;
+    private FileChannel file;
+
+    @Before
+    public void setUp() throws IOException {
+        path = Files.createTempFile("region", ".bin");
+        Files.write(path, new byte[FILE_LENGTH]);
+        file = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        file.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void regionIsSentEntirely() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileRegion region = FileRegion.of(file, 100, 1000, false);
+        region.transferTo(Channels.newChannel(out));
+        assertTrue(region.isComplete());
+        assertEquals(1000, out.size());
+    }
+
+    @Test
+    public void truncatedFileFailsTheRegion() throws IOException {
+        FileRegion region = FileRegion.of(file, 0, FILE_LENGTH, false);
+        try (FileChannel writer = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            writer.truncate(FILE_LENGTH / 2);
+        }
+
+        WritableByteChannel target = Channels.newChannel(new ByteArrayOutputStream());
+        try {
+            region.transferTo(target);
+            fail("The truncated region was not refused");
+        } catch (IOException ex) {
+            //esperado
+        }
+        assertEquals(FILE_LENGTH / 2, region.transferred());
+    }
+
+    @Test
+    public void fullChannelIsNotAnError() throws IOException {
+        FileRegion region = FileRegion.of(file, 0, FILE_LENGTH, false);
+        WritableByteChannel full = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                return 0;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                //Do nothing
+            }
+        };
+        assertEquals(0, region.transferTo(full));
+        assertEquals(FILE_LENGTH, region.remaining());
+    }
+}
@@ -0,0 +1,121 @@
+package br.com.server.impl;
+
+import br.com.server.Reactor;
+import br.com.server.ServerConfig;
+import br.com.server.executor.InlineProcessExecutor;
+import br.com.server.model.impl.StreamClientTracker;
+import br.com.server.stream.StreamHandler;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testes da cota de mensagens por ciclo com o corpo entregue em partes.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class StreamingSizeServerControllerTest {
+
+    private static final int MESSAGE_BUDGET = 4;
+    private static final int MESSAGES = 2000;
+    private static final byte[] REQUEST = "00001x".getBytes();
+    private static final byte[] RESPONSE = "SUCESSO! PROCESSADO 1 BYTES!".getBytes();
+
+    private ServerSocketChannel server;
+    private CountingController controller;
+    private Thread eventLoop;
+
+    @Before
+    public void setUp() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setReactors(1);
+        config.setProcessExecutor(new InlineProcessExecutor());
+        config.setMessageBudget(MESSAGE_BUDGET);
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", 0));
+        server.configureBlocking(false);
+        controller = new CountingController(server, Selector.open(), config);
+        eventLoop = new Thread(() -> {
+            try {
+                controller.runEventLoop();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }, "event-loop");
+        eventLoop.setDaemon(true);
+        eventLoop.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        controller.close();
+        eventLoop.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void pipelinedMessagesRespectTheBudget() throws IOException {
+        ByteBuffer requests = ByteBuffer.allocate(REQUEST.length * MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            requests.put(REQUEST);
+        }
+        requests.flip();
+
+        ByteBuffer responses = ByteBuffer.allocate(RESPONSE.length * MESSAGES);
+        try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+            while (requests.hasRemaining()) {
+                client.write(requests);
+            }
+            while (responses.hasRemaining()) {
+                if (client.read(responses) < 0) {
+                    throw new IOException("Connection closed by the server!");
+                }
+            }
+        }
+
+        byte[] response = new byte[RESPONSE.length];
+        responses.flip();
+        while (responses.hasRemaining()) {
+            responses.get(response);
+            assertArrayEquals(RESPONSE, response);
+        }
+
+        int max = controller.messagesPerCycle.values().stream()
+                .mapToInt(Integer::intValue).max().orElse(0);
+        assertTrue("A cycle started " + max + " messages", max <= MESSAGE_BUDGET);
+    }
+
+    private static final class CountingController extends StreamingSizeServerController {
+
+        private final Map<Long, Integer> messagesPerCycle = new ConcurrentHashMap<>();
+        private volatile Reactor reactor;
+
+        CountingController(ServerSocketChannel server, Selector selector, ServerConfig config)
+                throws IOException {
+            super(TimeUnit.MINUTES.toMillis(1), 1024, server, selector, config);
+        }
+
+        @Override
+        protected void acceptClient(Reactor reactor, SocketChannel socketClient) throws IOException {
+            this.reactor = reactor;
+            super.acceptClient(reactor, socketClient);
+        }
+
+        @Override
+        protected StreamHandler newStreamHandler(StreamClientTracker clientTracker, long length) {
+            messagesPerCycle.merge(reactor.getCycle(), 1, Integer::sum);
+            return super.newStreamHandler(clientTracker, length);
+        }
+    }
+}
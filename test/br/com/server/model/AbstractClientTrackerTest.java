@@ -0,0 +1,66 @@
+package br.com.server.model;
+
+import br.com.server.buffer.BufferPool;
+import br.com.server.model.impl.FixedSizeClientTracker;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Testes da devolução das respostas ao pool.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class AbstractClientTrackerTest {
+
+    private static final ByteBuffer STATIC_RESPONSE = ByteBuffer.allocateDirect(64);
+
+    private BufferPool pool;
+    private SocketChannel channel;
+    private FixedSizeClientTracker tracker;
+
+    @Before
+    public void setUp() throws IOException {
+        pool = new BufferPool(64, 1024, 4096);
+        channel = SocketChannel.open();
+        tracker = new FixedSizeClientTracker(1000, false, channel, pool);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        channel.close();
+    }
+
+    @Test
+    public void pooledResponseIsReleased() {
+        ByteBuffer response = tracker.newResponse(new byte[10]);
+        tracker.releaseResponse(response);
+        assertEquals(0, pool.getOutstanding());
+        assertSame(response, pool.lease(64));
+    }
+
+    @Test
+    public void sharedResponseIsNotReleased() {
+        tracker.releaseResponse(STATIC_RESPONSE.duplicate());
+        tracker.releaseResponse(STATIC_RESPONSE);
+        tracker.releaseResponse(ByteBuffer.allocateDirect(64));
+        assertEquals(0, pool.getOutstanding());
+        assertNotSame(STATIC_RESPONSE, pool.lease(64));
+    }
+
+    @Test
+    public void responseIsReleasedOnce() {
+        ByteBuffer response = tracker.newResponse(new byte[10]);
+        tracker.releaseResponse(response);
+        tracker.releaseResponse(response);
+        assertEquals(0, pool.getOutstanding());
+        assertSame(response, pool.lease(64));
+        assertNotSame(response, pool.lease(64));
+    }
+}
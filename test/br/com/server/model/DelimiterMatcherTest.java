@@ -0,0 +1,87 @@
+package br.com.server.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Testes da busca de delimitadores em um fluxo recebido em partes.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class DelimiterMatcherTest {
+
+    private static final byte[] CRLF = "\r\n".getBytes();
+    private static final byte[] LF = "\n".getBytes();
+
+    private final List<String> found = new ArrayList<>();
+
+    @Test
+    public void delimiterSplitAcrossParts() {
+        DelimiterMatcher matcher = new DelimiterMatcher(CRLF);
+        scan(matcher, "abc\r");
+        assertEquals(0, found.size());
+        scan(matcher, "\ndef");
+        assertEquals(List.of("5:0"), found);
+        assertEquals(8, matcher.getScanned());
+    }
+
+    @Test
+    public void overlappingPrefixIsFound() {
+        DelimiterMatcher matcher = new DelimiterMatcher("aab".getBytes());
+        scan(matcher, "aa");
+        scan(matcher, "ab");
+        assertEquals(List.of("4:0"), found);
+    }
+
+    @Test
+    public void searchRestartsAfterEachDelimiter() {
+        DelimiterMatcher matcher = new DelimiterMatcher("aa".getBytes());
+        scan(matcher, "aaa");
+        assertEquals(List.of("2:0"), found);
+        scan(matcher, "a");
+        assertEquals(List.of("2:0", "4:0"), found);
+    }
+
+    @Test
+    public void longestDelimiterEndingAtTheByteWins() {
+        DelimiterMatcher matcher = new DelimiterMatcher(CRLF, LF);
+        scan(matcher, "x\ny\r");
+        scan(matcher, "\n");
+        assertEquals(List.of("2:1", "5:0"), found);
+        assertEquals(2, matcher.getDelimiterLength(0));
+        assertEquals(1, matcher.getDelimiterLength(1));
+    }
+
+    @Test
+    public void bufferIsReadFromItsPositionWithoutChangingIt() {
+        DelimiterMatcher matcher = new DelimiterMatcher(CRLF);
+        ByteBuffer buffer = ByteBuffer.wrap("\r\nab\r\n".getBytes());
+        buffer.position(2);
+        matcher.scan(buffer, (end, delimiter) -> found.add(end + ":" + delimiter));
+        assertEquals(List.of("4:0"), found);
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void resetDiscardsAPartialDelimiter() {
+        DelimiterMatcher matcher = new DelimiterMatcher(CRLF);
+        scan(matcher, "ab\r");
+        matcher.reset();
+        scan(matcher, "\n");
+        assertEquals(0, found.size());
+        assertEquals(1, matcher.getScanned());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyDelimiterIsRefused() {
+        new DelimiterMatcher(CRLF, new byte[0]);
+    }
+
+    private void scan(DelimiterMatcher matcher, String part) {
+        matcher.scan(ByteBuffer.wrap(part.getBytes()),
+                (end, delimiter) -> found.add(end + ":" + delimiter));
+    }
+}
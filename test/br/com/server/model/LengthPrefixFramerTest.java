@@ -0,0 +1,136 @@
+package br.com.server.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Testes da leitura dos cabeçalhos de tamanho, com o cabeçalho dividido entre
+ * as partes recebidas e as mensagens acima do tamanho máximo.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class LengthPrefixFramerTest {
+
+    private static final int MAX = 1024;
+
+    @Test
+    public void fixedBigEndianHeaderSplitAcrossParts() {
+        LengthPrefixFramer framer = LengthPrefixFramer.fixed(4, ByteOrder.BIG_ENDIAN, MAX);
+        assertEquals(4 + 258, framer.frameLength(parts(
+                bytes(0x00), bytes(0x00, 0x01), bytes(0x02, 'x', 'y'))));
+    }
+
+    @Test
+    public void fixedLittleEndianHeaderSplitAcrossParts() {
+        LengthPrefixFramer framer = LengthPrefixFramer.fixed(2, ByteOrder.LITTLE_ENDIAN, MAX);
+        assertEquals(2 + 258, framer.frameLength(parts(bytes(0x02), bytes(0x01))));
+    }
+
+    @Test
+    public void fixedIncompleteHeaderHasNoFrame() {
+        LengthPrefixFramer framer = LengthPrefixFramer.fixed(4, ByteOrder.BIG_ENDIAN, MAX);
+        assertEquals(AbstractClientTracker.NO_FRAME,
+                framer.frameLength(parts(bytes(0x00), bytes(0x00, 0x01))));
+        assertEquals(AbstractClientTracker.NO_FRAME, framer.frameLength(parts()));
+    }
+
+    @Test
+    public void fixedMaxFrameLengthIncludesTheHeader() {
+        LengthPrefixFramer framer = LengthPrefixFramer.fixed(2, ByteOrder.BIG_ENDIAN, MAX);
+        assertEquals(MAX, framer.frameLength(parts(bytes((MAX - 2) >> 8, (MAX - 2) & 0xFF))));
+        assertRejected(framer, parts(bytes((MAX - 1) >> 8, (MAX - 1) & 0xFF)));
+    }
+
+    @Test
+    public void fixedEightByteLengthIsUnsigned() {
+        LengthPrefixFramer framer = LengthPrefixFramer.fixed(8, ByteOrder.BIG_ENDIAN, MAX);
+        assertEquals(8 + 16, framer.frameLength(parts(bytes(0, 0, 0, 0), bytes(0, 0, 0, 16))));
+        //com o bit mais alto, o valor seria negativo se lido com sinal
+        assertRejected(framer, parts(bytes(0x80, 0, 0, 0, 0, 0, 0, 1)));
+        assertRejected(framer, parts(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF)));
+    }
+
+    @Test
+    public void varintHeaderSplitAcrossParts() {
+        LengthPrefixFramer framer = LengthPrefixFramer.varint(MAX);
+        //300 = 0xAC 0x02
+        assertEquals(2 + 300, framer.frameLength(parts(bytes(0xAC), bytes(0x02, 'x'))));
+        assertEquals(AbstractClientTracker.NO_FRAME, framer.frameLength(parts(bytes(0xAC))));
+        assertEquals(1 + 5, framer.frameLength(parts(bytes(0x05))));
+    }
+
+    @Test
+    public void varintIsRejectedBeforeTheHeaderEnds() {
+        LengthPrefixFramer framer = LengthPrefixFramer.varint(100);
+        //o primeiro byte já passa do máximo e indica que existe mais um
+        assertRejected(framer, parts(bytes(0xFF)));
+        assertEquals(AbstractClientTracker.NO_FRAME, framer.frameLength(parts(bytes(0x80))));
+    }
+
+    @Test
+    public void varintWithMoreThanTenBytesIsRejected() {
+        LengthPrefixFramer framer = LengthPrefixFramer.varint(Integer.MAX_VALUE);
+        assertRejected(framer, parts(bytes(0x80, 0x80, 0x80, 0x80, 0x80),
+                bytes(0x80, 0x80, 0x80, 0x80, 0x80, 0x00)));
+    }
+
+    @Test
+    public void asciiHeaderSplitAcrossParts() {
+        LengthPrefixFramer framer = LengthPrefixFramer.ascii(5, MAX);
+        assertEquals(5 + 12, framer.frameLength(parts(ascii("000"), ascii("12abc"))));
+        assertEquals(AbstractClientTracker.NO_FRAME, framer.frameLength(parts(ascii("0001"))));
+    }
+
+    @Test
+    public void asciiRejectsInvalidDigitsAndLongFrames() {
+        LengthPrefixFramer framer = LengthPrefixFramer.ascii(5, MAX);
+        assertRejected(framer, parts(ascii("00"), ascii("x")));
+        assertEquals(MAX, framer.frameLength(parts(ascii(String.format("%05d", MAX - 5)))));
+        assertRejected(framer, parts(ascii(String.format("%05d", MAX - 4))));
+    }
+
+    @Test
+    public void partsAreReadFromTheirPositionWithoutChangingThem() {
+        LengthPrefixFramer framer = LengthPrefixFramer.ascii(3, MAX);
+        ByteBuffer first = ascii("99001");
+        first.position(3);
+        ByteBuffer second = ascii("0");
+        assertEquals(3 + 10, framer.frameLength(parts(first, second)));
+        assertEquals(3, first.position());
+        assertEquals(0, second.position());
+    }
+
+    private static void assertRejected(LengthPrefixFramer framer, List<ByteBuffer> parts) {
+        try {
+            framer.frameLength(parts);
+            fail("The header was accepted");
+        } catch (InvalidFrameException ex) {
+            //esperado
+        }
+    }
+
+    private static List<ByteBuffer> parts(ByteBuffer... parts) {
+        List<ByteBuffer> list = new ArrayList<>();
+        for (ByteBuffer part : parts) {
+            list.add(part);
+        }
+        return list;
+    }
+
+    private static ByteBuffer bytes(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length);
+        for (int value : values) {
+            buffer.put((byte) value);
+        }
+        return buffer.flip();
+    }
+
+    private static ByteBuffer ascii(String value) {
+        return ByteBuffer.wrap(value.getBytes());
+    }
+}
@@ -0,0 +1,89 @@
+package br.com.server.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testes dos timeouts agendados na {@link TimingWheel}.
+ *
+ * @author Guilherme Alves Silveira
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, 0);
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    public void timeoutExpiresAtItsDeadline() {
+        wheel.schedule("a", 100);
+        wheel.expire(99, expired::add);
+        assertEquals(0, expired.size());
+        wheel.expire(100, expired::add);
+        assertEquals(List.of("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void timeoutBeyondOneRotationWaitsForItsDeadline() {
+        //com 8 baldes de 10 ms, o balde do tick 100 é percorrido antes do prazo
+        wheel.schedule("a", 1000);
+        for (long now = 10; now < 1000; now += 10) {
+            wheel.expire(now, expired::add);
+        }
+        assertEquals(0, expired.size());
+        wheel.expire(1000, expired::add);
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test
+    public void lateExpireDeliversEachTimeoutOnce() {
+        wheel.schedule("a", 50);
+        wheel.schedule("b", 700);
+        wheel.expire(10_000, expired::add);
+        assertEquals(2, expired.size());
+        assertTrue(expired.containsAll(List.of("a", "b")));
+        wheel.expire(20_000, expired::add);
+        assertEquals(2, expired.size());
+    }
+
+    @Test
+    public void rearmedTimeoutMovesToTheNewDeadline() {
+        TimingWheel.Timeout<String> timeout = wheel.schedule("a", 100);
+        timeout.rearm(250);
+        wheel.expire(100, expired::add);
+        assertEquals(0, expired.size());
+        assertEquals(1, wheel.size());
+        wheel.expire(250, expired::add);
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rearmCannotAnticipateTheDeadline() {
+        wheel.schedule("a", 100).rearm(50);
+    }
+
+    @Test
+    public void cancelledTimeoutIsRemovedWithoutExpiring() {
+        TimingWheel.Timeout<String> timeout = wheel.schedule("a", 100);
+        timeout.cancel();
+        assertEquals(1, wheel.size());
+        wheel.expire(200, expired::add);
+        assertEquals(0, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void nextExpirationIsNeverAfterTheNextTimeout() {
+        assertEquals(-1, wheel.nextTickTime());
+        assertEquals(-1, wheel.nextExpirationTime());
+        wheel.schedule("a", 55);
+        assertEquals(TICK, wheel.nextTickTime());
+        assertEquals(50, wheel.nextExpirationTime());
+    }
+}